@@ -0,0 +1,114 @@
+package hudson.plugins.performance;
+
+import hudson.util.NullStream;
+import hudson.util.StreamTaskListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a report file of each format, generated by {@link SyntheticResults}.
+ * For the summariser log, <tt>sampleCount</tt> is the number of summariser
+ * lines; the <tt>wrk</tt> output is a summary of the samples whatever their
+ * number.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ParserBenchmark {
+
+  @Param( { "jmeter", "csv", "junit", "summarizer", "wrk" })
+  public String format;
+
+  @Param( { "10000", "1000000" })
+  public int sampleCount;
+
+  @Param( { "20" })
+  public int labelCount;
+
+  /**
+   * Levels of sub-samples in the JMeter XML results.
+   */
+  @Param( { "0" })
+  public int nesting;
+
+  private File dir;
+
+  private File file;
+
+  private PerformanceReportParser parser;
+
+  private StreamTaskListener listener;
+
+  @Setup
+  public void setUp() throws Exception {
+    dir = File.createTempFile("performance-benchmark", "");
+    dir.delete();
+    dir.mkdirs();
+    SyntheticResults results = new SyntheticResults(UriReportBenchmark.SEED)
+        .samples(sampleCount).labels(labelCount).nesting(nesting, 2);
+    if ("jmeter".equals(format)) {
+      file = results.writeJMeterXml(new File(dir, "results.jtl"));
+      parser = new JMeterParser("");
+    } else if ("csv".equals(format)) {
+      file = results.writeJMeterCsv(new File(dir, "results.csv"));
+      parser = new JMeterCsvParser("", SyntheticResults.CSV_PATTERN, ",",
+          false);
+    } else if ("junit".equals(format)) {
+      file = results.writeJUnit(new File(dir, "TEST-results.xml"));
+      parser = new JUnitParser("");
+    } else if ("summarizer".equals(format)) {
+      file = results.writeSummarizerLog(new File(dir, "jmeter.log"));
+      parser = new JmeterSummarizerParser("", null);
+    } else if ("wrk".equals(format)) {
+      file = results.writeWrk(new File(dir, "results.wrk"));
+      parser = new WrkSummarizerParser("");
+    } else {
+      throw new IllegalArgumentException("Unknown format " + format);
+    }
+    listener = new StreamTaskListener(new NullStream());
+  }
+
+  /**
+   * Drops what the JMeter parser keeps of the previous parse, in memory and
+   * next to the file.
+   */
+  @Setup(Level.Invocation)
+  public void forgetParsedReport() {
+    JMeterParser.invalidateCache();
+    new File(file.getPath() + ".serialized").delete();
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  @Benchmark
+  public Collection<PerformanceReport> parse() throws IOException {
+    return parser.parse(null, Collections.singleton(file), listener);
+  }
+}
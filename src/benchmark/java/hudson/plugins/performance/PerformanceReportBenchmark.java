@@ -0,0 +1,58 @@
+package hudson.plugins.performance;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Adding samples of many URIs to a report and aggregating them, as done
+ * when a report is parsed and then summarized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class PerformanceReportBenchmark {
+
+  @Param( { "100000", "1000000" })
+  public int sampleCount;
+
+  @Param( { "10", "1000" })
+  public int labelCount;
+
+  private List<HttpSample> samples;
+
+  @Setup
+  public void setUp() {
+    samples = new SyntheticResults(UriReportBenchmark.SEED).samples(
+        sampleCount).labels(labelCount).generate();
+  }
+
+  @Benchmark
+  public void aggregate(Blackhole blackhole) throws Exception {
+    PerformanceReport report = new PerformanceReport();
+    report.setReportFileName("results.jtl");
+    for (HttpSample sample : samples) {
+      report.addSample(sample);
+    }
+    blackhole.consume(report.getAverage());
+    blackhole.consume(report.getMedian());
+    blackhole.consume(report.get90Line());
+    blackhole.consume(report.errorPercent());
+    blackhole.consume(new ReportSummary(report));
+  }
+}
@@ -0,0 +1,75 @@
+package hudson.plugins.performance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing and reading a report the way the parsers cache it, in the
+ * <tt>.serialized</tt> file next to the report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SerializationBenchmark {
+
+  @Param( { "100000", "1000000" })
+  public int sampleCount;
+
+  @Param( { "ALL", "RESERVOIR" })
+  public String sampleRetention;
+
+  private PerformanceReport report;
+
+  private byte[] serialized;
+
+  @Setup
+  public void setUp() throws Exception {
+    report = new PerformanceReport();
+    report.setReportFileName("results.jtl");
+    report.setSampleRetention(new SampleRetention(sampleRetention,
+        SampleRetention.DEFAULT_RESERVOIR_SIZE));
+    for (HttpSample sample : new SyntheticResults(UriReportBenchmark.SEED)
+        .samples(sampleCount).labels(20).generate()) {
+      report.addSample(sample);
+    }
+    serialized = write();
+  }
+
+  @Benchmark
+  public byte[] write() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(report);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  @Benchmark
+  public Object read() throws Exception {
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+        serialized));
+    try {
+      return in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+}
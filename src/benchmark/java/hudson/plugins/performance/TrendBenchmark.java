@@ -0,0 +1,76 @@
+package hudson.plugins.performance;
+
+import hudson.util.DataSetBuilder;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jfree.data.category.CategoryDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the data of the trend graphs from the points of the trend index,
+ * for the images drawn on the server and for the JSON drawn in the browser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrendBenchmark {
+
+  @Param( { "100", "1000" })
+  public int buildCount;
+
+  private SortedMap<Integer, TrendIndex.Point> points;
+
+  @Setup
+  public void setUp() throws Exception {
+    points = new TreeMap<Integer, TrendIndex.Point>();
+    List<HttpSample> samples = new SyntheticResults(UriReportBenchmark.SEED)
+        .samples(buildCount * 100).labels(20).generate();
+    for (int build = 0; build < buildCount; build++) {
+      PerformanceReport report = new PerformanceReport();
+      report.setReportFileName("results.jtl");
+      for (HttpSample sample : samples.subList(build * 100,
+          (build + 1) * 100)) {
+        report.addSample(sample);
+      }
+      points.put(build + 1, new TrendIndex.Point(SyntheticResults.START
+          + build * 3600000L, new ReportSummary(report)));
+    }
+  }
+
+  @Benchmark
+  public CategoryDataset dataset() {
+    DataSetBuilder<String, Integer> builder = new DataSetBuilder<String, Integer>();
+    for (Map.Entry<Integer, TrendIndex.Point> point : points.entrySet()) {
+      builder.add(point.getValue().getAverage(), "average", point.getKey());
+      builder.add(point.getValue().getMedian(), "median", point.getKey());
+      builder.add(point.getValue().get90Line(), "90%", point.getKey());
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public String json() throws Exception {
+    StringWriter out = new StringWriter();
+    TrendIndex.writeJson("results.jtl", points, out);
+    return out.toString();
+  }
+}
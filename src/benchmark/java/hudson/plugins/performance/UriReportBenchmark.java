@@ -0,0 +1,65 @@
+package hudson.plugins.performance;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Adding the samples of one URI and computing the figures shown for it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class UriReportBenchmark {
+
+  static final long SEED = 42;
+
+  @Param( { "10000", "1000000", "10000000" })
+  public int sampleCount;
+
+  private List<HttpSample> samples;
+
+  @Setup
+  public void setUp() {
+    samples = new SyntheticResults(SEED).samples(sampleCount).labels(1)
+        .generate();
+  }
+
+  private UriReport addSamples() {
+    UriReport report = new UriReport(null, "uri", "uri");
+    for (HttpSample sample : samples) {
+      report.addHttpSample(sample);
+    }
+    return report;
+  }
+
+  @Benchmark
+  public UriReport add() {
+    return addSamples();
+  }
+
+  @Benchmark
+  public void addAndCompute(Blackhole blackhole) {
+    UriReport report = addSamples();
+    blackhole.consume(report.getAverage());
+    blackhole.consume(report.getMedian());
+    blackhole.consume(report.get90Line());
+    blackhole.consume(report.getHttpCode());
+    blackhole.consume(report.errorPercent());
+  }
+}
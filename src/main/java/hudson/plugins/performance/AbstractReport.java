@@ -13,6 +13,7 @@ public abstract class AbstractReport {
 
   private NumberFormat percentFormat;
   private NumberFormat dataFormat;
+  private NumberFormat apdexFormat;
 
   abstract public int countErrors();
 
@@ -24,6 +25,7 @@ public abstract class AbstractReport {
     }
     percentFormat = new DecimalFormat("0.0");
     dataFormat = new DecimalFormat("#,###");
+    apdexFormat = new DecimalFormat("0.00");
   }
 
   public String errorPercentFormated() {
@@ -57,6 +59,12 @@ public abstract class AbstractReport {
 
   abstract public long getMin();
 
+  abstract public double getApdex();
+
+  public String getApdexFormated() {
+    return apdexFormat.format(getApdex());
+  }
+
   abstract public int size();
   
   abstract public String getHttpCode();
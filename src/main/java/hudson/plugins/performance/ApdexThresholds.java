@@ -0,0 +1,156 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+
+import java.util.logging.Logger;
+
+/**
+ * The Apdex T of each label: requests answered within T are satisfied, within
+ * 4T tolerating, and the slower and failed ones frustrated. The score is
+ * <tt>(satisfied + tolerating / 2) / samples</tt>.
+ *
+ * <p>
+ * T is the job's one unless a label matches one of the per-label patterns,
+ * written one per line as <tt>&lt;label pattern&gt; &lt;T in ms&gt;</tt>,
+ * e.g. <tt>/search/* 1200</tt>. The first matching pattern wins.
+ *
+ * <p>
+ * Each {@link UriReport} takes its T when it is created and counts its
+ * samples as they are added, so the scores come from the same pass that
+ * fills the other figures.
+ */
+public class ApdexThresholds {
+
+  private static final Logger LOGGER = Logger.getLogger(ApdexThresholds.class
+      .getName());
+
+  /**
+   * T when none is configured, in ms.
+   */
+  public static final long DEFAULT_THRESHOLD = 500;
+
+  /**
+   * The thresholds of the reports whose samples are the averages of many
+   * requests, e.g. the summarizer ones, for which no Apdex is counted.
+   */
+  static final ApdexThresholds NONE = new ApdexThresholds(-1, false);
+
+  private final long threshold;
+
+  private final LabelMatcher<Long> labelThresholds = new LabelMatcher<Long>();
+
+  public ApdexThresholds() {
+    this(DEFAULT_THRESHOLD);
+  }
+
+  public ApdexThresholds(long threshold) {
+    this(threshold, true);
+  }
+
+  private ApdexThresholds(long threshold, boolean counted) {
+    if (!counted) {
+      this.threshold = -1;
+    } else {
+      this.threshold = threshold > 0 ? threshold : DEFAULT_THRESHOLD;
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException
+   *           on the first invalid line, with its line number
+   */
+  public static ApdexThresholds parse(long threshold, String labelThresholds) {
+    ApdexThresholds thresholds = new ApdexThresholds(threshold);
+    if (labelThresholds == null) {
+      return thresholds;
+    }
+    String[] lines = labelThresholds.split("\r?\n");
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].trim();
+      if (line.length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+      try {
+        int space = line.lastIndexOf(' ');
+        if (space < 0) {
+          throw new IllegalArgumentException(
+              "Expected '<label pattern> <T in ms>'");
+        }
+        long t;
+        try {
+          t = Long.parseLong(line.substring(space + 1));
+        } catch (NumberFormatException e) {
+          t = -1;
+        }
+        if (t <= 0) {
+          throw new IllegalArgumentException("Invalid T '"
+              + line.substring(space + 1) + "'");
+        }
+        thresholds.labelThresholds.add(line.substring(0, space).trim(), t);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": "
+            + e.getMessage());
+      }
+    }
+    return thresholds;
+  }
+
+  /**
+   * @return the thresholds the build was recorded with, so that its reports
+   *         keep their scores when parsed again, else those configured in the
+   *         publisher of the build's project, or the default ones
+   */
+  public static ApdexThresholds of(AbstractBuild<?, ?> build) {
+    if (build == null) {
+      return new ApdexThresholds();
+    }
+    PerformanceBuildAction action = build
+        .getAction(PerformanceBuildAction.class);
+    if (action != null && action.getApdexThresholds() != null) {
+      return action.getApdexThresholds();
+    }
+    PerformancePublisher publisher = build.getProject().getPublishersList()
+        .get(PerformancePublisher.class);
+    if (publisher == null) {
+      return new ApdexThresholds();
+    }
+    return parseOrDefault(publisher.getApdexThreshold(),
+        publisher.getApdexLabelThresholds());
+  }
+
+  /**
+   * @return the thresholds, or T for every label if the per-label ones are
+   *         invalid
+   */
+  static ApdexThresholds parseOrDefault(long threshold, String labelThresholds) {
+    try {
+      return parse(threshold, labelThresholds);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warning("Invalid Apdex thresholds, using " + threshold
+          + " ms for every label. " + e.getMessage());
+      return new ApdexThresholds(threshold);
+    }
+  }
+
+  public long getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * @return T of the label, or -1 when no Apdex is counted
+   */
+  public long getThreshold(String label) {
+    Long t = labelThresholds.match(label);
+    return t != null ? t : threshold;
+  }
+
+  /**
+   * @return the score, 1 when there are no samples
+   */
+  public static double score(long satisfied, long tolerating, long samples) {
+    if (samples == 0) {
+      return 1;
+    }
+    return (satisfied + tolerating / 2d) / samples;
+  }
+}
@@ -0,0 +1,81 @@
+package hudson.plugins.performance;
+
+/**
+ * Picks the points of a time series worth drawing when there are many more
+ * than pixels, with the largest-triangle-three-buckets algorithm: the points
+ * are split into as many buckets as points to keep, and from each bucket the
+ * point forming the largest triangle with the point kept before it and the
+ * average of the next bucket is kept. Peaks and valleys survive, unlike with
+ * averaging or keeping every n-th point.
+ */
+final class Downsampling {
+
+  /**
+   * Points drawn at most in a graph of the samples, a few per pixel column of
+   * the largest graphs.
+   */
+  static final int MAX_POINTS = 2000;
+
+  private Downsampling() {
+  }
+
+  /**
+   * @param x
+   *          the abscissas, in ascending order
+   * @param y
+   *          the ordinates
+   * @param size
+   *          the number of points, the first of the arrays
+   * @param threshold
+   *          the number of points to keep
+   * @return the indices of the points kept, in ascending order, the first and
+   *         last ones included
+   */
+  static int[] largestTriangleThreeBuckets(long[] x, long[] y, int size,
+      int threshold) {
+    if (threshold >= size || threshold < 3) {
+      int[] all = new int[size];
+      for (int i = 0; i < size; i++) {
+        all[i] = i;
+      }
+      return all;
+    }
+    int[] kept = new int[threshold];
+    int count = 0;
+    // the first and last points are kept, the others are bucketed
+    double every = (double) (size - 2) / (threshold - 2);
+    int a = 0;
+    kept[count++] = a;
+    for (int i = 0; i < threshold - 2; i++) {
+      int nextStart = (int) ((i + 1) * every) + 1;
+      int nextEnd = Math.min((int) ((i + 2) * every) + 1, size);
+      double averageX = 0;
+      double averageY = 0;
+      for (int j = nextStart; j < nextEnd; j++) {
+        averageX += x[j] - x[0];
+        averageY += y[j];
+      }
+      averageX /= nextEnd - nextStart;
+      averageY /= nextEnd - nextStart;
+
+      int start = (int) (i * every) + 1;
+      int end = (int) ((i + 1) * every) + 1;
+      double pointX = x[a] - x[0];
+      double pointY = y[a];
+      double maxArea = -1;
+      int next = start;
+      for (int j = start; j < end; j++) {
+        double area = Math.abs((pointX - averageX) * (y[j] - pointY)
+            - (pointX - (x[j] - x[0])) * (averageY - pointY));
+        if (area > maxArea) {
+          maxArea = area;
+          next = j;
+        }
+      }
+      kept[count++] = next;
+      a = next;
+    }
+    kept[count++] = size - 1;
+    return kept;
+  }
+}
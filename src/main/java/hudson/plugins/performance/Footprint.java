@@ -0,0 +1,162 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Rough estimate of the heap taken by the reports, from the samples and values
+ * they hold. The reports loaded report their own footprint, the others are
+ * estimated from their {@link ReportSummary} before being loaded, so that
+ * those too large for what the loaded ones leave of the memory budget are only
+ * shown from their summary.
+ *
+ * <p>
+ * The costs are those of a 64-bit JVM without compressed references, so
+ * rather too high than too low.
+ */
+final class Footprint {
+
+  /**
+   * An {@link HttpSample} with its date and strings, and its reference in the
+   * sample list.
+   */
+  static final long SAMPLE_BYTES = 320;
+
+  /**
+   * A duration, latency or connect time in a {@link SampleValues}.
+   */
+  static final long VALUE_BYTES = 8;
+
+  /**
+   * A {@link UriReport} and its map entry, without its samples and values.
+   */
+  static final long URI_BYTES = 1024;
+
+  /**
+   * A {@link PerformanceReport} without its {@link UriReport}s.
+   */
+  static final long REPORT_BYTES = 2048;
+
+  /**
+   * An HTTP code or a thread name in a set or a map.
+   */
+  static final long ENTRY_BYTES = 96;
+
+  /**
+   * System property of the memory budget, in MB: the reports of a build
+   * estimated to take more are only shown from their summaries. A quarter of
+   * the maximum heap by default, negative for no budget.
+   */
+  static final String BUDGET_PROPERTY = PerformanceReportMap.class.getName()
+      + ".memoryBudget";
+
+  /**
+   * The reports loaded, held weakly so that they are forgotten once collected,
+   * with the build they belong to and their footprint.
+   */
+  private static final Map<PerformanceReport, Resident> RESIDENT = new WeakHashMap<PerformanceReport, Resident>();
+
+  private static final class Resident {
+
+    private final String buildDir;
+
+    private final long bytes;
+
+    Resident(String buildDir, long bytes) {
+      this.buildDir = buildDir;
+      this.bytes = bytes;
+    }
+  }
+
+  private Footprint() {
+  }
+
+  /**
+   * Counts a loaded report against the budget until it is collected.
+   */
+  static void addResident(AbstractBuild<?, ?> build, PerformanceReport report) {
+    Resident resident = new Resident(getBuildDir(build), report.getFootprint());
+    synchronized (RESIDENT) {
+      RESIDENT.put(report, resident);
+    }
+  }
+
+  /**
+   * @return the footprint of the reports loaded and not collected yet, but
+   *         those of the build, which take nothing more when it loads them
+   */
+  static long getResident(AbstractBuild<?, ?> build) {
+    String buildDir = getBuildDir(build);
+    long bytes = 0;
+    synchronized (RESIDENT) {
+      for (Resident resident : RESIDENT.values()) {
+        if (buildDir == null || !buildDir.equals(resident.buildDir)) {
+          bytes += resident.bytes;
+        }
+      }
+    }
+    return bytes;
+  }
+
+  private static String getBuildDir(AbstractBuild<?, ?> build) {
+    return build != null ? build.getRootDir().getPath() : null;
+  }
+
+  /**
+   * @return the estimated footprint of the reports once loaded
+   */
+  static long estimate(Collection<ReportSummary> summaries) {
+    long bytes = 0;
+    for (ReportSummary summary : summaries) {
+      bytes += estimate(summary);
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the estimated footprint of the report once loaded, keeping the
+   *         samples of the retention it was parsed with
+   */
+  static long estimate(ReportSummary summary) {
+    long bytes = REPORT_BYTES;
+    int maxSamples = summary.getSampleRetention().getMaxSamples();
+    for (UriSummary uri : summary.getUriListOrdered()) {
+      int values = 1;
+      if (uri.hasLatency()) {
+        values++;
+      }
+      if (uri.getAverageConnectTime() > 0) {
+        values++;
+      }
+      long kept = maxSamples < 0 ? uri.size() : Math.min(uri.size(),
+          maxSamples);
+      bytes += URI_BYTES + kept * SAMPLE_BYTES + (long) uri.size() * values
+          * VALUE_BYTES;
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the memory budget in bytes, -1 for none
+   */
+  static long getBudget() {
+    Long megabytes = Long.getLong(BUDGET_PROPERTY);
+    if (megabytes == null) {
+      return Runtime.getRuntime().maxMemory() / 4;
+    }
+    return megabytes < 0 ? -1 : megabytes * 1024 * 1024;
+  }
+
+  /**
+   * @return the bytes in KB or MB
+   */
+  static String format(long bytes) {
+    if (bytes < 1024 * 1024) {
+      return Math.max(1, bytes / 1024) + " KB";
+    }
+    return (bytes / (1024 * 1024)) + " MB";
+  }
+}
@@ -26,6 +26,16 @@ public class HttpSample implements Serializable, Comparable<HttpSample> {
 
 	private double sizeInKb;
 
+	/**
+	 * Time to the first byte of the response and time to open the connection,
+	 * both included in {@link #duration}, in ms.
+	 */
+	private long latency;
+
+	private long connectTime;
+
+	private String threadName;
+
 	// Summarizer fields
 	private long summarizerMin;
 
@@ -131,6 +141,30 @@ public class HttpSample implements Serializable, Comparable<HttpSample> {
 		this.sizeInKb = d;
 	}
 
+	public long getLatency() {
+		return latency;
+	}
+
+	public void setLatency(long latency) {
+		this.latency = latency;
+	}
+
+	public long getConnectTime() {
+		return connectTime;
+	}
+
+	public void setConnectTime(long connectTime) {
+		this.connectTime = connectTime;
+	}
+
+	public String getThreadName() {
+		return threadName;
+	}
+
+	public void setThreadName(String threadName) {
+		this.threadName = threadName;
+	}
+
 	public boolean isErrorObtained() {
 		return errorObtained;
 	}
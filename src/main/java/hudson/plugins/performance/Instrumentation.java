@@ -0,0 +1,338 @@
+package hudson.plugins.performance;
+
+import hudson.util.ChartUtil;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jfree.chart.JFreeChart;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Time spent and memory allocated by the plugin in each phase of publishing
+ * and showing the reports. The measures of a build are printed in its
+ * console; the totals since Jenkins started are shown on the management page.
+ *
+ * <p>
+ * The allocated bytes are those of the measuring thread, as told by the JVM
+ * when it supports it; -1 otherwise.
+ */
+public final class Instrumentation {
+
+  public enum Phase {
+    LOCATE, COPY, PARSE, AGGREGATE, THRESHOLD, DASHBOARD, REPORT_MAP_LOAD, CHART_RENDER;
+
+    public String getDisplayName() {
+      switch (this) {
+      case LOCATE:
+        return Messages.Instrumentation_Locate();
+      case COPY:
+        return Messages.Instrumentation_Copy();
+      case PARSE:
+        return Messages.Instrumentation_Parse();
+      case AGGREGATE:
+        return Messages.Instrumentation_Aggregate();
+      case THRESHOLD:
+        return Messages.Instrumentation_Threshold();
+      case DASHBOARD:
+        return Messages.Instrumentation_Dashboard();
+      case REPORT_MAP_LOAD:
+        return Messages.Instrumentation_ReportMapLoad();
+      default:
+        return Messages.Instrumentation_ChartRender();
+      }
+    }
+  }
+
+  /**
+   * One or more measures of a phase added up.
+   */
+  public static final class Measure {
+
+    private final Phase phase;
+
+    private int count;
+
+    private long nanos;
+
+    private long maxNanos;
+
+    private long allocatedBytes;
+
+    private long items;
+
+    Measure(Phase phase) {
+      this.phase = phase;
+    }
+
+    Measure(Phase phase, long nanos, long allocatedBytes, long items) {
+      this(phase);
+      count = 1;
+      this.nanos = nanos;
+      maxNanos = nanos;
+      this.allocatedBytes = allocatedBytes;
+      this.items = items;
+    }
+
+    void add(Measure measure) {
+      count += measure.count;
+      nanos += measure.nanos;
+      maxNanos = Math.max(maxNanos, measure.maxNanos);
+      if (allocatedBytes < 0 || measure.allocatedBytes < 0) {
+        allocatedBytes = -1;
+      } else {
+        allocatedBytes += measure.allocatedBytes;
+      }
+      items += measure.items;
+    }
+
+    Measure copy() {
+      Measure copy = new Measure(phase);
+      copy.add(this);
+      return copy;
+    }
+
+    public Phase getPhase() {
+      return phase;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public long getTotalMillis() {
+      return nanos / 1000000;
+    }
+
+    public long getAverageMillis() {
+      return count == 0 ? 0 : nanos / count / 1000000;
+    }
+
+    public long getMaxMillis() {
+      return maxNanos / 1000000;
+    }
+
+    /**
+     * @return the bytes allocated, -1 if unknown
+     */
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    public long getAverageAllocatedKb() {
+      return count == 0 || allocatedBytes < 0 ? -1 : allocatedBytes / count
+          / 1024;
+    }
+
+    /**
+     * @return the samples handled, for the phases that handle samples
+     */
+    public long getItems() {
+      return items;
+    }
+
+    public long getItemsPerSecond() {
+      return nanos == 0 ? 0 : (long) (items * 1e9 / nanos);
+    }
+  }
+
+  /**
+   * A phase being measured.
+   */
+  public static final class Timer {
+
+    private final Phase phase;
+
+    private final long start;
+
+    private final long startAllocated;
+
+    private Timer(Phase phase) {
+      this.phase = phase;
+      startAllocated = allocatedBytes();
+      start = System.nanoTime();
+    }
+
+    public Measure stop() {
+      return stop(0);
+    }
+
+    /**
+     * @param items
+     *          the samples handled during the phase
+     */
+    public Measure stop(long items) {
+      long nanos = System.nanoTime() - start;
+      long allocated = allocatedBytes();
+      Measure measure = new Measure(phase, nanos,
+          allocated < 0 || startAllocated < 0 ? -1 : allocated
+              - startAllocated, items);
+      record(measure);
+      return measure;
+    }
+  }
+
+  /**
+   * The measures of one build, printed together once it is published.
+   */
+  static final class Summary {
+
+    private final Map<Phase, Measure> phases = new EnumMap<Phase, Measure>(
+        Phase.class);
+
+    private final List<String> parses = new ArrayList<String>();
+
+    void add(Measure measure) {
+      Measure total = phases.get(measure.getPhase());
+      if (total == null) {
+        phases.put(measure.getPhase(), measure.copy());
+      } else {
+        total.add(measure);
+      }
+    }
+
+    /**
+     * Adds the measure of parsing some reports, printed on its own line.
+     */
+    void addParse(Measure measure, String reports) {
+      add(measure);
+      parses.add("Performance: Parsed " + reports + ": " + measure.getItems()
+          + " samples in " + measure.getTotalMillis() + " ms ("
+          + measure.getItemsPerSecond() + " samples/s"
+          + allocated(measure) + ")");
+    }
+
+    void print(PrintStream logger) {
+      for (String parse : parses) {
+        logger.println(parse);
+      }
+      StringBuilder line = new StringBuilder("Performance: Timings");
+      String separator = " ";
+      for (Measure measure : phases.values()) {
+        line.append(separator).append(measure.getPhase().getDisplayName())
+            .append(' ').append(measure.getTotalMillis()).append(" ms");
+        separator = ", ";
+      }
+      long allocated = 0;
+      for (Measure measure : phases.values()) {
+        if (measure.getAllocatedBytes() < 0) {
+          allocated = -1;
+          break;
+        }
+        allocated += measure.getAllocatedBytes();
+      }
+      if (allocated >= 0) {
+        line.append("; ").append(allocated / (1024 * 1024)).append(
+            " MB allocated");
+      }
+      logger.println(line);
+    }
+
+    private static String allocated(Measure measure) {
+      return measure.getAllocatedBytes() < 0 ? "" : ", "
+          + measure.getAllocatedBytes() / (1024 * 1024) + " MB allocated";
+    }
+  }
+
+  private static final Map<Phase, Measure> TOTALS = new EnumMap<Phase, Measure>(
+      Phase.class);
+
+  private static final Method ALLOCATED_BYTES = getAllocatedBytesMethod();
+
+  private Instrumentation() {
+  }
+
+  public static Timer start(Phase phase) {
+    return new Timer(phase);
+  }
+
+  private static void record(Measure measure) {
+    synchronized (TOTALS) {
+      Measure total = TOTALS.get(measure.getPhase());
+      if (total == null) {
+        TOTALS.put(measure.getPhase(), measure.copy());
+      } else {
+        total.add(measure);
+      }
+    }
+  }
+
+  /**
+   * @return the totals of the phases measured since Jenkins started, or the
+   *         last reset
+   */
+  public static List<Measure> getTotals() {
+    List<Measure> totals = new ArrayList<Measure>();
+    synchronized (TOTALS) {
+      for (Measure total : TOTALS.values()) {
+        totals.add(total.copy());
+      }
+    }
+    return totals;
+  }
+
+  static void reset() {
+    synchronized (TOTALS) {
+      TOTALS.clear();
+    }
+  }
+
+  /**
+   * @return the bytes allocated so far by the current thread, -1 if the JVM
+   *         does not tell
+   */
+  static long allocatedBytes() {
+    if (ALLOCATED_BYTES == null) {
+      return -1;
+    }
+    try {
+      return (Long) ALLOCATED_BYTES.invoke(ManagementFactory.getThreadMXBean(),
+          Thread.currentThread().getId());
+    } catch (Exception e) {
+      // e.g. UnsupportedOperationException when the JVM can't measure it
+      return -1;
+    }
+  }
+
+  /**
+   * Looked up reflectively, as <tt>com.sun.management</tt> is missing from
+   * some JVMs.
+   *
+   * @return <tt>com.sun.management.ThreadMXBean.getThreadAllocatedBytes</tt>,
+   *         or null if the JVM doesn't have it
+   */
+  private static Method getAllocatedBytesMethod() {
+    try {
+      Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+      if (type.isInstance(ManagementFactory.getThreadMXBean())) {
+        return type.getMethod("getThreadAllocatedBytes", long.class);
+      }
+    } catch (Exception e) {
+      // not this JVM
+    } catch (LinkageError e) {
+      // not this JVM
+    }
+    return null;
+  }
+
+  /**
+   * {@link ChartUtil#generateGraph(StaplerRequest, StaplerResponse, JFreeChart, int, int)}
+   * measured as {@link Phase#CHART_RENDER}.
+   */
+  static void generateGraph(StaplerRequest request, StaplerResponse response,
+      JFreeChart chart, int width, int height) throws IOException {
+    Timer timer = start(Phase.CHART_RENDER);
+    try {
+      ChartUtil.generateGraph(request, response, chart, width, height);
+    } finally {
+      timer.stop();
+    }
+  }
+}
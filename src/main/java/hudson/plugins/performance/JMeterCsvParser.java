@@ -30,12 +30,21 @@ public class JMeterCsvParser extends PerformanceReportParser {
   public int responseCodeIdx = -1;
   public int successIdx = -1;
   public int urlIdx = -1;
+  public int latencyIdx = -1;
+  public int connectTimeIdx = -1;
+  public int threadNameIdx = -1;
   public final String pattern;
 
-  @DataBoundConstructor
   public JMeterCsvParser(String glob, String pattern, String delimiter,
       Boolean skipFirstLine) throws Exception {
-    super(glob);
+    this(glob, pattern, delimiter, skipFirstLine, 0, 0, false);
+  }
+
+  @DataBoundConstructor
+  public JMeterCsvParser(String glob, String pattern, String delimiter,
+      Boolean skipFirstLine, int skipFirstSeconds, int skipLastSeconds,
+      boolean detectSteadyState) throws Exception {
+    super(glob, skipFirstSeconds, skipLastSeconds, detectSteadyState);
     this.skipFirstLine = skipFirstLine;
     this.delimiter = delimiter;
     this.pattern = pattern;
@@ -52,6 +61,12 @@ public class JMeterCsvParser extends PerformanceReportParser {
         successIdx = i;
       } else if ("URL".equals(field)) {
         urlIdx = i;
+      } else if ("Latency".equals(field)) {
+        latencyIdx = i;
+      } else if ("Connect".equals(field)) {
+        connectTimeIdx = i;
+      } else if ("threadName".equals(field)) {
+        threadNameIdx = i;
       }
     }
     if (timestampIdx < 0 || elapsedIdx < 0 || responseCodeIdx < 0
@@ -123,11 +138,12 @@ public class JMeterCsvParser extends PerformanceReportParser {
     List<PerformanceReport> result = new ArrayList<PerformanceReport>();
 
     PrintStream logger = listener.getLogger();
+
     for (File f : reports) {
-      final PerformanceReport r = new PerformanceReport();
-      r.setReportFileName(f.getName());
+      final PerformanceReport r = newReport(build, f.getName());
       logger.println("Performance: Parsing JMeter report file " + f.getName());
       BufferedReader reader = new BufferedReader(new FileReader(f));
+      SteadyStateFilter filter = SteadyStateFilter.create(this, r);
       try {
         String line = reader.readLine();
         if (line != null && skipFirstLine) {
@@ -138,7 +154,11 @@ public class JMeterCsvParser extends PerformanceReportParser {
           HttpSample sample = getSample(line);
           if (sample != null) {
             try {
-              r.addSample(sample);
+              if (filter != null) {
+                filter.add(sample);
+              } else {
+                r.addSample(sample);
+              }
             } catch (SAXException e) {
               throw new RuntimeException("Unnable to add sample for line "
                   + line, e);
@@ -146,6 +166,11 @@ public class JMeterCsvParser extends PerformanceReportParser {
           }
           line = reader.readLine();
         }
+        if (filter != null) {
+          filter.finish(logger);
+        }
+      } catch (SAXException e) {
+        throw new RuntimeException("Unable to add sample", e);
       } finally {
         if (reader != null)
           reader.close();
@@ -169,7 +194,28 @@ public class JMeterCsvParser extends PerformanceReportParser {
     sample.setHttpCode(values[responseCodeIdx]);
     sample.setSuccessful(Boolean.valueOf(values[successIdx]));
     sample.setUri(values[urlIdx]);
+    // optional columns
+    if (latencyIdx >= 0 && latencyIdx < values.length) {
+      sample.setLatency(parseOptionalLong(values[latencyIdx]));
+    }
+    if (connectTimeIdx >= 0 && connectTimeIdx < values.length) {
+      sample.setConnectTime(parseOptionalLong(values[connectTimeIdx]));
+    }
+    if (threadNameIdx >= 0 && threadNameIdx < values.length) {
+      sample.setThreadName(values[threadNameIdx]);
+    }
     return sample;
   }
 
+  /**
+   * @return the value of an optional column, 0 when empty or not a number
+   */
+  private static long parseOptionalLong(String value) {
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
 }
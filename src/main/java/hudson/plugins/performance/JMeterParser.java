@@ -3,33 +3,42 @@ package hudson.plugins.performance;
 import hudson.Extension;
 import hudson.model.AbstractBuild;
 import hudson.model.TaskListener;
+import hudson.util.FormValidation;
 import hudson.util.IOException2;
 
 import org.kohsuke.stapler.DataBoundConstructor;
-import org.xml.sax.Attributes;
+import org.kohsuke.stapler.QueryParameter;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * Parser for JMeter.
@@ -39,7 +48,7 @@ import javax.xml.parsers.SAXParserFactory;
 public class JMeterParser extends PerformanceReportParser {
 
   private static final Logger LOGGER = Logger.getLogger(JMeterParser.class.getName());
-  private static final Cache<String, PerformanceReport> cache = CacheBuilder.newBuilder().maximumSize(100).build();
+  private static final Cache<String, PerformanceReport> cache = newCache(Footprint.getBudget());
 
   @Extension
   public static class DescriptorImpl extends PerformanceReportParserDescriptor {
@@ -47,11 +56,42 @@ public class JMeterParser extends PerformanceReportParser {
     public String getDisplayName() {
       return "JMeter";
     }
+
+    public FormValidation doCheckMergePattern(@QueryParameter String value) {
+      if (value == null || value.length() == 0) {
+        return FormValidation.ok();
+      }
+      try {
+        Pattern.compile(value);
+        return FormValidation.ok();
+      } catch (PatternSyntaxException e) {
+        return FormValidation.error(e.getDescription());
+      }
+    }
   }
 
-  @DataBoundConstructor
+  /**
+   * Regular expression matching the part of the report file names that tells
+   * the agents of a distributed test apart, e.g. <tt>-agent\d+</tt>. The files
+   * whose names are the same without it are merged into one report with
+   * that name, their samples taken in timestamp order.
+   */
+  public final String mergePattern;
+
   public JMeterParser(String glob) {
-    super(glob);
+    this(glob, 0, 0, false);
+  }
+
+  public JMeterParser(String glob, int skipFirstSeconds, int skipLastSeconds,
+                      boolean detectSteadyState) {
+    this(glob, skipFirstSeconds, skipLastSeconds, detectSteadyState, null);
+  }
+
+  @DataBoundConstructor
+  public JMeterParser(String glob, int skipFirstSeconds, int skipLastSeconds,
+                      boolean detectSteadyState, String mergePattern) {
+    super(glob, skipFirstSeconds, skipLastSeconds, detectSteadyState);
+    this.mergePattern = mergePattern;
   }
 
   @Override
@@ -64,14 +104,16 @@ public class JMeterParser extends PerformanceReportParser {
                                              Collection<File> reports, TaskListener listener) throws IOException {
     List<PerformanceReport> result = new ArrayList<PerformanceReport>();
 
-    SAXParserFactory factory = SAXParserFactory.newInstance();
-    factory.setValidating(false);
-    factory.setNamespaceAware(false);
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
     PrintStream logger = listener.getLogger();
 
-    for (File f : reports) {
+    for (Map.Entry<String, List<File>> group : groupReports(reports).entrySet()) {
+      String name = group.getKey();
+      List<File> files = group.getValue();
       try {
-        String fser = f.getPath() + ".serialized";
+        String fser = new File(files.get(0).getParentFile(), name).getPath() + ".serialized";
         ObjectInputStream in = null;
         synchronized (JMeterParser.class) {
           try {
@@ -79,6 +121,8 @@ public class JMeterParser extends PerformanceReportParser {
             if (r == null) {
               in = new ObjectInputStream(new FileInputStream(fser));
               r = (PerformanceReport) in.readObject();
+              // for the Apdex of caches written before it was counted
+              r.setApdexThresholds(getApdexThresholds(build));
             }
             result.add(r);
             continue;
@@ -92,74 +136,42 @@ public class JMeterParser extends PerformanceReportParser {
             }
           }
         }
-        SAXParser parser = factory.newSAXParser();
-        final PerformanceReport r = new PerformanceReport();
-        r.setReportFileName(f.getName());
-        logger.println("Performance: Parsing JMeter report file " + f.getPath());
-        parser.parse(f, new DefaultHandler() {
-          HttpSample currentSample;
-          int counter = 0;
-
-          /**
-           * Performance XML log format is in
-           * http://jakarta.apache.org
-           * /jmeter/usermanual/listeners.html
-           *
-           * There are two different tags which delimit jmeter
-           * samples: httpSample for http samples sample for non http
-           * samples
-           *
-           * There are also two different XML formats which we have to
-           * handle: v2.0 = "label", "timeStamp", "time", "success"
-           * v2.1 = "lb", "ts", "t", "s"
-           *
-           */
-          @Override
-          public void startElement(String uri, String localName, String qName,
-                                   Attributes attributes) throws SAXException {
-            if ("httpSample".equalsIgnoreCase(qName)
-              || "sample".equalsIgnoreCase(qName)) {
-              HttpSample sample = new HttpSample();
-              sample.setDate(new Date(
-                Long.valueOf(attributes.getValue("ts") != null
-                  ? attributes.getValue("ts")
-                  : attributes.getValue("timeStamp"))));
-              sample.setDuration(Long.valueOf(attributes.getValue("t") != null
-                ? attributes.getValue("t") : attributes.getValue("time")));
-              sample.setSuccessful(Boolean.valueOf(attributes.getValue("s") != null
-                ? attributes.getValue("s") : attributes.getValue("success")));
-              sample.setUri(attributes.getValue("lb") != null
-                ? attributes.getValue("lb") : attributes.getValue("label"));
-              sample.setHttpCode(attributes.getValue("rc") != null && attributes.getValue("rc").length() <= 3
-                ? attributes.getValue("rc") : "0");
-              sample.setSizeInKb(attributes.getValue("by") != null ? Double.valueOf(attributes.getValue("by")) / 1024d : 0d);
-              if (counter == 0) {
-                currentSample = sample;
-              }
-              counter++;
-            }
+        final PerformanceReport r = newReport(build, name);
+        final SteadyStateFilter filter = SteadyStateFilter.create(this, r);
+        List<SampleReader> readers = new ArrayList<SampleReader>();
+        try {
+          for (File f : files) {
+            logger.println("Performance: Parsing JMeter report file " + f.getPath());
+            readers.add(new JMeterSampleReader(factory, f));
           }
-
-          @Override
-          public void endElement(String uri, String localName, String qName) {
-            if ("httpSample".equalsIgnoreCase(qName)
-              || "sample".equalsIgnoreCase(qName)) {
-              if (counter == 1) {
-                try {
-                  r.addSample(currentSample);
-                } catch (SAXException e) {
-                  e.printStackTrace();
-                }
-              }
-              counter--;
+          SampleReader reader = readers.get(0);
+          if (readers.size() > 1) {
+            logger.println("Performance: Merging " + readers.size()
+              + " JMeter report files into " + name);
+            reader = SampleReader.merge(readers);
+          }
+          HttpSample sample;
+          while ((sample = reader.read()) != null) {
+            if (filter != null) {
+              filter.add(sample);
+            } else {
+              r.addSample(sample);
             }
           }
-        });
+        } finally {
+          for (SampleReader reader : readers) {
+            reader.close();
+          }
+        }
+        if (filter != null) {
+          filter.finish(logger);
+        }
         result.add(r);
         ObjectOutputStream out = null;
         synchronized (JMeterParser.class) {
           try {
             cache.put(fser, r);
+            Footprint.addResident(build, r);
             out = new ObjectOutputStream(new FileOutputStream(fser));
             out.writeObject(r);
           } catch (Exception unknown) {
@@ -171,13 +183,197 @@ public class JMeterParser extends PerformanceReportParser {
           }
         }
 
-      } catch (ParserConfigurationException e) {
-        throw new IOException2("Failed to create parser ", e);
+      } catch (MalformedReportException e) {
+        logger.println("Performance: Failed to parse " + e.file + ": "
+          + e.getCause().getMessage());
       } catch (SAXException e) {
-        logger.println("Performance: Failed to parse " + f + ": "
+        logger.println("Performance: Failed to parse " + name + ": "
           + e.getMessage());
       }
     }
     return result;
   }
+
+  /**
+   * @return a cache of the reports weighed by their footprint, up to the
+   *         memory budget, or of 100 reports without budget
+   */
+  static Cache<String, PerformanceReport> newCache(long budget) {
+    if (budget < 0) {
+      return CacheBuilder.newBuilder().maximumSize(100).build();
+    }
+    // weighed in KB, as the weights are ints
+    return CacheBuilder.newBuilder().maximumWeight(Math.max(1, budget / 1024))
+        .weigher(new Weigher<String, PerformanceReport>() {
+          public int weigh(String key, PerformanceReport report) {
+            return (int) Math.min(Integer.MAX_VALUE,
+                Math.max(1, report.getFootprint() / 1024));
+          }
+        }).build();
+  }
+
+  /**
+   * Forgets the reports kept in memory, so that they are read again from the
+   * files, e.g. by the benchmarks.
+   */
+  static void invalidateCache() {
+    cache.invalidateAll();
+  }
+
+  static long getCacheSize() {
+    return cache.size();
+  }
+
+  static CacheStats getCacheStats() {
+    return cache.stats();
+  }
+
+  /**
+   * @return the estimated heap taken by the reports kept in memory, in bytes
+   */
+  static long getCacheFootprint() {
+    long bytes = 0;
+    for (PerformanceReport r : cache.asMap().values()) {
+      bytes += r.getFootprint();
+    }
+    return bytes;
+  }
+
+  /**
+   * Groups the files by report name: their own name, unless a part of it
+   * matches {@link #mergePattern}, which is then left out.
+   */
+  Map<String, List<File>> groupReports(Collection<File> reports) {
+    Pattern pattern = null;
+    if (mergePattern != null && mergePattern.length() > 0) {
+      try {
+        pattern = Pattern.compile(mergePattern);
+      } catch (PatternSyntaxException e) {
+        LOGGER.warning("Invalid merge pattern, not merging. " + e.getMessage());
+      }
+    }
+    Map<String, List<File>> groups = new LinkedHashMap<String, List<File>>();
+    for (File f : reports) {
+      String name = f.getName();
+      if (pattern != null) {
+        name = pattern.matcher(name).replaceFirst("");
+      }
+      List<File> files = groups.get(name);
+      if (files == null) {
+        files = new ArrayList<File>();
+        groups.put(name, files);
+      }
+      files.add(f);
+    }
+    return groups;
+  }
+
+  /**
+   * Reads the samples of a JMeter XML log one by one.
+   *
+   * Performance XML log format is in
+   * http://jakarta.apache.org/jmeter/usermanual/listeners.html
+   *
+   * There are two different tags which delimit jmeter samples: httpSample
+   * for http samples sample for non http samples. Only the outermost ones
+   * are read, the nested ones are their sub-samples.
+   *
+   * There are also two different XML formats which we have to handle: v2.0
+   * = "label", "timeStamp", "time", "success" v2.1 = "lb", "ts", "t", "s"
+   *
+   * The latency "lt" and the connect time "ct" are only written by some
+   * versions.
+   */
+  private static final class JMeterSampleReader extends SampleReader {
+
+    private final File file;
+
+    private final InputStream in;
+
+    private final XMLStreamReader reader;
+
+    JMeterSampleReader(XMLInputFactory factory, File file) throws IOException {
+      this.file = file;
+      this.in = new BufferedInputStream(new FileInputStream(file));
+      try {
+        this.reader = factory.createXMLStreamReader(in);
+      } catch (XMLStreamException e) {
+        in.close();
+        throw new MalformedReportException(file, e);
+      }
+    }
+
+    @Override
+    HttpSample read() throws IOException {
+      try {
+        HttpSample sample = null;
+        int depth = 0;
+        while (reader.hasNext()) {
+          int event = reader.next();
+          if (event == XMLStreamConstants.START_ELEMENT && isSample()) {
+            if (depth == 0) {
+              sample = createSample();
+            }
+            depth++;
+          } else if (event == XMLStreamConstants.END_ELEMENT && isSample()) {
+            depth--;
+            if (depth == 0) {
+              return sample;
+            }
+          }
+        }
+        return null;
+      } catch (XMLStreamException e) {
+        throw new MalformedReportException(file, e);
+      }
+    }
+
+    private boolean isSample() {
+      return "httpSample".equalsIgnoreCase(reader.getLocalName())
+        || "sample".equalsIgnoreCase(reader.getLocalName());
+    }
+
+    private HttpSample createSample() {
+      HttpSample sample = new HttpSample();
+      sample.setDate(new Date(Long.valueOf(getAttribute("ts", "timeStamp"))));
+      sample.setDuration(Long.valueOf(getAttribute("t", "time")));
+      sample.setSuccessful(Boolean.valueOf(getAttribute("s", "success")));
+      sample.setUri(getAttribute("lb", "label"));
+      String rc = reader.getAttributeValue(null, "rc");
+      sample.setHttpCode(rc != null && rc.length() <= 3 ? rc : "0");
+      String by = reader.getAttributeValue(null, "by");
+      sample.setSizeInKb(by != null ? Double.valueOf(by) / 1024d : 0d);
+      String lt = reader.getAttributeValue(null, "lt");
+      sample.setLatency(lt != null ? Long.valueOf(lt) : 0);
+      String ct = reader.getAttributeValue(null, "ct");
+      sample.setConnectTime(ct != null ? Long.valueOf(ct) : 0);
+      sample.setThreadName(reader.getAttributeValue(null, "tn"));
+      return sample;
+    }
+
+    private String getAttribute(String name, String oldName) {
+      String value = reader.getAttributeValue(null, name);
+      return value != null ? value : reader.getAttributeValue(null, oldName);
+    }
+
+    public void close() throws IOException {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        // the stream is closed below
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  private static final class MalformedReportException extends IOException2 {
+
+    private final File file;
+
+    MalformedReportException(File file, XMLStreamException cause) {
+      super("Failed to parse " + file, cause);
+      this.file = file;
+    }
+  }
 }
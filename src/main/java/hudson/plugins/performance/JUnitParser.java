@@ -60,8 +60,7 @@ public class JUnitParser extends JMeterParser {
     for (File f : reports) {
       try {
         SAXParser parser = factory.newSAXParser();
-        final PerformanceReport r = new PerformanceReport();
-        r.setReportFileName(f.getName());
+        final PerformanceReport r = newReport(build, f.getName());
         parser.parse(f, new DefaultHandler() {
           private HttpSample currentSample;
           private int status;
@@ -7,8 +7,8 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.xml.sax.SAXException;
 
 import java.util.*;
-import java.util.regex.Pattern;
 import java.io.*;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 
@@ -19,6 +19,11 @@ import java.text.ParseException;
  */
 public class JmeterSummarizerParser extends PerformanceReportParser {
 
+  /**
+   * Starts the figures of an interval, the other lines of the log are skipped.
+   */
+  private static final String SUMMARISER = "jmeter.reporters.Summariser:";
+
   public final String logDateFormat;
 
   @Extension
@@ -45,6 +50,14 @@ public class JmeterSummarizerParser extends PerformanceReportParser {
     return "**/*.log";
   }
 
+  /**
+   * @return none, the samples being averages of many requests
+   */
+  @Override
+  protected ApdexThresholds getApdexThresholds(AbstractBuild<?, ?> build) {
+    return ApdexThresholds.NONE;
+  }
+
   public String getDefaultDatePattern() {
     return "yyyy/mm/dd HH:mm:ss";
   }
@@ -57,65 +70,138 @@ public class JmeterSummarizerParser extends PerformanceReportParser {
     PrintStream logger = listener.getLogger();
 
     for (File f : reports) {
-      Scanner s = null;
+      BufferedReader reader = null;
       try {
-        final PerformanceReport r = new PerformanceReport();
-        r.setReportFileName(f.getName());
-        r.setReportFileName(f.getName());
+        final PerformanceReport r = newReport(build, f.getName());
 
-        s = new Scanner(f);
-        String key;
-        String line;
+        reader = new BufferedReader(new FileReader(f));
         SimpleDateFormat dateFormat = new SimpleDateFormat(logDateFormat);
+        ParsePosition position = new ParsePosition(0);
+        SummariserLine summariser = new SummariserLine();
+        String line;
 
         logger.println("Performance: Parsing JMeterSummarizer report file " + f.getName());
-        while (s.hasNextLine()) {
-          line = s.nextLine().replaceAll("=", " ");
-          if (line.contains("+") && line.contains("jmeter.reporters.Summariser:")) {
-            Scanner scanner = null;
-            try {
-                    scanner = new Scanner(line);
-                    Pattern delimiter = scanner.delimiter();
-                    scanner.useDelimiter("INFO"); // as jmeter logs INFO mode
-                    HttpSample sample = new HttpSample();
-                    String dateString = scanner.next();
-                    sample.setDate(dateFormat.parse(dateString));
-                    scanner.findInLine("jmeter.reporters.Summariser:");
-                    scanner.useDelimiter("\\+");
-                    key = scanner.next().trim();
-                    scanner.useDelimiter(delimiter);
-                    scanner.next();
-                    sample.setSummarizerSamples(scanner.nextLong()); // set SamplesCount
-                    scanner.findInLine("Avg:"); // set response time
-                    sample.setDuration(scanner.nextLong());
-                    sample.setSuccessful(true);
-                    scanner.findInLine("Min:"); // set MIN
-                    sample.setSummarizerMin(scanner.nextLong());
-                    scanner.findInLine("Max:"); // set MAX
-                    sample.setSummarizerMax(scanner.nextLong());
-                    scanner.findInLine("Err:"); // set errors count
-                    sample.setSummarizerErrors(scanner.nextInt());
-                    // sample.setSummarizerErrors(
-                    // Float.valueOf(scanner.next().replaceAll("[()%]","")));
-                    sample.setUri(key);
-                    r.addSample(sample);
-            } finally {
-              if (scanner != null) scanner.close();
-            }
+        while ((line = reader.readLine()) != null) {
+          // most lines of the log are not the summariser's
+          int start = line.indexOf(SUMMARISER);
+          if (start < 0) {
+            continue;
+          }
+          HttpSample sample = summariser.read(line,
+              start + SUMMARISER.length());
+          if (sample == null) {
+            continue;
           }
+          // the date starts the line, followed by the log level
+          position.setIndex(0);
+          position.setErrorIndex(-1);
+          Date date = dateFormat.parse(line, position);
+          if (date == null) {
+            throw new ParseException("Unparseable date: \"" + line + "\"",
+                position.getErrorIndex());
+          }
+          sample.setDate(date);
+          r.addSample(sample);
         }
         result.add(r);
       } catch (FileNotFoundException e) {
         logger.println("File not found" + e.getMessage());
+      } catch (IOException e) {
+        logger.println(e.getMessage());
       } catch (SAXException e) {
         logger.println(e.getMessage());
       } catch (ParseException e) {
         logger.println(e.getMessage());
       } finally {
-        if (s != null) s.close();
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (IOException e) {
+            // ignore
+          }
+        }
       }
     }
     return result;
   }
 
-}
\ No newline at end of file
+  /**
+   * Reads the figures of a summariser line where they are, without splitting
+   * it, e.g. from <tt>jmeter.reporters.Summariser: label +    119 in    30s =
+   * 4.0/s Avg:   120 Min:    50 Max:  1234 Err:     0 (0.00%)</tt>. One
+   * instance reads all the lines of a file.
+   */
+  private static final class SummariserLine {
+
+    private String line;
+
+    private int index;
+
+    /**
+     * @param from
+     *          the index of the label, right after {@link #SUMMARISER}
+     * @return the sample of the line, without its date, or null if the line
+     *         isn't the summary of an interval
+     */
+    HttpSample read(String line, int from) {
+      this.line = line;
+      // the totals since the start are "label =" rather than "label +"
+      int plus = line.indexOf('+', from);
+      if (plus < 0) {
+        return null;
+      }
+      index = plus + 1;
+      long samples = nextLong();
+      long average = nextLong("Avg:");
+      long min = nextLong("Min:");
+      long max = nextLong("Max:");
+      long errors = nextLong("Err:");
+      if (samples < 0 || average < 0 || min < 0 || max < 0 || errors < 0) {
+        return null;
+      }
+      HttpSample sample = new HttpSample();
+      // '=' in the labels read as blanks, as they always have
+      sample.setUri(line.substring(from, plus).trim().replace('=', ' '));
+      sample.setSummarizerSamples(samples);
+      sample.setDuration(average);
+      sample.setSuccessful(true);
+      sample.setSummarizerMin(min);
+      sample.setSummarizerMax(max);
+      sample.setSummarizerErrors(errors);
+      return sample;
+    }
+
+    /**
+     * @return the number following the name, -1 if there is none
+     */
+    private long nextLong(String name) {
+      int found = line.indexOf(name, index);
+      if (found < 0) {
+        return -1;
+      }
+      index = found + name.length();
+      return nextLong();
+    }
+
+    /**
+     * @return the number at the index, after blanks, -1 if there is none
+     */
+    private long nextLong() {
+      int length = line.length();
+      while (index < length && Character.isWhitespace(line.charAt(index))) {
+        index++;
+      }
+      int start = index;
+      long value = 0;
+      while (index < length) {
+        char c = line.charAt(index);
+        if (c < '0' || c > '9') {
+          break;
+        }
+        value = value * 10 + (c - '0');
+        index++;
+      }
+      return index == start ? -1 : value;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package hudson.plugins.performance;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes compact JSON straight to the response, without building the whole
+ * document in memory first.
+ */
+final class JsonWriter {
+
+  private final Writer out;
+
+  private boolean comma;
+
+  JsonWriter(Writer out) {
+    this.out = out;
+  }
+
+  JsonWriter beginObject() throws IOException {
+    separate();
+    out.write('{');
+    comma = false;
+    return this;
+  }
+
+  JsonWriter endObject() throws IOException {
+    out.write('}');
+    comma = true;
+    return this;
+  }
+
+  JsonWriter beginArray() throws IOException {
+    separate();
+    out.write('[');
+    comma = false;
+    return this;
+  }
+
+  JsonWriter endArray() throws IOException {
+    out.write(']');
+    comma = true;
+    return this;
+  }
+
+  JsonWriter name(String name) throws IOException {
+    separate();
+    writeString(name);
+    out.write(':');
+    comma = false;
+    return this;
+  }
+
+  JsonWriter value(String value) throws IOException {
+    separate();
+    writeString(value);
+    comma = true;
+    return this;
+  }
+
+  JsonWriter value(long value) throws IOException {
+    separate();
+    out.write(Long.toString(value));
+    comma = true;
+    return this;
+  }
+
+  /**
+   * Writes <code>null</code> for the values JSON has no number for.
+   */
+  JsonWriter value(double value) throws IOException {
+    separate();
+    out.write(Double.isNaN(value) || Double.isInfinite(value) ? "null"
+        : Double.toString(value));
+    comma = true;
+    return this;
+  }
+
+  JsonWriter value(boolean value) throws IOException {
+    separate();
+    out.write(Boolean.toString(value));
+    comma = true;
+    return this;
+  }
+
+  void flush() throws IOException {
+    out.flush();
+  }
+
+  private void separate() throws IOException {
+    if (comma) {
+      out.write(',');
+    }
+  }
+
+  private void writeString(String value) throws IOException {
+    if (value == null) {
+      out.write("null");
+      return;
+    }
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < 0x20) {
+        out.write(String.format("\\u%04x", (int) c));
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+}
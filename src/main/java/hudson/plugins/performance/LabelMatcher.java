@@ -0,0 +1,199 @@
+package hudson.plugins.performance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Maps sample labels to values through an ordered list of label patterns.
+ *
+ * <p>
+ * A pattern is either a glob (<tt>*</tt> and <tt>?</tt> wildcards, the
+ * default) or a regular expression when prefixed with <tt>regex:</tt>. The
+ * first pattern, in the order they were added, that matches the whole label
+ * wins.
+ *
+ * <p>
+ * Patterns are compiled once: wildcard-free globs go into a hash map and all
+ * the others are folded into a single alternation, so a lookup is one hash
+ * probe plus one regex match however many patterns there are. Regular
+ * expressions with back references or named groups would not keep their
+ * meaning inside the alternation and are matched on their own.
+ *
+ * @param <T>
+ *          the value associated with each pattern
+ */
+public class LabelMatcher<T> {
+
+  public static final String REGEX_PREFIX = "regex:";
+
+  private final List<T> values = new ArrayList<T>();
+
+  private final Map<String, Integer> literals = new HashMap<String, Integer>();
+
+  private final StringBuilder alternation = new StringBuilder();
+
+  /**
+   * Index in {@link #values} of each alternative of {@link #pattern}, in
+   * order.
+   */
+  private final List<Integer> alternatives = new ArrayList<Integer>();
+
+  /**
+   * Capturing group wrapping each alternative of {@link #pattern}; user
+   * expressions may contain groups of their own.
+   */
+  private final List<Integer> groups = new ArrayList<Integer>();
+
+  private int groupCount;
+
+  private Pattern pattern;
+
+  /**
+   * Index in {@link #values} of each pattern matched on its own, in order.
+   */
+  private final List<Integer> standaloneIndexes = new ArrayList<Integer>();
+
+  private final List<Pattern> standalones = new ArrayList<Pattern>();
+
+  /**
+   * Adds a pattern at the lowest priority.
+   *
+   * @throws IllegalArgumentException
+   *           if the pattern is not a valid regular expression
+   */
+  public LabelMatcher<T> add(String labelPattern, T value) {
+    int index = values.size();
+    String regex;
+    int ownGroups = 0;
+    if (labelPattern.startsWith(REGEX_PREFIX)) {
+      regex = labelPattern.substring(REGEX_PREFIX.length());
+      Pattern own;
+      try {
+        own = Pattern.compile(regex);
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException("Invalid regular expression '"
+            + regex + "': " + e.getDescription());
+      }
+      if (isStandalone(regex)) {
+        values.add(value);
+        standaloneIndexes.add(index);
+        standalones.add(own);
+        return this;
+      }
+      ownGroups = own.matcher("").groupCount();
+    } else if (labelPattern.indexOf('*') < 0 && labelPattern.indexOf('?') < 0) {
+      values.add(value);
+      if (!literals.containsKey(labelPattern)) {
+        literals.put(labelPattern, index);
+      }
+      return this;
+    } else {
+      regex = globToRegex(labelPattern);
+    }
+    StringBuilder combined = new StringBuilder(alternation);
+    if (combined.length() > 0) {
+      combined.append('|');
+    }
+    combined.append('(').append(regex).append(')');
+    try {
+      pattern = Pattern.compile("(?:" + combined + ")");
+    } catch (PatternSyntaxException e) {
+      throw new IllegalArgumentException("Invalid regular expression '"
+          + regex + "' with the previous ones: " + e.getDescription());
+    }
+    values.add(value);
+    alternation.setLength(0);
+    alternation.append(combined);
+    alternatives.add(index);
+    groups.add(groupCount + 1);
+    groupCount += ownGroups + 1;
+    return this;
+  }
+
+  public boolean isEmpty() {
+    return values.isEmpty();
+  }
+
+  /**
+   * @return the value of the first pattern matching the label, or
+   *         <code>null</code> if none does
+   */
+  public T match(String label) {
+    if (label == null) {
+      return null;
+    }
+    Integer literal = literals.get(label);
+    int best = literal != null ? literal : Integer.MAX_VALUE;
+    if (!alternatives.isEmpty() && alternatives.get(0) < best) {
+      Matcher m = pattern.matcher(label);
+      if (m.matches()) {
+        for (int i = 0; i < alternatives.size() && alternatives.get(i) < best; i++) {
+          if (m.start(groups.get(i)) >= 0) {
+            best = alternatives.get(i);
+            break;
+          }
+        }
+      }
+    }
+    for (int i = 0; i < standalones.size()
+        && standaloneIndexes.get(i) < best; i++) {
+      if (standalones.get(i).matcher(label).matches()) {
+        best = standaloneIndexes.get(i);
+        break;
+      }
+    }
+    return best == Integer.MAX_VALUE ? null : values.get(best);
+  }
+
+  /**
+   * @return whether the expression has a back reference or a named group,
+   *         whose numbering or name would clash inside the alternation
+   */
+  static boolean isStandalone(String regex) {
+    boolean quoted = false;
+    for (int i = 0; i < regex.length() - 1; i++) {
+      char c = regex.charAt(i);
+      char next = regex.charAt(i + 1);
+      if (quoted) {
+        if (c == '\\' && next == 'E') {
+          quoted = false;
+          i++;
+        }
+      } else if (c == '\\') {
+        if ((next >= '1' && next <= '9') || next == 'k') {
+          return true;
+        }
+        quoted = next == 'Q';
+        i++;
+      } else if (c == '(' && regex.startsWith("?<", i + 1)
+          && i + 3 < regex.length() && Character.isLetter(regex.charAt(i + 3))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static String globToRegex(String glob) {
+    StringBuilder sb = new StringBuilder(glob.length() + 16);
+    int literalStart = 0;
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '*' || c == '?') {
+        if (i > literalStart) {
+          sb.append(Pattern.quote(glob.substring(literalStart, i)));
+        }
+        sb.append(c == '*' ? ".*" : ".");
+        literalStart = i + 1;
+      }
+    }
+    if (literalStart < glob.length()) {
+      sb.append(Pattern.quote(glob.substring(literalStart)));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,192 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Rules collapsing the labels of the samples into a bounded set of logical
+ * endpoints, e.g. <tt>/user/1234/orders</tt> into <tt>/user/{id}/orders</tt>,
+ * so that labels embedding IDs don't each get their own {@link UriReport}.
+ *
+ * <p>
+ * One rule per line, either a path template, where each <tt>{name}</tt>
+ * stands for one path segment and the matching labels become the template,
+ * or <tt>regex:&lt;expression&gt; =&gt; &lt;label&gt;</tt>, where the label
+ * may refer to the groups of the expression as <tt>$1</tt>, <tt>$2</tt>...
+ * The first rule matching the whole label applies, the labels matching none
+ * are kept as they are.
+ *
+ * <p>
+ * The rules are compiled once, and the label each distinct label maps to is
+ * cached, up to {@link #MAX_CACHED} of them, so most samples only cost a hash
+ * lookup.
+ */
+public class LabelRules {
+
+  private static final Logger LOGGER = Logger.getLogger(LabelRules.class
+      .getName());
+
+  static final int MAX_CACHED = 10000;
+
+  private static final String ARROW = " => ";
+
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\{[^/{}]*\\}");
+
+  private static final Pattern GROUP_REFERENCE = Pattern.compile("\\$(\\d+)");
+
+  private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+  private final List<String> replacements = new ArrayList<String>();
+
+  private final Map<String, String> cache = new HashMap<String, String>();
+
+  /**
+   * The labels the rules produced, mapped to themselves so that the samples
+   * share one instance of each.
+   */
+  private final Map<String, String> labels = new HashMap<String, String>();
+
+  /**
+   * @throws IllegalArgumentException
+   *           on the first invalid line, with its line number
+   */
+  public static LabelRules parse(String rules) {
+    LabelRules labelRules = new LabelRules();
+    if (rules == null) {
+      return labelRules;
+    }
+    String[] lines = rules.split("\r?\n");
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].trim();
+      if (line.length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+      try {
+        if (line.startsWith(LabelMatcher.REGEX_PREFIX)) {
+          labelRules.addRegex(line.substring(LabelMatcher.REGEX_PREFIX.length()));
+        } else {
+          labelRules.addTemplate(line);
+        }
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": "
+            + e.getMessage());
+      }
+    }
+    return labelRules;
+  }
+
+  /**
+   * @return the rules configured in the publisher of the build's project, or
+   *         none
+   */
+  public static LabelRules of(AbstractBuild<?, ?> build) {
+    if (build == null) {
+      return new LabelRules();
+    }
+    PerformancePublisher publisher = build.getProject().getPublishersList()
+        .get(PerformancePublisher.class);
+    if (publisher == null) {
+      return new LabelRules();
+    }
+    try {
+      return parse(publisher.getLabelRules());
+    } catch (IllegalArgumentException e) {
+      LOGGER.warning("Invalid label rules, keeping the labels. "
+          + e.getMessage());
+      return new LabelRules();
+    }
+  }
+
+  private void addRegex(String rule) {
+    int arrow = rule.lastIndexOf(ARROW);
+    if (arrow < 0) {
+      throw new IllegalArgumentException(
+          "Expected 'regex:<expression> => <label>'");
+    }
+    Pattern pattern;
+    try {
+      pattern = Pattern.compile(rule.substring(0, arrow).trim());
+    } catch (PatternSyntaxException e) {
+      throw new IllegalArgumentException("Invalid regular expression '"
+          + e.getPattern() + "'");
+    }
+    String label = rule.substring(arrow + ARROW.length()).trim();
+    int groups = pattern.matcher("").groupCount();
+    Matcher reference = GROUP_REFERENCE.matcher(label);
+    while (reference.find()) {
+      if (Integer.parseInt(reference.group(1)) > groups) {
+        throw new IllegalArgumentException("No group " + reference.group(1)
+            + " in '" + pattern.pattern() + "'");
+      }
+    }
+    patterns.add(pattern);
+    replacements.add(label);
+  }
+
+  private void addTemplate(String template) {
+    StringBuilder regex = new StringBuilder();
+    Matcher placeholder = PLACEHOLDER.matcher(template);
+    int end = 0;
+    while (placeholder.find()) {
+      regex.append(Pattern.quote(template.substring(end, placeholder.start())));
+      regex.append("[^/?#]+");
+      end = placeholder.end();
+    }
+    if (end == 0) {
+      throw new IllegalArgumentException("No {placeholder} in '" + template
+          + "'");
+    }
+    regex.append(Pattern.quote(template.substring(end)));
+    patterns.add(Pattern.compile(regex.toString()));
+    replacements.add(Matcher.quoteReplacement(template));
+  }
+
+  public boolean isEmpty() {
+    return patterns.isEmpty();
+  }
+
+  /**
+   * @return the label of the first rule matching the whole label, or the
+   *         label itself
+   */
+  public String normalize(String label) {
+    if (patterns.isEmpty()) {
+      return label;
+    }
+    String normalized = cache.get(label);
+    if (normalized != null) {
+      return normalized;
+    }
+    normalized = label;
+    for (int i = 0; i < patterns.size(); i++) {
+      Matcher matcher = patterns.get(i).matcher(label);
+      if (matcher.matches()) {
+        // replace the whole match found, replaceFirst would look for the
+        // first match again and may find a shorter one
+        StringBuffer replaced = new StringBuffer();
+        matcher.appendReplacement(replaced, replacements.get(i));
+        matcher.appendTail(replaced);
+        normalized = replaced.toString();
+        String shared = labels.get(normalized);
+        if (shared == null) {
+          labels.put(normalized, normalized);
+        } else {
+          normalized = shared;
+        }
+        break;
+      }
+    }
+    if (cache.size() < MAX_CACHED) {
+      cache.put(label, normalized);
+    }
+    return normalized;
+  }
+}
@@ -10,6 +10,7 @@ import org.kohsuke.stapler.StaplerProxy;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.List;
 
 public class PerformanceBuildAction implements Action, StaplerProxy {
@@ -21,10 +22,22 @@ public class PerformanceBuildAction implements Action, StaplerProxy {
    */
   private final List<PerformanceReportParser> parsers;
 
+  /**
+   * Apdex T of the job when the build was recorded, and per label; 0 in the
+   * builds recorded before they were kept.
+   */
+  private long apdexThreshold;
+
+  private String apdexLabelThresholds;
+
   private transient final PrintStream hudsonConsoleWriter;
 
   private transient WeakReference<PerformanceReportMap> performanceReportMap;
 
+  private transient List<ReportSummary> reportSummaries;
+
+  private transient boolean lastBuildSummariesLinked;
+
   private static final Logger logger = Logger.getLogger(PerformanceBuildAction.class.getName());
 
 
@@ -86,6 +99,90 @@ public class PerformanceBuildAction implements Action, StaplerProxy {
     return reportMap;
   }
 
+  /**
+   * Summaries of the reports of this build, read from disk. The reports are
+   * never parsed here: if {@link ReportSummaryWorker} has not got to this
+   * build yet, it is queued and there are no summaries until it is done.
+   */
+  public synchronized List<ReportSummary> getReportSummaries() {
+    if (reportSummaries == null) {
+      List<ReportSummary> summaries = ReportSummary.load(build);
+      if (summaries == null) {
+        ReportSummaryWorker.schedule(build);
+        return Collections.emptyList();
+      }
+      reportSummaries = summaries;
+    }
+    return reportSummaries;
+  }
+
+  /**
+   * @return true while the summaries of this build are being computed
+   */
+  public boolean isSummaryPending() {
+    return !ReportSummary.exists(build);
+  }
+
+  public ReportSummary getReportSummary(String reportFileName) {
+    for (ReportSummary summary : getReportSummaries()) {
+      if (summary.getReportFileName().equals(reportFileName)) {
+        return summary;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Links the summaries with those of the previous build, for the diffs. The
+   * previous build's summaries are only used if they have already been
+   * computed.
+   */
+  synchronized void linkLastBuildSummaries() {
+    if (lastBuildSummariesLinked || isSummaryPending()) {
+      return;
+    }
+    lastBuildSummariesLinked = true;
+    AbstractBuild<?, ?> previousBuild = build.getPreviousBuild();
+    if (previousBuild == null) {
+      return;
+    }
+    PerformanceBuildAction previousAction = previousBuild
+        .getAction(PerformanceBuildAction.class);
+    if (previousAction == null) {
+      return;
+    }
+    if (!ReportSummary.exists(previousBuild)) {
+      ReportSummaryWorker.schedule(previousBuild);
+      return;
+    }
+    for (ReportSummary summary : getReportSummaries()) {
+      ReportSummary lastSummary = previousAction.getReportSummary(summary
+          .getReportFileName());
+      if (lastSummary != null) {
+        summary.setLastBuildSummary(lastSummary);
+      }
+    }
+  }
+
+  /**
+   * Keeps the Apdex thresholds the build is recorded with.
+   */
+  void setApdexThresholds(long threshold, String labelThresholds) {
+    apdexThreshold = threshold;
+    apdexLabelThresholds = labelThresholds;
+  }
+
+  /**
+   * @return the Apdex thresholds the build was recorded with, null if they
+   *         were not kept
+   */
+  ApdexThresholds getApdexThresholds() {
+    if (apdexThreshold <= 0) {
+      return null;
+    }
+    return ApdexThresholds.parseOrDefault(apdexThreshold, apdexLabelThresholds);
+  }
+
   public void setPerformanceReportMap(
       WeakReference<PerformanceReportMap> performanceReportMap) {
     this.performanceReportMap = performanceReportMap;
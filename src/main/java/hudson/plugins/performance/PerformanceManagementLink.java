@@ -0,0 +1,106 @@
+package hudson.plugins.performance;
+
+import hudson.Extension;
+import hudson.model.Hudson;
+import hudson.model.ManagementLink;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Page of <i>Manage Jenkins</i> showing the {@link Instrumentation} totals of
+ * the plugin and the use of the JMeter report cache, also served as JSON by
+ * <tt>metrics</tt>.
+ */
+@Extension
+public class PerformanceManagementLink extends ManagementLink {
+
+  @Override
+  public String getIconFileName() {
+    return "graph.gif";
+  }
+
+  @Override
+  public String getUrlName() {
+    return "performance-metrics";
+  }
+
+  public String getDisplayName() {
+    return Messages.ManagementLink_DisplayName();
+  }
+
+  @Override
+  public String getDescription() {
+    return Messages.ManagementLink_Description();
+  }
+
+  public List<Instrumentation.Measure> getTotals() {
+    return Instrumentation.getTotals();
+  }
+
+  public long getCachedReports() {
+    return JMeterParser.getCacheSize();
+  }
+
+  public String getCacheFootprint() {
+    return Footprint.format(JMeterParser.getCacheFootprint());
+  }
+
+  public CacheStats getCacheStats() {
+    return JMeterParser.getCacheStats();
+  }
+
+  public String getMemoryBudget() {
+    long budget = Footprint.getBudget();
+    return budget < 0 ? "-" : Footprint.format(budget);
+  }
+
+  public void doMetrics(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    Hudson.getInstance().checkPermission(Hudson.ADMINISTER);
+    response.setContentType("application/json;charset=UTF-8");
+    JsonWriter json = new JsonWriter(response.getWriter());
+    json.beginObject();
+    json.name("phases").beginArray();
+    for (Instrumentation.Measure total : getTotals()) {
+      json.beginObject();
+      json.name("phase").value(total.getPhase().name());
+      json.name("count").value(total.getCount());
+      json.name("totalMillis").value(total.getTotalMillis());
+      json.name("averageMillis").value(total.getAverageMillis());
+      json.name("maxMillis").value(total.getMaxMillis());
+      json.name("allocatedBytes").value(total.getAllocatedBytes());
+      json.name("samples").value(total.getItems());
+      json.name("samplesPerSecond").value(total.getItemsPerSecond());
+      json.endObject();
+    }
+    json.endArray();
+    CacheStats stats = getCacheStats();
+    json.name("cache").beginObject();
+    json.name("reports").value(getCachedReports());
+    json.name("footprintBytes").value(JMeterParser.getCacheFootprint());
+    json.name("hits").value(stats.hitCount());
+    json.name("misses").value(stats.missCount());
+    json.name("evictions").value(stats.evictionCount());
+    json.endObject();
+    json.name("memoryBudgetBytes").value(Footprint.getBudget());
+    json.endObject();
+    json.flush();
+  }
+
+  public void doReset(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    Hudson.getInstance().checkPermission(Hudson.ADMINISTER);
+    if (!"POST".equals(request.getMethod())) {
+      response.sendError(StaplerResponse.SC_METHOD_NOT_ALLOWED);
+      return;
+    }
+    Instrumentation.reset();
+    response.sendRedirect(".");
+  }
+}
@@ -8,7 +8,6 @@ import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
-import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -24,9 +23,13 @@ import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.category.LineAndShapeRenderer;
 import org.jfree.chart.renderer.category.BarRenderer;
+import org.jfree.chart.renderer.xy.StandardXYItemRenderer;
 import org.jfree.chart.renderer.xy.XYItemRenderer;
 import org.jfree.chart.title.LegendTitle;
 import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.time.FixedMillisecond;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
 import org.jfree.data.xy.XYDataset;
 import org.jfree.ui.RectangleEdge;
 import org.jfree.ui.RectangleInsets;
@@ -213,6 +216,52 @@ public final class PerformanceProjectAction implements Action {
     return chart;
   }
 
+  protected static JFreeChart createApdexChart(final CategoryDataset dataset) {
+
+    final JFreeChart chart = ChartFactory.createLineChart(
+        Messages.ProjectAction_Apdex(), // chart title
+        null, // unused
+        Messages.ProjectAction_Apdex(), // range axis label
+        dataset, // data
+        PlotOrientation.VERTICAL, // orientation
+        true, // include legend
+        true, // tooltips
+        false // urls
+    );
+
+    final LegendTitle legend = chart.getLegend();
+    legend.setPosition(RectangleEdge.BOTTOM);
+
+    chart.setBackgroundPaint(Color.white);
+
+    final CategoryPlot plot = chart.getCategoryPlot();
+
+    plot.setBackgroundPaint(Color.WHITE);
+    plot.setOutlinePaint(null);
+    plot.setRangeGridlinesVisible(true);
+    plot.setRangeGridlinePaint(Color.black);
+
+    CategoryAxis domainAxis = new ShiftedCategoryAxis(null);
+    plot.setDomainAxis(domainAxis);
+    domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+    domainAxis.setLowerMargin(0.0);
+    domainAxis.setUpperMargin(0.0);
+    domainAxis.setCategoryMargin(0.0);
+
+    // the score is between 0 and 1
+    final NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
+    rangeAxis.setRange(0.0, 1.0);
+
+    final LineAndShapeRenderer renderer = (LineAndShapeRenderer) plot.getRenderer();
+    renderer.setBaseStroke(new BasicStroke(4.0f));
+    ColorPalette.apply(renderer);
+
+    // crop extra space around the graph
+    plot.setInsets(new RectangleInsets(5.0, 0, 0, 5.0));
+
+    return chart;
+  }
+
   protected static JFreeChart createSummarizerChart(CategoryDataset dataset,
       String yAxis, String chartTitle) {
 
@@ -279,6 +328,162 @@ public final class PerformanceProjectAction implements Action {
     return chart;
   }
 
+  /**
+   * Requests and errors per second over the buckets of a timeline.
+   */
+  protected static JFreeChart createThroughputTimelineChart(
+      ThroughputTimeline timeline, String title) {
+    TimeSeries requests = new TimeSeries(
+        Messages.ProjectAction_RequestsPerSeconds(), FixedMillisecond.class);
+    TimeSeries errors = new TimeSeries(Messages.ProjectAction_Errors(),
+        FixedMillisecond.class);
+    for (int i = 0; i < timeline.size(); i++) {
+      FixedMillisecond period = new FixedMillisecond(timeline.getStart(i));
+      requests.add(period, timeline.getThroughput(i));
+      errors.add(period, timeline.getErrors(i) * 1000d
+          / timeline.getBucketWidth());
+    }
+    TimeSeriesCollection dataset = new TimeSeriesCollection();
+    dataset.addSeries(requests);
+    dataset.addSeries(errors);
+
+    final JFreeChart chart = ChartFactory.createTimeSeriesChart(title, null,
+        Messages.ProjectAction_RequestsPerSeconds(), dataset, true, true,
+        false);
+    chart.setBackgroundPaint(Color.white);
+
+    final LegendTitle legend = chart.getLegend();
+    legend.setPosition(RectangleEdge.BOTTOM);
+
+    final XYPlot plot = chart.getXYPlot();
+    plot.setBackgroundPaint(Color.white);
+    plot.setDomainGridlinePaint(Color.black);
+    plot.setRangeGridlinePaint(Color.black);
+
+    final DateAxis axis = (DateAxis) plot.getDomainAxis();
+    axis.setDateFormatOverride(new SimpleDateFormat("HH:mm:ss"));
+
+    final XYItemRenderer renderer = plot.getRenderer();
+    renderer.setSeriesPaint(0, ColorPalette.BLUE);
+    renderer.setSeriesPaint(1, ColorPalette.RED);
+
+    return chart;
+  }
+
+  /**
+   * Average response time, latency and connect time of the samples started in
+   * each bucket of the given width.
+   */
+  protected static JFreeChart createTimeBreakdownChart(
+      List<HttpSample> samples, long bucketWidth, String title) {
+    // sums of the durations, latencies and connect times, and sample count
+    TreeMap<Long, long[]> buckets = new TreeMap<Long, long[]>();
+    for (HttpSample sample : samples) {
+      if (sample.getDate() == null) {
+        continue;
+      }
+      long timestamp = sample.getDate().getTime();
+      Long start = timestamp - timestamp % bucketWidth;
+      long[] sums = buckets.get(start);
+      if (sums == null) {
+        sums = new long[4];
+        buckets.put(start, sums);
+      }
+      sums[0] += sample.getDuration();
+      sums[1] += sample.getLatency();
+      sums[2] += sample.getConnectTime();
+      sums[3]++;
+    }
+    TimeSeries durations = new TimeSeries(Messages.ProjectAction_Average(),
+        FixedMillisecond.class);
+    TimeSeries latencies = new TimeSeries(Messages.ProjectAction_Latency(),
+        FixedMillisecond.class);
+    TimeSeries connectTimes = new TimeSeries(
+        Messages.ProjectAction_ConnectTime(), FixedMillisecond.class);
+    for (Map.Entry<Long, long[]> bucket : buckets.entrySet()) {
+      FixedMillisecond period = new FixedMillisecond(bucket.getKey());
+      long[] sums = bucket.getValue();
+      durations.add(period, sums[0] / (double) sums[3]);
+      latencies.add(period, sums[1] / (double) sums[3]);
+      connectTimes.add(period, sums[2] / (double) sums[3]);
+    }
+    TimeSeriesCollection dataset = new TimeSeriesCollection();
+    dataset.addSeries(durations);
+    dataset.addSeries(latencies);
+    dataset.addSeries(connectTimes);
+
+    final JFreeChart chart = ChartFactory.createTimeSeriesChart(title, null,
+        "ms", dataset, true, true, false);
+    chart.setBackgroundPaint(Color.white);
+
+    final LegendTitle legend = chart.getLegend();
+    legend.setPosition(RectangleEdge.BOTTOM);
+
+    final XYPlot plot = chart.getXYPlot();
+    plot.setBackgroundPaint(Color.white);
+    plot.setDomainGridlinePaint(Color.black);
+    plot.setRangeGridlinePaint(Color.black);
+
+    final DateAxis axis = (DateAxis) plot.getDomainAxis();
+    axis.setDateFormatOverride(new SimpleDateFormat("HH:mm:ss"));
+
+    final XYItemRenderer renderer = plot.getRenderer();
+    renderer.setSeriesPaint(0, ColorPalette.BLUE);
+    renderer.setSeriesPaint(1, ColorPalette.YELLOW);
+    renderer.setSeriesPaint(2, ColorPalette.RED);
+
+    return chart;
+  }
+
+  /**
+   * Requests in flight over the buckets of a timeline, with the average
+   * latency of the requests completed in each bucket on a second axis.
+   */
+  protected static JFreeChart createConcurrencyChart(
+      ThroughputTimeline timeline, String title) {
+    TimeSeries concurrency = new TimeSeries(Messages.ProjectAction_Concurrency(),
+        FixedMillisecond.class);
+    TimeSeries latency = new TimeSeries(Messages.ProjectAction_Average(),
+        FixedMillisecond.class);
+    for (int i = 0; i < timeline.size(); i++) {
+      FixedMillisecond period = new FixedMillisecond(timeline.getStart(i));
+      concurrency.add(period, timeline.getConcurrency(i));
+      if (timeline.getCount(i) > 0) {
+        latency.add(period, timeline.getAverageLatency(i));
+      }
+    }
+
+    final JFreeChart chart = ChartFactory.createTimeSeriesChart(title, null,
+        Messages.ProjectAction_Concurrency(), new TimeSeriesCollection(
+            concurrency), true, true, false);
+    chart.setBackgroundPaint(Color.white);
+
+    final LegendTitle legend = chart.getLegend();
+    legend.setPosition(RectangleEdge.BOTTOM);
+
+    final XYPlot plot = chart.getXYPlot();
+    plot.setBackgroundPaint(Color.white);
+    plot.setDomainGridlinePaint(Color.black);
+    plot.setRangeGridlinePaint(Color.black);
+
+    final NumberAxis latencyAxis = new NumberAxis("ms");
+    latencyAxis.setLowerBound(0);
+    plot.setRangeAxis(1, latencyAxis);
+    plot.setDataset(1, new TimeSeriesCollection(latency));
+    plot.mapDatasetToRangeAxis(1, 1);
+
+    final StandardXYItemRenderer latencyRenderer = new StandardXYItemRenderer();
+    latencyRenderer.setSeriesPaint(0, ColorPalette.RED);
+    plot.setRenderer(1, latencyRenderer);
+
+    final DateAxis axis = (DateAxis) plot.getDomainAxis();
+    axis.setDateFormatOverride(new SimpleDateFormat("HH:mm:ss"));
+
+    plot.getRenderer().setSeriesPaint(0, ColorPalette.BLUE);
+
+    return chart;
+  }
+
     private String getPerformanceReportNameFile(StaplerRequest request) {
         PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
         request.bindParameters(performanceReportPosition);
@@ -314,6 +519,9 @@ public final class PerformanceProjectAction implements Action {
 
     int nbBuildsToAnalyze = builds.size();
     for (AbstractBuild<?, ?> currentBuild : builds) {
+      if (buildsLimits.passed(nbBuildsToAnalyze)) {
+        break;
+      }
       if (buildsLimits.in(nbBuildsToAnalyze)) {
 
         if (!buildsLimits.includedByStep(currentBuild.number)) {
@@ -326,9 +534,8 @@ public final class PerformanceProjectAction implements Action {
         if (performanceBuildAction == null) {
           continue;
         }
-        PerformanceReport performanceReport = performanceBuildAction
-            .getPerformanceReportMap().getPerformanceReport(
-                performanceReportNameFile);
+        ReportSummary performanceReport = performanceBuildAction
+            .getReportSummary(performanceReportNameFile);
         if (performanceReport == null) {
           nbBuildsToAnalyze--;
           continue;
@@ -338,7 +545,7 @@ public final class PerformanceProjectAction implements Action {
       }
       nbBuildsToAnalyze--;
     }
-    ChartUtil.generateGraph(request, response,
+    Instrumentation.generateGraph(request, response,
         createErrorsChart(dataSetBuilderErrors.build()), 400, 200);
   }
 
@@ -362,6 +569,9 @@ public final class PerformanceProjectAction implements Action {
     int nbBuildsToAnalyze = builds.size();
 
     for (AbstractBuild<?, ?> build : builds) {
+      if (buildsLimits.passed(nbBuildsToAnalyze)) {
+        break;
+      }
       if (buildsLimits.in(nbBuildsToAnalyze)) {
         NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
 
@@ -373,21 +583,15 @@ public final class PerformanceProjectAction implements Action {
         if (performanceBuildAction == null) {
           continue;
         }
-        PerformanceReport performanceReport = performanceBuildAction
-            .getPerformanceReportMap().getPerformanceReport(
-                performanceReportNameFile);
+        ReportSummary performanceReport = performanceBuildAction
+            .getReportSummary(performanceReportNameFile);
         if (performanceReport == null) {
           nbBuildsToAnalyze--;
           continue;
         }
 
-        List<HttpSample> allSamples = new ArrayList<HttpSample>();
-        for (UriReport currentReport : performanceReport.getUriReportMap()
-            .values()) {
-          allSamples.addAll(currentReport.getHttpSampleList());
-        }
-        List<UriReport> uriListOrdered = performanceReport.getUriListOrdered();
-          for (UriReport uriReport : uriListOrdered) {
+        List<UriSummary> uriListOrdered = performanceReport.getUriListOrdered();
+          for (UriSummary uriReport : uriListOrdered) {
               if (uriReport.isFailed()) {
                   // we set duration as 0 for failed tests
                   dataSetBuilderAverage.add(0, uriReport.getUri(), label);
@@ -399,7 +603,7 @@ public final class PerformanceProjectAction implements Action {
       }
       nbBuildsToAnalyze--;
     }
-    ChartUtil.generateGraph(request, response,
+    Instrumentation.generateGraph(request, response,
         createRespondingTimeChart(dataSetBuilderAverage.build()), 600, 200);
 
   }
@@ -422,6 +626,9 @@ public final class PerformanceProjectAction implements Action {
 
     int nbBuildsToAnalyze = builds.size();
     for (AbstractBuild<?, ?> build : builds) {
+      if (buildsLimits.passed(nbBuildsToAnalyze)) {
+        break;
+      }
       if (buildsLimits.in(nbBuildsToAnalyze)) {
 
         if (!buildsLimits.includedByStep(build.number)) {
@@ -434,9 +641,8 @@ public final class PerformanceProjectAction implements Action {
         if (performanceBuildAction == null) {
           continue;
         }
-        PerformanceReport performanceReport = performanceBuildAction
-            .getPerformanceReportMap().getPerformanceReport(
-                performanceReportNameFile);
+        ReportSummary performanceReport = performanceBuildAction
+            .getReportSummary(performanceReportNameFile);
         if (performanceReport == null) {
           nbBuildsToAnalyze--;
           continue;
@@ -451,7 +657,7 @@ public final class PerformanceProjectAction implements Action {
       nbBuildsToAnalyze--;
       continue;
     }
-    ChartUtil.generateGraph(request, response,
+    Instrumentation.generateGraph(request, response,
         createRespondingTimeChart(dataSetBuilderAverage.build()), 400, 200);
   }
 
@@ -474,6 +680,9 @@ public final class PerformanceProjectAction implements Action {
 
         int nbBuildsToAnalyze = builds.size();
         for (final AbstractBuild<?, ?> build : builds) {
+            if (buildsLimits.passed(nbBuildsToAnalyze)) {
+                break;
+            }
             if (buildsLimits.in(nbBuildsToAnalyze)) {
 
                 if (!buildsLimits.includedByStep(build.number)) {
@@ -485,24 +694,168 @@ public final class PerformanceProjectAction implements Action {
                     continue;
                 }
 
-                final PerformanceReport performanceReport = performanceBuildAction
-                        .getPerformanceReportMap().getPerformanceReport(performanceReportNameFile);
+                final ReportSummary performanceReport = performanceBuildAction
+                        .getReportSummary(performanceReportNameFile);
                 if (performanceReport == null) {
                     nbBuildsToAnalyze--;
                     continue;
                 }
 
-                final ThroughputReport throughputReport = new ThroughputReport(performanceReport);
                 final NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
-                dataSetBuilder.add(throughputReport.get(), Messages.ProjectAction_RequestsPerSeconds(), label);
+                dataSetBuilder.add(performanceReport.getThroughput(), Messages.ProjectAction_RequestsPerSeconds(), label);
+                dataSetBuilder.add(performanceReport.getPeakThroughput(), Messages.ProjectAction_PeakThroughput(), label);
+                dataSetBuilder.add(performanceReport.getSustainedThroughput(), Messages.ProjectAction_SustainedThroughput(), label);
             }
             nbBuildsToAnalyze--;
         }
 
-        ChartUtil.generateGraph(request, response,
+        Instrumentation.generateGraph(request, response,
                 createThroughputChart(dataSetBuilder.build()), 400, 200);
     }
 
+    public void doTimeBreakdownGraph(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        final String performanceReportNameFile = getPerformanceReportNameFile(request);
+        if (performanceReportNameFile == null) {
+            return;
+        }
+
+        if (ChartUtil.awtProblemCause != null) {
+            // not available. send out error message
+            response.sendRedirect2(request.getContextPath() + "/images/headless.png");
+            return;
+        }
+
+        final DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilder = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+        final List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
+        final Range buildsLimits = getFirstAndLastBuild(request, builds);
+
+        int nbBuildsToAnalyze = builds.size();
+        for (final AbstractBuild<?, ?> build : builds) {
+            if (buildsLimits.passed(nbBuildsToAnalyze)) {
+                break;
+            }
+            if (buildsLimits.in(nbBuildsToAnalyze)) {
+
+                if (!buildsLimits.includedByStep(build.number)) {
+                    continue;
+                }
+
+                final PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
+                if (performanceBuildAction == null) {
+                    continue;
+                }
+
+                final ReportSummary performanceReport = performanceBuildAction
+                        .getReportSummary(performanceReportNameFile);
+                if (performanceReport == null) {
+                    nbBuildsToAnalyze--;
+                    continue;
+                }
+
+                final NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
+                dataSetBuilder.add(performanceReport.getAverage(), Messages.ProjectAction_Average(), label);
+                // builds without latencies leave gaps rather than zeros
+                dataSetBuilder.add(performanceReport.hasLatency() ? performanceReport.getAverageLatency() : null,
+                        Messages.ProjectAction_Latency(), label);
+                dataSetBuilder.add(performanceReport.hasLatency() ? performanceReport.getAverageConnectTime() : null,
+                        Messages.ProjectAction_ConnectTime(), label);
+            }
+            nbBuildsToAnalyze--;
+        }
+
+        Instrumentation.generateGraph(request, response,
+                createRespondingTimeChart(dataSetBuilder.build()), 400, 200);
+    }
+
+    public void doApdexGraph(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        final String performanceReportNameFile = getPerformanceReportNameFile(request);
+        if (performanceReportNameFile == null) {
+            return;
+        }
+
+        if (ChartUtil.awtProblemCause != null) {
+            // not available. send out error message
+            response.sendRedirect2(request.getContextPath() + "/images/headless.png");
+            return;
+        }
+
+        final DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilder = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+        final List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
+        final Range buildsLimits = getFirstAndLastBuild(request, builds);
+
+        int nbBuildsToAnalyze = builds.size();
+        for (final AbstractBuild<?, ?> build : builds) {
+            if (buildsLimits.passed(nbBuildsToAnalyze)) {
+                break;
+            }
+            if (buildsLimits.in(nbBuildsToAnalyze)) {
+
+                if (!buildsLimits.includedByStep(build.number)) {
+                    continue;
+                }
+
+                final PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
+                if (performanceBuildAction == null) {
+                    continue;
+                }
+
+                final ReportSummary performanceReport = performanceBuildAction
+                        .getReportSummary(performanceReportNameFile);
+                if (performanceReport == null) {
+                    nbBuildsToAnalyze--;
+                    continue;
+                }
+
+                dataSetBuilder.add(performanceReport.getApdex(), Messages.ProjectAction_Apdex(),
+                        new NumberOnlyBuildLabel(build));
+            }
+            nbBuildsToAnalyze--;
+        }
+
+        Instrumentation.generateGraph(request, response,
+                createApdexChart(dataSetBuilder.build()), 400, 200);
+    }
+
+  /**
+   * Throughput of each thread group of the report, by build.
+   */
+  public void doThreadGroupThroughputGraph(StaplerRequest request,
+      StaplerResponse response) throws IOException {
+    final String performanceReportNameFile = getPerformanceReportNameFile(request);
+    if (performanceReportNameFile == null) {
+      return;
+    }
+
+    if (ChartUtil.awtProblemCause != null) {
+      // not available. send out error message
+      response.sendRedirect2(request.getContextPath() + "/images/headless.png");
+      return;
+    }
+    Instrumentation.generateGraph(request, response, createThroughputChart(
+        getThreadGroupData(request, performanceReportNameFile, false).build()),
+        400, 200);
+  }
+
+  /**
+   * Percentage of errors of each thread group of the report, by build.
+   */
+  public void doThreadGroupErrorsGraph(StaplerRequest request,
+      StaplerResponse response) throws IOException {
+    final String performanceReportNameFile = getPerformanceReportNameFile(request);
+    if (performanceReportNameFile == null) {
+      return;
+    }
+
+    if (ChartUtil.awtProblemCause != null) {
+      // not available. send out error message
+      response.sendRedirect2(request.getContextPath() + "/images/headless.png");
+      return;
+    }
+    Instrumentation.generateGraph(request, response, createErrorsChart(
+        getThreadGroupData(request, performanceReportNameFile, true).build()),
+        400, 200);
+  }
+
   @SuppressWarnings("UnusedDeclaration")
   public void doSummarizerGraph(StaplerRequest request, StaplerResponse response) throws IOException {
       final PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
@@ -524,6 +877,9 @@ public final class PerformanceProjectAction implements Action {
     int nbBuildsToAnalyze = builds.size();
     for (Iterator<?> iterator = builds.iterator(); iterator.hasNext();) {
       AbstractBuild<?, ?> currentBuild = (AbstractBuild<?, ?>) iterator.next();
+      if (buildsLimits.passed(nbBuildsToAnalyze)) {
+        break;
+      }
       if (buildsLimits.in(nbBuildsToAnalyze)) {
         NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
         PerformanceBuildAction performanceBuildAction = currentBuild
@@ -531,20 +887,19 @@ public final class PerformanceProjectAction implements Action {
         if (performanceBuildAction == null) {
           continue;
         }
-        PerformanceReport performanceReport = performanceBuildAction
-            .getPerformanceReportMap().getPerformanceReport(
-                performanceReportNameFile);
+        ReportSummary performanceReport = performanceBuildAction
+            .getReportSummary(performanceReportNameFile);
 
         if (performanceReport == null) {
           nbBuildsToAnalyze--;
           continue;
         }
 
-        for (String key : performanceReport.getUriReportMap().keySet()) {
-          Long methodAvg = performanceReport.getUriReportMap().get(key)
+        for (String key : performanceReport.getUriSummaryMap().keySet()) {
+          Long methodAvg = performanceReport.getUriSummaryMap().get(key)
               .getAverage();
           float methodErrors = Float.valueOf(performanceReport
-              .getUriReportMap().get(key).getSummarizerErrors());
+              .getUriSummaryMap().get(key).getSummarizerErrors());
           dataSetBuilderSummarizer.add(methodAvg, label, key);
           dataSetBuilderSummarizerErrors.add(methodErrors, label, key);
         }
@@ -557,13 +912,13 @@ public final class PerformanceProjectAction implements Action {
         .getSummarizerReportType();
 
     if (summarizerReportType != null) {
-      ChartUtil.generateGraph(
+      Instrumentation.generateGraph(
           request,
           response,
           createSummarizerChart(dataSetBuilderSummarizerErrors.build(), "%",
               Messages.ProjectAction_PercentageOfErrors()), 400, 200);
     } else {
-      ChartUtil.generateGraph(
+      Instrumentation.generateGraph(
           request,
           response,
           createSummarizerChart(dataSetBuilderSummarizer.build(), "ms",
@@ -571,6 +926,22 @@ public final class PerformanceProjectAction implements Action {
     }
   }
 
+    /**
+     * Serves the trend of a report as JSON, one array per figure, for the
+     * graphs drawn in the browser. All the builds by default, or those
+     * numbered <tt>from</tt> <tt>to</tt>, or the last <tt>builds</tt> of them.
+     * Answers 304 while the trend index is unchanged.
+     */
+    public void doTrendData(StaplerRequest request, StaplerResponse response) throws IOException {
+        final String performanceReportNameFile = getPerformanceReportNameFile(request);
+        if (performanceReportNameFile == null) {
+            response.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        TrendIndex.get(project).serveJson(performanceReportNameFile, Integer.MAX_VALUE, request,
+                response);
+    }
+
   /**
    * <p>
    * give a list of two Integer : the smallest build to use and the biggest.
@@ -604,9 +975,6 @@ public final class PerformanceProjectAction implements Action {
       if (graphConf.isDefaultDates()) {
         return all(builds);
       } else {
-        int firstBuild = -1;
-        int lastBuild = -1;
-        int var = builds.size();
         GregorianCalendar firstDate = null;
         GregorianCalendar lastDate = null;
         try {
@@ -620,27 +988,79 @@ public final class PerformanceProjectAction implements Action {
         } catch (ParseException e) {
           LOGGER
               .log(Level.SEVERE, "Error during the manage of the Calendar", e);
+          return all(builds);
         }
-        for (Iterator<?> iterator = builds.iterator(); iterator.hasNext();) {
-          AbstractBuild<?, ?> currentBuild = (AbstractBuild<?, ?>) iterator
-              .next();
-          GregorianCalendar buildDate = new GregorianCalendar();
-          buildDate.setTime(currentBuild.getTimestamp().getTime());
-          if (firstDate.getTime().before(buildDate.getTime())) {
-            firstBuild = var;
-          }
-          if (lastBuild < 0 && lastDate.getTime().after(buildDate.getTime())) {
-            lastBuild = var;
-          }
-          var--;
-        }
-        return new Range(firstBuild, lastBuild);
+        return dateRange(getStartTimes(builds), firstDate.getTimeInMillis(),
+            lastDate.getTimeInMillis());
       }
     }
     throw new IllegalArgumentException("unsupported configType + "
         + graphConf.getConfigType());
   }
 
+  /**
+   * @return the start times of the builds, read only when asked for
+   */
+  private static List<Long> getStartTimes(List<?> builds) {
+    final List<?> randomAccess = builds instanceof RandomAccess ? builds
+        : new ArrayList<Object>(builds);
+    return new AbstractList<Long>() {
+
+      @Override
+      public Long get(int index) {
+        return ((AbstractBuild<?, ?>) randomAccess.get(index)).getTimeInMillis();
+      }
+
+      @Override
+      public int size() {
+        return randomAccess.size();
+      }
+    };
+  }
+
+  /**
+   * @param startTimes
+   *          the start times of the builds, newest first
+   * @return the range of the builds started strictly between
+   *         <code>first</code> and <code>last</code>, as numbered by the loops
+   *         over the builds, or an empty one that those loops pass at once
+   */
+  static Range dateRange(List<Long> startTimes, long first, long last) {
+    // the builds are newest first, so those started after a date are a
+    // prefix of the list
+    int after = countBuildsStartedAfter(startTimes, first, false);
+    int notBefore = countBuildsStartedAfter(startTimes, last, true);
+    if (after <= notBefore) {
+      return new Range(startTimes.size() + 1, startTimes.size());
+    }
+    return new Range(startTimes.size() - after + 1, startTimes.size()
+        - notBefore);
+  }
+
+  /**
+   * Binary search of the start times of the builds, newest first, looking
+   * only at those of the builds it visits.
+   *
+   * @param inclusive
+   *          whether a build started at that very time counts
+   * @return the number of builds started after that time
+   */
+  static int countBuildsStartedAfter(List<Long> startTimes, long time,
+      boolean inclusive) {
+    int low = 0;
+    int high = startTimes.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      long start = startTimes.get(middle);
+      if (start > time || (inclusive && start == time)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
   public Range all(List<?> builds) {
     return new Range(1, builds.size());
   }
@@ -649,37 +1069,16 @@ public final class PerformanceProjectAction implements Action {
     return project;
   }
 
+  /**
+   * @return the reports of the project, from the {@link TrendIndex} so that
+   *         the job page does not list the report directories of a build
+   */
   public List<String> getPerformanceReportList() {
-    this.performanceReportList = new ArrayList<String>(0);
     if (null == this.project) {
+      this.performanceReportList = new ArrayList<String>(0);
       return performanceReportList;
     }
-    if (null == this.project.getSomeBuildWithWorkspace()) {
-      return performanceReportList;
-    }
-    File file = new File(this.project.getSomeBuildWithWorkspace().getRootDir(),
-        PerformanceReportMap.getPerformanceReportDirRelativePath());
-    if (!file.isDirectory()) {
-      return performanceReportList;
-    }
-
-    for (File entry : file.listFiles()) {
-      if (entry.isDirectory()) {
-        for (File e : entry.listFiles()) {
-          if (!e.getName().contains(".serialized")) {
-            this.performanceReportList.add(e.getName());
-          }
-        }
-      } else {
-        if (!entry.getName().contains(".serialized")) {
-          this.performanceReportList.add(entry.getName());
-        }
-      }
-
-    }
-
-    Collections.sort(performanceReportList);
-
+    this.performanceReportList = TrendIndex.get(project).getReportFileNames();
     return this.performanceReportList;
   }
 
@@ -782,6 +1181,9 @@ public final class PerformanceProjectAction implements Action {
 
     int nbBuildsToAnalyze = builds.size();
     for (AbstractBuild<?, ?> currentBuild : builds) {
+      if (buildsLimits.passed(nbBuildsToAnalyze)) {
+        break;
+      }
       if (buildsLimits.in(nbBuildsToAnalyze)) {
         NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
         PerformanceBuildAction performanceBuildAction = currentBuild
@@ -789,9 +1191,8 @@ public final class PerformanceProjectAction implements Action {
         if (performanceBuildAction == null) {
           continue;
         }
-        PerformanceReport report = null;
-        report = performanceBuildAction.getPerformanceReportMap()
-            .getPerformanceReport(performanceReportNameFile);
+        ReportSummary report = performanceBuildAction
+            .getReportSummary(performanceReportNameFile);
         if (report == null) {
           nbBuildsToAnalyze--;
           continue;
@@ -820,11 +1221,69 @@ public final class PerformanceProjectAction implements Action {
     return dataSet;
   }
 
+  private DataSetBuilder<String, NumberOnlyBuildLabel> getThreadGroupData(
+      final StaplerRequest request, String performanceReportNameFile,
+      boolean errors) {
+
+    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+    List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
+    Range buildsLimits = getFirstAndLastBuild(request, builds);
+
+    int nbBuildsToAnalyze = builds.size();
+    for (AbstractBuild<?, ?> currentBuild : builds) {
+      if (buildsLimits.passed(nbBuildsToAnalyze)) {
+        break;
+      }
+      if (buildsLimits.in(nbBuildsToAnalyze)) {
+
+        if (!buildsLimits.includedByStep(currentBuild.number)) {
+          continue;
+        }
+
+        NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
+        PerformanceBuildAction performanceBuildAction = currentBuild
+            .getAction(PerformanceBuildAction.class);
+        if (performanceBuildAction == null) {
+          continue;
+        }
+        ReportSummary report = performanceBuildAction
+            .getReportSummary(performanceReportNameFile);
+        if (report == null) {
+          nbBuildsToAnalyze--;
+          continue;
+        }
+        for (ThreadGroupReport threadGroup : report.getThreadGroups()) {
+          dataSet.add(errors ? threadGroup.errorPercent() : threadGroup
+              .getThroughput(), threadGroup.getName(), label);
+        }
+      }
+      nbBuildsToAnalyze--;
+    }
+    return dataSet;
+  }
+
+  /**
+   * @return whether the report of the last build has thread groups
+   */
+  public boolean hasThreadGroups(String filename) {
+    AbstractBuild<?, ?> lastBuild = getProject().getLastBuild();
+    if (lastBuild == null) {
+      return false;
+    }
+    PerformanceBuildAction performanceBuildAction = lastBuild
+        .getAction(PerformanceBuildAction.class);
+    if (performanceBuildAction == null) {
+      return false;
+    }
+    ReportSummary report = performanceBuildAction.getReportSummary(filename);
+    return report != null && !report.getThreadGroups().isEmpty();
+  }
+
   public boolean ifSummarizerParserUsed(String filename) {
 
     return this.getProject().getBuilds().getLastBuild()
-        .getAction(PerformanceBuildAction.class).getPerformanceReportMap()
-        .getPerformanceReport(filename).ifSummarizerParserUsed(filename);
+        .getAction(PerformanceBuildAction.class).getReportSummary(filename)
+        .ifSummarizerParserUsed(filename);
   }
 
   public boolean ifModePerformancePerTestCaseUsed() {
@@ -858,6 +1317,14 @@ public final class PerformanceProjectAction implements Action {
       return nbBuildsToAnalyze <= last && first <= nbBuildsToAnalyze;
     }
 
+    /**
+     * @return whether that build and all the older ones are before the range,
+     *         so that the loops over the builds newest first can stop there
+     */
+    public boolean passed(int nbBuildsToAnalyze) {
+      return nbBuildsToAnalyze < first;
+    }
+
     public boolean includedByStep(int buildNumber) {
       if (buildNumber % step == 0) {
         return true;
@@ -8,8 +8,10 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
+import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
 
 import java.io.*;
 import java.io.IOException;
@@ -73,6 +75,43 @@ public class PerformancePublisher extends Recorder {
 
       return items;
     }
+
+    public ListBoxModel doFillSampleRetentionItems() {
+      ListBoxModel items = new ListBoxModel();
+      items.add(Messages.Publisher_SampleRetention_All(), SampleRetention.ALL);
+      items.add(Messages.Publisher_SampleRetention_Reservoir(),
+          SampleRetention.RESERVOIR);
+      items.add(Messages.Publisher_SampleRetention_None(), SampleRetention.NONE);
+      return items;
+    }
+
+    public FormValidation doCheckApdexLabelThresholds(
+        @QueryParameter String value) {
+      try {
+        ApdexThresholds.parse(ApdexThresholds.DEFAULT_THRESHOLD, value);
+        return FormValidation.ok();
+      } catch (IllegalArgumentException e) {
+        return FormValidation.error(e.getMessage());
+      }
+    }
+
+    public FormValidation doCheckLabelRules(@QueryParameter String value) {
+      try {
+        LabelRules.parse(value);
+        return FormValidation.ok();
+      } catch (IllegalArgumentException e) {
+        return FormValidation.error(e.getMessage());
+      }
+    }
+
+    public FormValidation doCheckThresholdRules(@QueryParameter String value) {
+      try {
+        ThresholdRuleSet.parse(value);
+        return FormValidation.ok();
+      } catch (IllegalArgumentException e) {
+        return FormValidation.error(e.getMessage());
+      }
+    }
   }
 
 
@@ -130,8 +169,40 @@ public class PerformancePublisher extends Recorder {
 
   private boolean modeThroughput;
 
+  /**
+   * Per-label thresholds, one {@link ThresholdRule} per line.
+   */
+  private String thresholdRules = "";
+
+  /**
+   * Apdex T of the job, in ms, and per label.
+   *
+   * @see ApdexThresholds
+   */
+  private long apdexThreshold = ApdexThresholds.DEFAULT_THRESHOLD;
+
+  private String apdexLabelThresholds = "";
 
-  @DataBoundConstructor
+  /**
+   * Rules collapsing dynamic labels, one per line.
+   *
+   * @see LabelRules
+   */
+  private String labelRules = "";
+
+  /**
+   * Samples kept by the reports, and how many per URI in a reservoir.
+   *
+   * @see SampleRetention
+   */
+  private String sampleRetention = SampleRetention.ALL;
+
+  private int reservoirSize = SampleRetention.DEFAULT_RESERVOIR_SIZE;
+
+  /**
+   * The constructor before the threshold rules, Apdex, label rules and sample
+   * retention, which are left to their defaults or set with their setters.
+   */
   public PerformancePublisher(int errorFailedThreshold,
                             int errorUnstableThreshold,
                             String errorUnstableResponseTimeThreshold,
@@ -146,6 +217,37 @@ public class PerformancePublisher extends Recorder {
                             boolean compareBuildPrevious,
                             List<? extends PerformanceReportParser> parsers,
                             boolean modeThroughput) {
+    this(errorFailedThreshold, errorUnstableThreshold,
+        errorUnstableResponseTimeThreshold, relativeFailedThresholdPositive,
+        relativeFailedThresholdNegative, relativeUnstableThresholdPositive,
+        relativeUnstableThresholdNegative, nthBuildNumber,
+        modePerformancePerTestCase, comparisonType, modeOfThreshold,
+        compareBuildPrevious, parsers, modeThroughput, "",
+        ApdexThresholds.DEFAULT_THRESHOLD, "", "", SampleRetention.ALL,
+        SampleRetention.DEFAULT_RESERVOIR_SIZE);
+  }
+
+  @DataBoundConstructor
+  public PerformancePublisher(int errorFailedThreshold,
+                            int errorUnstableThreshold,
+                            String errorUnstableResponseTimeThreshold,
+                            double relativeFailedThresholdPositive,
+                            double relativeFailedThresholdNegative,
+                            double relativeUnstableThresholdPositive,
+                            double relativeUnstableThresholdNegative,
+                            int nthBuildNumber,
+                            boolean modePerformancePerTestCase,
+                            String comparisonType,
+                            boolean modeOfThreshold,
+                            boolean compareBuildPrevious,
+                            List<? extends PerformanceReportParser> parsers,
+                            boolean modeThroughput,
+                            String thresholdRules,
+                            long apdexThreshold,
+                            String apdexLabelThresholds,
+                            String labelRules,
+                            String sampleRetention,
+                            int reservoirSize) {
 
     this.errorFailedThreshold = errorFailedThreshold;
     this.errorUnstableThreshold = errorUnstableThreshold;
@@ -167,6 +269,14 @@ public class PerformancePublisher extends Recorder {
     this.parsers = new ArrayList<PerformanceReportParser>(parsers);
     this.modePerformancePerTestCase = modePerformancePerTestCase;
     this.modeThroughput = modeThroughput;
+    this.thresholdRules = thresholdRules;
+    this.apdexThreshold = apdexThreshold > 0 ? apdexThreshold
+        : ApdexThresholds.DEFAULT_THRESHOLD;
+    this.apdexLabelThresholds = apdexLabelThresholds;
+    this.labelRules = labelRules;
+    this.sampleRetention = sampleRetention;
+    this.reservoirSize = reservoirSize > 0 ? reservoirSize
+        : SampleRetention.DEFAULT_RESERVOIR_SIZE;
   }
 
   public static File getPerformanceReport(AbstractBuild<?, ?> build,
@@ -264,11 +374,35 @@ public class PerformancePublisher extends Recorder {
   @Override
   public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
           throws InterruptedException, IOException {
+    Instrumentation.Summary timings = new Instrumentation.Summary();
+    try {
+      return perform(build, listener, timings);
+    } finally {
+      // whichever way the reports were recorded, or not
+      timings.print(listener.getLogger());
+    }
+  }
+
+  private boolean perform(AbstractBuild<?, ?> build, BuildListener listener,
+      Instrumentation.Summary timings) throws InterruptedException, IOException {
 
     PrintStream logger = listener.getLogger();
     double thresholdTolerance = 0.00000001;
     Result result = Result.SUCCESS;
 
+    // the rules per label apply in both modes
+    ThresholdRuleSet ruleSet;
+    try {
+      ruleSet = ThresholdRuleSet.parse(thresholdRules);
+      for (ThresholdRule rule : ruleSet.getRules()) {
+        logger.println("Performance: Threshold rule " + rule);
+      }
+    } catch (IllegalArgumentException e) {
+      logger.println("Performance: Invalid threshold rules: " + e.getMessage());
+      ruleSet = new ThresholdRuleSet();
+      result = Result.FAILURE;
+      build.setResult(Result.FAILURE);
+    }
 
     //For absolute error/unstable threshold..
     if (!modeOfThreshold) {
@@ -311,6 +445,7 @@ public class PerformancePublisher extends Recorder {
 
             // add the report to the build object.
         PerformanceBuildAction a = new PerformanceBuildAction(build, logger, parsers);
+        a.setApdexThresholds(getApdexThreshold(), apdexLabelThresholds);
         build.addAction(a);
         logger.print("\n\n\n");
 
@@ -319,7 +454,9 @@ public class PerformancePublisher extends Recorder {
           String glob = parser.glob;
           logger.println("Performance: Recording " + parser.getReportName() + " reports '" + glob + "'");
 
+          Instrumentation.Timer timer = Instrumentation.start(Instrumentation.Phase.LOCATE);
           List<FilePath> files = locatePerformanceReports(build.getWorkspace(), glob);
+          timings.add(timer.stop());
 
           if (files.isEmpty()) {
             if (build.getResult().isWorseThan(Result.UNSTABLE)) {
@@ -333,12 +470,15 @@ public class PerformancePublisher extends Recorder {
             return true;
           }
 
+          timer = Instrumentation.start(Instrumentation.Phase.COPY);
           List<File> localReports = copyReportsToMaster(build, logger, files, parser.getDescriptor().getDisplayName());
-          Collection<PerformanceReport> parsedReports = parser.parse(build, localReports, listener);
+          timings.add(timer.stop());
+          Collection<PerformanceReport> parsedReports = parse(parser, build, localReports, listener, timings);
 
           // mark the build as unstable or failure depending on the outcome.
           for (PerformanceReport r : parsedReports) {
 
+            timer = Instrumentation.start(Instrumentation.Phase.DASHBOARD);
             xmlDir = build.getRootDir().getAbsolutePath();
             xmlDir += "/"+archive_directory;
 
@@ -369,13 +509,18 @@ public class PerformancePublisher extends Recorder {
             avg += "<average>\n";
             med += "<median>\n";
             perct += "<percentile>\n";
+            timings.add(timer.stop());
 
+            timer = Instrumentation.start(Instrumentation.Phase.AGGREGATE);
             r.setBuildAction(a);
             double errorPercent = r.errorPercent();
             calc += errorPercent;
 
             curruriList = r.getUriListOrdered();
+            long average = r.getAverage();
+            timings.add(timer.stop());
 
+            timer = Instrumentation.start(Instrumentation.Phase.THRESHOLD);
             if (errorFailedThreshold >= 0 && errorPercent - errorFailedThreshold > thresholdTolerance) {
                 result = Result.FAILURE;
                 build.setResult(Result.FAILURE);
@@ -383,7 +528,6 @@ public class PerformancePublisher extends Recorder {
                 result = Result.UNSTABLE;
             }
 
-            long average = r.getAverage();
             logger.println(r.getReportFileName() + " has an average of: "+ Long.toString(average));
 
             try {
@@ -399,6 +543,7 @@ public class PerformancePublisher extends Recorder {
                 build.setResult(Result.FAILURE);
 
             }
+            result = result.combine(ruleSet.evaluate(r, logger));
             if (result.isWorseThan(build.getResult())) {
                 build.setResult(result);
             }
@@ -406,7 +551,9 @@ public class PerformancePublisher extends Recorder {
                     + " reported " + errorPercent
                     + "% of errors [" + result + "]. Build status is: "
                     + build.getResult());
+            timings.add(timer.stop());
 
+            timer = Instrumentation.start(Instrumentation.Phase.DASHBOARD);
             for (int i = 0; i < curruriList.size(); i++){
                 avg += "\t<"+curruriList.get(i).getStaplerUri()+">\n";
                 avg += "\t\t<currentBuildAvg>"+curruriList.get(i).getAverage()+"</currentBuildAvg>\n";
@@ -444,6 +591,7 @@ public class PerformancePublisher extends Recorder {
             bw.write(xml);
             bw.close();
             fw.close();
+            timings.add(timer.stop());
 
             logger.print("\n\n\n");
           }
@@ -502,6 +650,7 @@ public class PerformancePublisher extends Recorder {
 
         // add the report to the build object.
         PerformanceBuildAction a = new PerformanceBuildAction(build, logger, parsers);
+        a.setApdexThresholds(getApdexThreshold(), apdexLabelThresholds);
         build.addAction(a);
         logger.print("\n\n\n");
 
@@ -509,7 +658,9 @@ public class PerformancePublisher extends Recorder {
         for (PerformanceReportParser parser : parsers) {
           String glob = parser.glob;
           name = glob;
+          Instrumentation.Timer timer = Instrumentation.start(Instrumentation.Phase.LOCATE);
           List<FilePath> files = locatePerformanceReports(build.getWorkspace(), glob);
+          timings.add(timer.stop());
 
           if (files.isEmpty()) {
             if (build.getResult().isWorseThan(Result.UNSTABLE)) {
@@ -523,18 +674,28 @@ public class PerformancePublisher extends Recorder {
             return true;
           }
 
+          timer = Instrumentation.start(Instrumentation.Phase.COPY);
           List<File> localReports = copyReportsToMaster(build, logger, files, parser.getDescriptor().getDisplayName());
-          Collection<PerformanceReport> parsedReports = parser.parse(build, localReports, listener);
+          timings.add(timer.stop());
+          Collection<PerformanceReport> parsedReports = parse(parser, build, localReports, listener, timings);
 
 
+          boolean first = true;
           for (PerformanceReport r : parsedReports) {
             r.setBuildAction(a);
-            // URI list is the list of labels in the current JMeter results file
-            curruriList = r.getUriListOrdered();
-            break;
+            if (first) {
+              // URI list is the list of labels in the current JMeter results file
+              curruriList = r.getUriListOrdered();
+              first = false;
+            }
+            Result ruleResult = ruleSet.evaluate(r, logger);
+            if (ruleResult.isWorseThan(build.getResult())) {
+              build.setResult(ruleResult);
+            }
           }
         }
 
+        Instrumentation.Timer timer = Instrumentation.start(Instrumentation.Phase.DASHBOARD);
         xmlDir = build.getRootDir().getAbsolutePath();
         xmlDir += "/"+archive_directory;
 
@@ -551,6 +712,7 @@ public class PerformancePublisher extends Recorder {
 
         bw.write("<?xml version=\"1.0\"?>\n");
         bw.write("<results>\n");
+        timings.add(timer.stop());
 
         // getting previous build/nth previous build..
         AbstractBuild prevBuild = null;
@@ -576,6 +738,7 @@ public class PerformancePublisher extends Recorder {
           prevBuild.addAction(b);
 
           //getting files related to the previous build selected
+          timer = Instrumentation.start(Instrumentation.Phase.AGGREGATE);
           for (PerformanceReportParser parser : parsers) {
             String glob = parser.glob;
             logger.println("Performance: Recording " + parser.getReportName()+ " reports '" + glob + "'");
@@ -592,7 +755,9 @@ public class PerformancePublisher extends Recorder {
               break;
             }
           }
+          timings.add(timer.stop());
 
+          timer = Instrumentation.start(Instrumentation.Phase.THRESHOLD);
           result = Result.SUCCESS;
           String failedLabel = null, unStableLabel = null;
           double relativeDiff=0, relativeDiffPercent=0;
@@ -740,41 +905,62 @@ public class PerformancePublisher extends Recorder {
           logger.println("------------------------------------------------------------------------------------------------------------------------------------");
           String labelResult = "\nThe label ";
           logger.print((failedLabel != null) ? labelResult + "\"" + failedLabel + "\"" + " caused the build to fail\n" : (unStableLabel != null) ? labelResult + "\"" + unStableLabel + "\"" + " made the build unstable\n" : "");
+          timings.add(timer.stop());
 
+          timer = Instrumentation.start(Instrumentation.Phase.DASHBOARD);
           avg += "</average>\n";
           med += "</median>\n";
           perct += "</percentile>";
 
           inside += avg + med + perct;
           bw.write(inside+"\n");
+          timings.add(timer.stop());
 
         }
+        timer = Instrumentation.start(Instrumentation.Phase.DASHBOARD);
         bw.write("</results>");
         bw.close();
         fw.close();
+        timings.add(timer.stop());
 
       } catch (Exception e){
       }
     }
+    ReportSummaryWorker.schedule(build);
     return true;
   }
 
+  private Collection<PerformanceReport> parse(PerformanceReportParser parser,
+      AbstractBuild<?, ?> build, List<File> localReports,
+      BuildListener listener, Instrumentation.Summary timings)
+      throws IOException {
+    Instrumentation.Timer timer = Instrumentation
+        .start(Instrumentation.Phase.PARSE);
+    Collection<PerformanceReport> parsedReports = parser.parse(build,
+        localReports, listener);
+    long samples = 0;
+    StringBuilder names = new StringBuilder();
+    for (PerformanceReport r : parsedReports) {
+      samples += r.size();
+      if (names.length() > 0) {
+        names.append(", ");
+      }
+      names.append(r.getReportFileName());
+    }
+    timings.addParse(timer.stop(samples), names.toString());
+    return parsedReports;
+  }
+
   private List<File> copyReportsToMaster(AbstractBuild<?, ?> build,
       PrintStream logger, List<FilePath> files, String parserDisplayName)
       throws IOException, InterruptedException {
-    List<File> localReports = new ArrayList<File>();
+    ReportTransfer transfer = new ReportTransfer(build.getWorkspace(),
+        new File(build.getRootDir(), "performance-transfer"), logger);
     for (FilePath src : files) {
-      final File localReport = getPerformanceReport(build, parserDisplayName,
-          src.getName());
-      if (src.isDirectory()) {
-        logger.println("Performance: File '" + src.getName()
-            + "' is a directory, not a Performance Report");
-        continue;
-      }
-      src.copyTo(new FilePath(localReport));
-      localReports.add(localReport);
+      transfer.add(src, getPerformanceReport(build, parserDisplayName,
+          src.getName()));
     }
-    return localReports;
+    return transfer.copy();
   }
 
   public Object readResolve() {
@@ -1015,6 +1201,56 @@ public class PerformancePublisher extends Recorder {
     this.modeThroughput = modeThroughput;
   }
 
+  public String getThresholdRules() {
+    return thresholdRules;
+  }
+
+  public void setThresholdRules(String thresholdRules) {
+    this.thresholdRules = thresholdRules;
+  }
+
+  public long getApdexThreshold() {
+    // 0 in configurations saved before Apdex was supported
+    return apdexThreshold > 0 ? apdexThreshold
+        : ApdexThresholds.DEFAULT_THRESHOLD;
+  }
+
+  public void setApdexThreshold(long apdexThreshold) {
+    this.apdexThreshold = apdexThreshold;
+  }
+
+  public String getApdexLabelThresholds() {
+    return apdexLabelThresholds;
+  }
+
+  public void setApdexLabelThresholds(String apdexLabelThresholds) {
+    this.apdexLabelThresholds = apdexLabelThresholds;
+  }
+
+  public String getLabelRules() {
+    return labelRules;
+  }
+
+  public void setLabelRules(String labelRules) {
+    this.labelRules = labelRules;
+  }
+
+  public String getSampleRetention() {
+    return sampleRetention;
+  }
+
+  public void setSampleRetention(String sampleRetention) {
+    this.sampleRetention = sampleRetention;
+  }
+
+  public int getReservoirSize() {
+    return reservoirSize;
+  }
+
+  public void setReservoirSize(int reservoirSize) {
+    this.reservoirSize = reservoirSize;
+  }
+
 }
 
 
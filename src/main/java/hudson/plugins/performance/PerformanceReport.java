@@ -9,9 +9,11 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.text.DecimalFormat;
 
 /**
@@ -34,7 +36,36 @@ public class PerformanceReport extends AbstractReport implements Serializable,
    */
   private final Map<String, UriReport> uriReportMap = new LinkedHashMap<String, UriReport>();
 
-  private PerformanceReport lastBuildReport;
+  /**
+   * {@link ThreadGroupReport}s keyed by their name, for the samples with a
+   * thread name.
+   */
+  private Map<String, ThreadGroupReport> threadGroupMap = new TreeMap<String, ThreadGroupReport>();
+
+  /**
+   * The thread groups by thread name, only needed while the samples are added.
+   */
+  private transient Map<String, ThreadGroupReport> threadGroupsByThreadName;
+
+  /**
+   * Summary of the same report in the previous build, for the diffs.
+   */
+  private transient ReportSummary lastBuildSummary;
+
+  /**
+   * Apdex T of the URIs, only needed while the samples are added.
+   */
+  private transient ApdexThresholds apdexThresholds;
+
+  /**
+   * Rules normalizing the labels, only needed while the samples are added.
+   */
+  private transient LabelRules labelRules;
+
+  /**
+   * Samples the URIs keep, only needed while the samples are added.
+   */
+  private transient SampleRetention sampleRetention;
 
   public void addSample(HttpSample pHttpSample) throws SAXException {
     String uri = pHttpSample.getUri();
@@ -45,6 +76,10 @@ public class PerformanceReport extends AbstractReport implements Serializable,
               + "name properly for each http sample: skipping sample");
       return;
     }
+    if (labelRules != null) {
+      uri = labelRules.normalize(uri);
+      pHttpSample.setUri(uri);
+    }
     String staplerUri = uri.replace("http:", "").replaceAll("/", "_");
     UriReport uriReport = uriReportMap.get(staplerUri);
     if (uriReport == null) {
@@ -52,7 +87,39 @@ public class PerformanceReport extends AbstractReport implements Serializable,
       uriReportMap.put(staplerUri, uriReport);
     }
     uriReport.addHttpSample(pHttpSample);
+    if (pHttpSample.getThreadName() != null) {
+      addToThreadGroup(pHttpSample);
+    }
+  }
+
+  private void addToThreadGroup(HttpSample sample) {
+    if (threadGroupsByThreadName == null) {
+      threadGroupsByThreadName = new HashMap<String, ThreadGroupReport>();
+    }
+    ThreadGroupReport threadGroup = threadGroupsByThreadName.get(sample
+        .getThreadName());
+    if (threadGroup == null) {
+      String name = ThreadGroupReport.getThreadGroupName(sample.getThreadName());
+      threadGroup = threadGroupMap.get(name);
+      if (threadGroup == null) {
+        threadGroup = new ThreadGroupReport(name);
+        threadGroupMap.put(name, threadGroup);
+      }
+      threadGroupsByThreadName.put(sample.getThreadName(), threadGroup);
+    }
+    threadGroup.add(sample);
+  }
 
+  /**
+   * @return the thread groups by name, empty if the samples have no thread
+   *         name
+   */
+  public List<ThreadGroupReport> getThreadGroups() {
+    if (threadGroupMap == null) {
+      // deserialized from a cache written before the thread groups existed
+      return Collections.emptyList();
+    }
+    return new ArrayList<ThreadGroupReport>(threadGroupMap.values());
   }
 
   public int compareTo(PerformanceReport jmReport) {
@@ -97,6 +164,39 @@ public class PerformanceReport extends AbstractReport implements Serializable,
     return result;
   }
 
+  public boolean hasLatency() {
+    for (UriReport currentReport : uriReportMap.values()) {
+      if (currentReport.hasLatency()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public long getAverageLatency() {
+    int size = size();
+    if (size == 0) {
+      return 0;
+    }
+    long total = 0;
+    for (UriReport currentReport : uriReportMap.values()) {
+      total += currentReport.getTotalLatency();
+    }
+    return total / size;
+  }
+
+  public long getAverageConnectTime() {
+    int size = size();
+    if (size == 0) {
+      return 0;
+    }
+    long total = 0;
+    for (UriReport currentReport : uriReportMap.values()) {
+      total += currentReport.getTotalConnectTime();
+    }
+    return total / size;
+  }
+
   public double getAverageSizeInKb() {
     double result = 0;
     int size = size();
@@ -114,12 +214,8 @@ public class PerformanceReport extends AbstractReport implements Serializable,
     long result = 0;
     int size = size();
     if (size != 0) {
-      List<HttpSample> allSamples = new ArrayList<HttpSample>();
-      for (UriReport currentReport : uriReportMap.values()) {
-        allSamples.addAll(currentReport.getHttpSampleList());
-      }
-      Collections.sort(allSamples);
-      result = allSamples.get((int) (allSamples.size() * .9)).getDuration();
+      SampleValues allDurations = getDurations();
+      result = allDurations.getSorted((int) (allDurations.size() * .9));
     }
     return result;
   }
@@ -128,16 +224,20 @@ public class PerformanceReport extends AbstractReport implements Serializable,
     long result = 0;
     int size = size();
     if (size != 0) {
-      List<HttpSample> allSamples = new ArrayList<HttpSample>();
-      for (UriReport currentReport : uriReportMap.values()) {
-        allSamples.addAll(currentReport.getHttpSampleList());
-      }
-      Collections.sort(allSamples);
-      result = allSamples.get((int) (allSamples.size() * .5)).getDuration();
+      SampleValues allDurations = getDurations();
+      result = allDurations.getSorted((int) (allDurations.size() * .5));
     }
     return result;
   }
 
+  private SampleValues getDurations() {
+    SampleValues allDurations = new SampleValues();
+    for (UriReport currentReport : uriReportMap.values()) {
+      allDurations.addAll(currentReport.getDurations());
+    }
+    return allDurations;
+  }
+
   public String getHttpCode() {
     return "";
   }
@@ -185,6 +285,80 @@ public class PerformanceReport extends AbstractReport implements Serializable,
     return min;
   }
 
+  /**
+   * @return the throughput timelines of all the URIs added up
+   */
+  public ThroughputTimeline getThroughputTimeline() {
+    ThroughputTimeline timeline = new ThroughputTimeline();
+    for (UriReport currentReport : uriReportMap.values()) {
+      timeline.addAll(currentReport.getThroughputTimeline());
+    }
+    return timeline;
+  }
+
+  public double getApdex() {
+    long satisfied = 0;
+    long tolerating = 0;
+    long counted = 0;
+    for (UriReport currentReport : uriReportMap.values()) {
+      if (currentReport.getApdexThreshold() < 0) {
+        continue;
+      }
+      satisfied += currentReport.getApdexSatisfied();
+      tolerating += currentReport.getApdexTolerating();
+      counted += currentReport.size();
+    }
+    return ApdexThresholds.score(satisfied, tolerating, counted);
+  }
+
+  ApdexThresholds getApdexThresholds() {
+    if (apdexThresholds == null) {
+      apdexThresholds = new ApdexThresholds();
+    }
+    return apdexThresholds;
+  }
+
+  public void setApdexThresholds(ApdexThresholds apdexThresholds) {
+    this.apdexThresholds = apdexThresholds;
+  }
+
+  public void setLabelRules(LabelRules labelRules) {
+    this.labelRules = labelRules;
+  }
+
+  SampleRetention getSampleRetention() {
+    if (sampleRetention == null) {
+      sampleRetention = new SampleRetention(SampleRetention.ALL, 0);
+    }
+    return sampleRetention;
+  }
+
+  public void setSampleRetention(SampleRetention sampleRetention) {
+    this.sampleRetention = sampleRetention;
+  }
+
+  /**
+   * @return the estimated heap taken by this report, its URIs and thread
+   *         groups, in bytes
+   */
+  long getFootprint() {
+    long bytes = Footprint.REPORT_BYTES;
+    for (UriReport currentReport : uriReportMap.values()) {
+      bytes += currentReport.getFootprint();
+    }
+    for (ThreadGroupReport threadGroup : getThreadGroups()) {
+      bytes += threadGroup.getFootprint();
+    }
+    return bytes;
+  }
+
+  /**
+   * @return {@link #getFootprint()} in KB or MB
+   */
+  public String getMemoryFootprint() {
+    return Footprint.format(getFootprint());
+  }
+
   public String getReportFileName() {
     return reportFileName;
   }
@@ -215,38 +389,37 @@ public class PerformanceReport extends AbstractReport implements Serializable,
     return size;
   }
 
-  public void setLastBuildReport(PerformanceReport lastBuildReport) {
-    Map<String, UriReport> lastBuildUriReportMap = lastBuildReport
-        .getUriReportMap();
+  public void setLastBuildSummary(ReportSummary lastBuildSummary) {
+    Map<String, UriSummary> lastBuildUriSummaryMap = lastBuildSummary
+        .getUriSummaryMap();
     for (Map.Entry<String, UriReport> item : uriReportMap.entrySet()) {
-      UriReport lastBuildUri = lastBuildUriReportMap.get(item.getKey());
+      UriSummary lastBuildUri = lastBuildUriSummaryMap.get(item.getKey());
       if (lastBuildUri != null) {
-        item.getValue().addLastBuildUriReport(lastBuildUri);
-      } else {
+        item.getValue().setLastBuildUriSummary(lastBuildUri);
       }
     }
-    this.lastBuildReport = lastBuildReport;
+    this.lastBuildSummary = lastBuildSummary;
   }
 
   public long getAverageDiff() {
-    if (lastBuildReport == null) {
+    if (lastBuildSummary == null) {
       return 0;
     }
-    return getAverage() - lastBuildReport.getAverage();
+    return getAverage() - lastBuildSummary.getAverage();
   }
 
   public long getMedianDiff() {
-    if (lastBuildReport == null) {
+    if (lastBuildSummary == null) {
       return 0;
     }
-    return getMedian() - lastBuildReport.getMedian();
+    return getMedian() - lastBuildSummary.getMedian();
   }
 
   public double getErrorPercentDiff() {
-    if (lastBuildReport == null) {
+    if (lastBuildSummary == null) {
       return 0;
     }
-    return errorPercent() - lastBuildReport.errorPercent();
+    return errorPercent() - lastBuildSummary.errorPercent();
   }
 
   public String getLastBuildHttpCodeIfChanged() {
@@ -254,10 +427,10 @@ public class PerformanceReport extends AbstractReport implements Serializable,
   }
 
   public int getSizeDiff() {
-    if (lastBuildReport == null) {
+    if (lastBuildSummary == null) {
       return 0;
     }
-    return size() - lastBuildReport.size();
+    return size() - lastBuildSummary.size();
   }
 
   /**
@@ -269,6 +442,10 @@ public class PerformanceReport extends AbstractReport implements Serializable,
    * @return boolean indicating usage of summarized parser
    */
   public boolean ifSummarizerParserUsed(String filename) {
+    if (buildAction == null) {
+      // parsed outside of a build
+      return false;
+    }
     List<PerformanceReportParser> list = buildAction.getBuild().getProject()
         .getPublishersList().get(PerformancePublisher.class).getParsers();
 
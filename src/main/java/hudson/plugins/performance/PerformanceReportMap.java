@@ -1,6 +1,7 @@
 package hudson.plugins.performance;
 
 import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
 import hudson.model.ModelObject;
 
 import java.io.File;
@@ -9,12 +10,16 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import hudson.model.TaskListener;
 import hudson.util.ChartUtil;
 import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 import hudson.util.DataSetBuilder;
 import java.io.FilenameFilter;
+import org.kohsuke.stapler.HttpResponseException;
+import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
@@ -39,26 +44,66 @@ public class PerformanceReportMap implements ModelObject {
   private static final String PLUGIN_NAME = "performance";
   private static final String TRENDREPORT_LINK = "trendReport";
 
-  private static AbstractBuild<?, ?> currentBuild = null;
+  private static final Logger LOGGER = Logger
+      .getLogger(PerformanceReportMap.class.getName());
+
+  private transient TaskListener listener;
+
+  private transient boolean parsed;
 
   /**
-   * Parses the reports and build a {@link PerformanceReportMap}.
-   * 
-   * @throws IOException
-   *           If a report fails to parse.
+   * Estimated footprint of the reports once loaded, null until their
+   * summaries are computed.
+   */
+  private transient Long estimatedFootprint;
+
+  /**
+   * Creates the {@link PerformanceReportMap}. The reports are only parsed
+   * when first needed, pages showing the figures alone use the
+   * {@link ReportSummary}s instead.
    */
   PerformanceReportMap(final PerformanceBuildAction buildAction,
       TaskListener listener) throws IOException {
     this.buildAction = buildAction;
-    parseReports(getBuild(), listener, new PerformanceReportCollector() {
+    this.listener = listener;
+  }
 
-      public void addAll(Collection<PerformanceReport> reports) {
-        for (PerformanceReport r : reports) {
-          r.setBuildAction(buildAction);
-          performanceReportMap.put(r.getReportFileName(), r);
+  private synchronized void parse() {
+    if (parsed) {
+      return;
+    }
+    if (isSummaryOnly()) {
+      LOGGER.info("Not loading the performance reports of " + getBuild()
+          + ", estimated to take " + Footprint.format(getEstimatedFootprint())
+          + " with " + Footprint.format(Footprint.getResident(getBuild()))
+          + " of the " + Footprint.format(Footprint.getBudget())
+          + " budget already loaded");
+      return;
+    }
+    parsed = true;
+    Instrumentation.Timer timer = Instrumentation
+        .start(Instrumentation.Phase.REPORT_MAP_LOAD);
+    try {
+      parseReports(getBuild(), listener, new PerformanceReportCollector() {
+
+        public void addAll(Collection<PerformanceReport> reports) {
+          for (PerformanceReport r : reports) {
+            r.setBuildAction(buildAction);
+            performanceReportMap.put(r.getReportFileName(), r);
+          }
         }
-      }
-    }, null);
+      });
+      addPreviousBuildReports();
+    } catch (IOException e) {
+      LOGGER.log(Level.SEVERE, "Error parsing the performance reports of "
+          + getBuild(), e);
+    }
+    long samples = 0;
+    for (PerformanceReport r : performanceReportMap.values()) {
+      samples += r.size();
+      Footprint.addResident(getBuild(), r);
+    }
+    timer.stop(samples);
   }
 
   private void addAll(Collection<PerformanceReport> reports) {
@@ -88,9 +133,90 @@ public class PerformanceReportMap implements ModelObject {
   }
 
   public Map<String, PerformanceReport> getPerformanceReportMap() {
+    parse();
     return performanceReportMap;
   }
 
+  /**
+   * The reports, for the pages that need them loaded.
+   *
+   * @throws HttpResponseException
+   *           answering 503 with the reason when the reports are only shown
+   *           from their summaries, rather than a blank page
+   */
+  private Map<String, PerformanceReport> getLoadedReportMap() {
+    if (isSummaryOnly()) {
+      throw HttpResponses.error(StaplerResponse.SC_SERVICE_UNAVAILABLE,
+          Messages.Report_SummaryOnly(getMemoryBudget()));
+    }
+    return getPerformanceReportMap();
+  }
+
+  /**
+   * @return the estimated heap taken by the reports once loaded, in bytes, -1
+   *         until their summaries are computed
+   */
+  public long getEstimatedFootprint() {
+    if (estimatedFootprint == null) {
+      // read from disk rather than from the build action, which may be
+      // computing them with this very map
+      List<ReportSummary> summaries = ReportSummary.load(getBuild());
+      if (summaries == null) {
+        return -1;
+      }
+      estimatedFootprint = Footprint.estimate(summaries);
+    }
+    return estimatedFootprint;
+  }
+
+  /**
+   * @return the estimated footprint of a report once loaded, in KB or MB
+   */
+  public String getEstimatedFootprint(ReportSummary summary) {
+    return Footprint.format(Footprint.estimate(summary));
+  }
+
+  public String getMemoryBudget() {
+    return Footprint.format(Footprint.getBudget());
+  }
+
+  /**
+   * @return true if the reports are estimated to take more than what the
+   *         reports already loaded leave of the memory budget, in which case
+   *         they are not loaded and only their summaries are shown
+   */
+  public boolean isSummaryOnly() {
+    if (parsed) {
+      return false;
+    }
+    long budget = Footprint.getBudget();
+    if (budget < 0) {
+      return false;
+    }
+    long estimate = getEstimatedFootprint();
+    return estimate >= 0
+        && estimate > budget - Footprint.getResident(getBuild());
+  }
+
+  /**
+   * @return true while the summaries of the reports are being computed, in
+   *         the background
+   */
+  public boolean isSummaryPending() {
+    return buildAction.isSummaryPending();
+  }
+
+  /**
+   * @return the summaries of the reports, linked to the previous build's
+   */
+  public List<ReportSummary> getReportSummaryListOrdered() {
+    buildAction.linkLastBuildSummaries();
+    List<ReportSummary> listSummary = new ArrayList<ReportSummary>(
+        buildAction.getReportSummaries());
+    Collections.sort(listSummary);
+    return listSummary;
+  }
+
   /**
    * <p>
    * Give the Performance report with the parameter for name in Bean
@@ -100,7 +226,7 @@ public class PerformanceReportMap implements ModelObject {
    * @return
    */
   public PerformanceReport getPerformanceReport(String performanceReportName) {
-    return performanceReportMap.get(performanceReportName);
+    return getLoadedReportMap().get(performanceReportName);
   }
 
   /**
@@ -123,8 +249,9 @@ public class PerformanceReportMap implements ModelObject {
       }
       StringTokenizer st = new StringTokenizer(uriReportDecoded,
           GraphConfigurationDetail.SEPARATOR);
-      return getPerformanceReportMap().get(st.nextToken()).getUriReportMap()
-          .get(st.nextToken());
+      PerformanceReport report = getLoadedReportMap().get(st.nextToken());
+      return report == null ? null : report.getUriReportMap().get(
+          st.nextToken());
     } else {
       return null;
     }
@@ -141,6 +268,7 @@ public class PerformanceReportMap implements ModelObject {
   public void setPerformanceReportMap(
       Map<String, PerformanceReport> performanceReportMap) {
     this.performanceReportMap = performanceReportMap;
+    this.parsed = true;
   }
 
   public static String getPerformanceReportFileRelativePath(
@@ -177,75 +305,30 @@ public class PerformanceReportMap implements ModelObject {
   public void doRespondingTimeGraph(StaplerRequest request,
       StaplerResponse response) throws IOException {
     String parameter = request.getParameter("performanceReportPosition");
-    AbstractBuild<?, ?> previousBuild = getBuild();
-    final Map<AbstractBuild<?, ?>, Map<String, PerformanceReport>> buildReports = new LinkedHashMap<AbstractBuild<?, ?>, Map<String, PerformanceReport>>();
-    while (previousBuild != null) {
-      final AbstractBuild<?, ?> currentBuild = previousBuild;
-      parseReports(currentBuild, TaskListener.NULL,
-          new PerformanceReportCollector() {
-
-            public void addAll(Collection<PerformanceReport> parse) {
-              for (PerformanceReport performanceReport : parse) {
-                if (buildReports.get(currentBuild) == null) {
-                  Map<String, PerformanceReport> map = new LinkedHashMap<String, PerformanceReport>();
-                  buildReports.put(currentBuild, map);
-                }
-                buildReports.get(currentBuild).put(
-                    performanceReport.getReportFileName(), performanceReport);
-              }
-            }
-          }, parameter);
-      previousBuild = previousBuild.getPreviousBuild();
-    }
-    // Now we should have the data necessary to generate the graphs!
     DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-    for (AbstractBuild<?, ?> currentBuild : buildReports.keySet()) {
-      NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
-      PerformanceReport report = buildReports.get(currentBuild).get(parameter);
-      dataSetBuilderAverage.add(report.getAverage(),
+    for (Map.Entry<AbstractBuild<?, ?>, TrendIndex.Point> point : getTrendPoints(
+        request, parameter).entrySet()) {
+      NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(point.getKey());
+      dataSetBuilderAverage.add(point.getValue().getAverage(),
           Messages.ProjectAction_Average(), label);
     }
-    ChartUtil.generateGraph(request, response, PerformanceProjectAction
+    Instrumentation.generateGraph(request, response, PerformanceProjectAction
         .createRespondingTimeChart(dataSetBuilderAverage.build()), 400, 200);
   }
 
   public void doSummarizerGraph(StaplerRequest request, StaplerResponse response)
       throws IOException {
     String parameter = request.getParameter("performanceReportPosition");
-    AbstractBuild<?, ?> previousBuild = getBuild();
-    final Map<AbstractBuild<?, ?>, Map<String, PerformanceReport>> buildReports = new LinkedHashMap<AbstractBuild<?, ?>, Map<String, PerformanceReport>>();
-
-    while (previousBuild != null) {
-      final AbstractBuild<?, ?> currentBuild = previousBuild;
-      parseReports(currentBuild, TaskListener.NULL,
-          new PerformanceReportCollector() {
-
-            public void addAll(Collection<PerformanceReport> parse) {
-              for (PerformanceReport performanceReport : parse) {
-                if (buildReports.get(currentBuild) == null) {
-                  Map<String, PerformanceReport> map = new LinkedHashMap<String, PerformanceReport>();
-                  buildReports.put(currentBuild, map);
-                }
-                buildReports.get(currentBuild).put(
-                    performanceReport.getReportFileName(), performanceReport);
-              }
-            }
-          }, parameter);
-      previousBuild = previousBuild.getPreviousBuild();
-    }
     DataSetBuilder<NumberOnlyBuildLabel, String> dataSetBuilderSummarizer = new DataSetBuilder<NumberOnlyBuildLabel, String>();
-    for (AbstractBuild<?, ?> currentBuild : buildReports.keySet()) {
-      NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
-      PerformanceReport report = buildReports.get(currentBuild).get(parameter);
-
-      // Now we should have the data necessary to generate the graphs!
-      for (String key : report.getUriReportMap().keySet()) {
-        Long methodAvg = report.getUriReportMap().get(key).getAverage();
-        dataSetBuilderSummarizer.add(methodAvg, label, key);
+    for (Map.Entry<AbstractBuild<?, ?>, TrendIndex.Point> point : getTrendPoints(
+        request, parameter).entrySet()) {
+      NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(point.getKey());
+      for (Map.Entry<String, Long> uri : point.getValue().getUriAverages()
+          .entrySet()) {
+        dataSetBuilderSummarizer.add(uri.getValue(), label, uri.getKey());
       }
-      ;
     }
-    ChartUtil.generateGraph(
+    Instrumentation.generateGraph(
         request,
         response,
         PerformanceProjectAction.createSummarizerChart(
@@ -253,9 +336,132 @@ public class PerformanceReportMap implements ModelObject {
             Messages.ProjectAction_RespondingTime()), 400, 200);
   }
 
-  private void parseReports(AbstractBuild<?, ?> build, TaskListener listener,
-      PerformanceReportCollector collector, final String filename)
+  /**
+   * Requests per second of a report during this build, drawn from its summary.
+   */
+  public void doThroughputTimelineGraph(StaplerRequest request,
+      StaplerResponse response) throws IOException {
+    String parameter = request.getParameter("performanceReportPosition");
+    ReportSummary summary = buildAction.getReportSummary(parameter);
+    if (summary == null) {
+      return;
+    }
+    Instrumentation.generateGraph(request, response, PerformanceProjectAction
+        .createThroughputTimelineChart(summary.getThroughputTimeline(),
+            Messages.ProjectAction_Throughput()), 400, 200);
+  }
+
+  /**
+   * Requests in flight and latency of a report during this build, drawn from
+   * its summary.
+   */
+  public void doConcurrencyGraph(StaplerRequest request,
+      StaplerResponse response) throws IOException {
+    String parameter = request.getParameter("performanceReportPosition");
+    ReportSummary summary = buildAction.getReportSummary(parameter);
+    if (summary == null) {
+      return;
+    }
+    Instrumentation.generateGraph(request, response, PerformanceProjectAction
+        .createConcurrencyChart(summary.getThroughputTimeline(),
+            Messages.ProjectAction_Concurrency()), 400, 200);
+  }
+
+  /**
+   * Serves the summaries of the reports of this build as JSON, with the figures
+   * of each URI. Answers 304 once the build is over and the browser has them.
+   */
+  public void doSummaryData(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    AbstractBuild<?, ?> build = getBuild();
+    if (!build.isBuilding()) {
+      response.setHeader("Cache-Control", "private, max-age=0, must-revalidate");
+      if (request.checkIfModified(build.getTimeInMillis() + build.getDuration(),
+          response)) {
+        return;
+      }
+    }
+    response.setContentType("application/json;charset=UTF-8");
+    JsonWriter json = new JsonWriter(response.getWriter());
+    json.beginObject();
+    json.name("build").value(build.number);
+    json.name("reports").beginArray();
+    for (ReportSummary summary : getReportSummaryListOrdered()) {
+      json.beginObject();
+      json.name("report").value(summary.getReportFileName());
+      writeFigures(json, summary);
+      json.name("throughput").value(summary.getThroughput());
+      json.name("peakThroughput").value(summary.getPeakThroughput());
+      json.name("uris").beginArray();
+      for (UriSummary uri : summary.getUriListOrdered()) {
+        json.beginObject();
+        json.name("uri").value(uri.getUri());
+        writeFigures(json, uri);
+        json.endObject();
+      }
+      json.endArray();
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
+    json.flush();
+  }
+
+  /**
+   * Serves the trend of a report up to this build as JSON, one array per
+   * figure, as the project's <tt>trendData</tt> does.
+   */
+  public void doTrendData(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    String parameter = request.getParameter("performanceReportPosition");
+    if (parameter == null || buildAction.getReportSummary(parameter) == null) {
+      response.sendError(StaplerResponse.SC_NOT_FOUND);
+      return;
+    }
+    AbstractBuild<?, ?> build = getBuild();
+    TrendIndex.get(build.getProject()).serveJson(parameter, build.number,
+        request, response);
+  }
+
+  private static void writeFigures(JsonWriter json, AbstractReport report)
       throws IOException {
+    json.name("samples").value(report.size());
+    json.name("errors").value(report.countErrors());
+    json.name("errorPercent").value(report.errorPercent());
+    json.name("average").value(report.getAverage());
+    json.name("median").value(report.getMedian());
+    json.name("line90").value(report.get90Line());
+    json.name("min").value(report.getMin());
+    json.name("max").value(report.getMax());
+    json.name("apdex").value(report.getApdex());
+  }
+
+  /**
+   * Points of the report up to this build, within the range of the user's
+   * graph configuration. Only the builds drawn are loaded.
+   */
+  private Map<AbstractBuild<?, ?>, TrendIndex.Point> getTrendPoints(
+      StaplerRequest request, String reportFileName) {
+    AbstractProject<?, ?> project = getBuild().getProject();
+    TrendIndex index = TrendIndex.get(project);
+    GraphConfigurationDetail graphConf = new GraphConfigurationDetail(project,
+        PLUGIN_NAME, request);
+    Map<AbstractBuild<?, ?>, TrendIndex.Point> points = new LinkedHashMap<AbstractBuild<?, ?>, TrendIndex.Point>();
+    for (Map.Entry<Integer, TrendIndex.Point> point : index.getPoints(
+        reportFileName, graphConf, getBuild().number).entrySet()) {
+      AbstractBuild<?, ?> build = project.getBuildByNumber(point.getKey());
+      if (build == null) {
+        // deleted since
+        index.remove(point.getKey());
+        continue;
+      }
+      points.put(build, point.getValue());
+    }
+    return points;
+  }
+
+  private void parseReports(AbstractBuild<?, ?> build, TaskListener listener,
+      PerformanceReportCollector collector) throws IOException {
     File repo = new File(build.getRootDir(),
         PerformanceReportMap.getPerformanceReportDirRelativePath());
 
@@ -288,58 +494,40 @@ public class PerformanceReportMap implements ModelObject {
           File[] listFiles = dir.listFiles(new FilenameFilter() {
 
             public boolean accept(File dir, String name) {
-              if (filename == null && !name.contains(".serialized")) {
-                return true;
-              }
-              if (name.equals(filename)) {
-                return true;
-              }
-              return false;
+              return !name.contains(".serialized");
             }
           });
           collector.addAll(p.parse(build, Arrays.asList(listFiles), listener));
         }
       }
     }
-
-    addPreviousBuildReports();
   }
 
+  /**
+   * Links the reports with the summaries of the previous build, for the diffs.
+   * Only the persisted summaries are read, the previous build's reports are
+   * never parsed.
+   */
   private void addPreviousBuildReports() {
-
-    // Avoid parsing all builds.
-    if (PerformanceReportMap.currentBuild == null) {
-      PerformanceReportMap.currentBuild = getBuild();
-    } else {
-      if (PerformanceReportMap.currentBuild != getBuild()) {
-        PerformanceReportMap.currentBuild = null;
-        return;
-      }
-    }
-
     AbstractBuild<?, ?> previousBuild = getBuild().getPreviousBuild();
     if (previousBuild == null) {
       return;
     }
-
-    PerformanceBuildAction previousPerformanceAction = previousBuild
-        .getAction(PerformanceBuildAction.class);
-    if (previousPerformanceAction == null) {
-      return;
-    }
-
-    PerformanceReportMap previousPerformanceReportMap = previousPerformanceAction
-        .getPerformanceReportMap();
-    if (previousPerformanceReportMap == null) {
+    List<ReportSummary> previousSummaries = ReportSummary.load(previousBuild);
+    if (previousSummaries == null) {
+      if (previousBuild.getAction(PerformanceBuildAction.class) != null) {
+        ReportSummaryWorker.schedule(previousBuild);
+      }
       return;
     }
 
-    for (Map.Entry<String, PerformanceReport> item : getPerformanceReportMap()
+    Map<String, ReportSummary> lastSummaries = ReportSummary
+        .byReportFileName(previousSummaries);
+    for (Map.Entry<String, PerformanceReport> item : performanceReportMap
         .entrySet()) {
-      PerformanceReport lastReport = previousPerformanceReportMap
-          .getPerformanceReportMap().get(item.getKey());
-      if (lastReport != null) {
-        item.getValue().setLastBuildReport(lastReport);
+      ReportSummary lastSummary = lastSummaries.get(item.getKey());
+      if (lastSummary != null) {
+        item.getValue().setLastBuildSummary(lastSummary);
       }
     }
   }
@@ -359,8 +547,9 @@ public class PerformanceReportMap implements ModelObject {
   }
 
   public Object createTrendReportGraphs(final StaplerRequest request) {
+    Map<String, PerformanceReport> reports = getLoadedReportMap();
     String filename = getTrendReportFilename(request);
-    PerformanceReport report = performanceReportMap.get(filename);
+    PerformanceReport report = reports.get(filename);
     AbstractBuild<?, ?> build = getBuild();
 
     TrendReportGraphs trendReport = new TrendReportGraphs(build.getProject(),
@@ -28,10 +28,33 @@ public abstract class PerformanceReportParser implements
    */
   public final String glob;
 
+  /**
+   * Seconds skipped at the start and at the end of the test, so that the
+   * figures only cover its steady state.
+   */
+  public final int skipFirstSeconds;
+
+  public final int skipLastSeconds;
+
+  /**
+   * Whether the steady state is detected from the throughput instead.
+   *
+   * @see SteadyStateFilter
+   */
+  public final boolean detectSteadyState;
+
   @DataBoundConstructor
   protected PerformanceReportParser(String glob) {
+    this(glob, 0, 0, false);
+  }
+
+  protected PerformanceReportParser(String glob, int skipFirstSeconds,
+      int skipLastSeconds, boolean detectSteadyState) {
     this.glob = (glob == null || glob.length() == 0) ? getDefaultGlobPattern()
         : glob;
+    this.skipFirstSeconds = skipFirstSeconds;
+    this.skipLastSeconds = skipLastSeconds;
+    this.detectSteadyState = detectSteadyState;
   }
 
   public PerformanceReportParserDescriptor getDescriptor() {
@@ -48,6 +71,28 @@ public abstract class PerformanceReportParser implements
 
   public abstract String getDefaultGlobPattern();
 
+  /**
+   * @return a new report of the build, with the Apdex thresholds, label rules
+   *         and sample retention it is parsed with
+   */
+  protected PerformanceReport newReport(AbstractBuild<?, ?> build,
+      String reportFileName) {
+    PerformanceReport r = new PerformanceReport();
+    r.setApdexThresholds(getApdexThresholds(build));
+    r.setLabelRules(LabelRules.of(build));
+    r.setSampleRetention(SampleRetention.of(build));
+    r.setReportFileName(reportFileName);
+    return r;
+  }
+
+  /**
+   * @return the Apdex thresholds of the reports of the build, which the
+   *         parsers whose samples are averages don't count
+   */
+  protected ApdexThresholds getApdexThresholds(AbstractBuild<?, ?> build) {
+    return ApdexThresholds.of(build);
+  }
+
   /**
    * All registered implementations.
    */
@@ -0,0 +1,395 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The metrics of a {@link PerformanceReport}, without its samples.
+ *
+ * <p>
+ * Summaries are computed once per build, persisted next to the reports and
+ * used by the pages and trend graphs that only need the figures, so they
+ * don't have to parse the report files.
+ *
+ * @see ReportSummaryWorker
+ */
+public class ReportSummary extends AbstractReport implements Serializable,
+    Comparable<ReportSummary> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Logger LOGGER = Logger.getLogger(ReportSummary.class
+      .getName());
+
+  /**
+   * Name of the file holding the summaries of a build, in the performance
+   * reports directory. It is skipped by the report lookups like any other
+   * ".serialized" file.
+   */
+  static final String SUMMARIES_FILE_NAME = "summaries.serialized";
+
+  private final String reportFileName;
+
+  private final boolean summarizer;
+
+  private final int size;
+
+  private final int errors;
+
+  private final double errorPercent;
+
+  private final long average;
+
+  private final long median;
+
+  private final long line90;
+
+  private final long min;
+
+  private final long max;
+
+  private final double averageSizeInKb;
+
+  private final double totalTrafficInKb;
+
+  private final long throughput;
+
+  private final ThroughputTimeline throughputTimeline;
+
+  private final double apdex;
+
+  private final boolean latency;
+
+  private final long averageLatency;
+
+  private final long averageConnectTime;
+
+  /**
+   * The retention the report was parsed with, null in the summaries written
+   * before it was kept.
+   */
+  private final SampleRetention sampleRetention;
+
+  private final List<ThreadGroupReport> threadGroups = new ArrayList<ThreadGroupReport>();
+
+  /**
+   * {@link UriSummary}s keyed by their {@link UriSummary#getStaplerUri()}.
+   */
+  private final Map<String, UriSummary> uriSummaryMap = new LinkedHashMap<String, UriSummary>();
+
+  private transient ReportSummary lastBuildSummary;
+
+  ReportSummary(PerformanceReport report) {
+    reportFileName = report.getReportFileName();
+    summarizer = report.ifSummarizerParserUsed(reportFileName);
+    size = report.size();
+    errors = report.countErrors();
+    errorPercent = report.errorPercent();
+    average = report.getAverage();
+    median = report.getMedian();
+    line90 = report.get90Line();
+    min = report.getMin();
+    max = report.getMax();
+    averageSizeInKb = report.getAverageSizeInKb();
+    totalTrafficInKb = report.getTotalTrafficInKb();
+    throughput = new ThroughputReport(report).get();
+    throughputTimeline = report.getThroughputTimeline();
+    apdex = report.getApdex();
+    latency = report.hasLatency();
+    averageLatency = report.getAverageLatency();
+    averageConnectTime = report.getAverageConnectTime();
+    sampleRetention = report.getSampleRetention();
+    for (ThreadGroupReport threadGroup : report.getThreadGroups()) {
+      threadGroups.add(threadGroup.summarize());
+    }
+    for (Map.Entry<String, UriReport> entry : report.getUriReportMap()
+        .entrySet()) {
+      uriSummaryMap.put(entry.getKey(), new UriSummary(entry.getValue()));
+    }
+  }
+
+  public static List<ReportSummary> summarize(
+      Collection<PerformanceReport> reports) {
+    List<ReportSummary> summaries = new ArrayList<ReportSummary>();
+    for (PerformanceReport report : reports) {
+      summaries.add(new ReportSummary(report));
+    }
+    return summaries;
+  }
+
+  static File getSummariesFile(AbstractBuild<?, ?> build) {
+    return new File(new File(build.getRootDir(),
+        PerformanceReportMap.getPerformanceReportDirRelativePath()),
+        SUMMARIES_FILE_NAME);
+  }
+
+  public static boolean exists(AbstractBuild<?, ?> build) {
+    return getSummariesFile(build).exists();
+  }
+
+  /**
+   * @return the summaries of the build, or <code>null</code> if they haven't
+   *         been computed
+   */
+  @SuppressWarnings("unchecked")
+  public static List<ReportSummary> load(AbstractBuild<?, ?> build) {
+    ObjectInputStream in = null;
+    try {
+      in = new ObjectInputStream(new FileInputStream(getSummariesFile(build)));
+      return (List<ReportSummary>) in.readObject();
+    } catch (FileNotFoundException fne) {
+      // not computed yet
+    } catch (Exception unknown) {
+      LOGGER.warning("Deserialization failed. " + unknown);
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+    return null;
+  }
+
+  public static void save(AbstractBuild<?, ?> build,
+      List<ReportSummary> summaries) throws IOException {
+    File file = getSummariesFile(build);
+    file.getParentFile().mkdirs();
+    // write aside then rename, readers never see a partial file
+    File tmp = new File(file.getPath() + ".tmp");
+    ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tmp));
+    try {
+      out.writeObject(new ArrayList<ReportSummary>(summaries));
+    } finally {
+      out.close();
+    }
+    file.delete();
+    if (!tmp.renameTo(file)) {
+      throw new IOException("Failed to rename " + tmp + " to " + file);
+    }
+  }
+
+  public int compareTo(ReportSummary summary) {
+    if (this == summary) {
+      return 0;
+    }
+    return getReportFileName().compareTo(summary.getReportFileName());
+  }
+
+  public String getReportFileName() {
+    return reportFileName;
+  }
+
+  /**
+   * @see PerformanceReport#ifSummarizerParserUsed(String)
+   */
+  public boolean ifSummarizerParserUsed(String filename) {
+    return summarizer;
+  }
+
+  public int countErrors() {
+    return errors;
+  }
+
+  public double errorPercent() {
+    return errorPercent;
+  }
+
+  public long getAverage() {
+    return average;
+  }
+
+  public long getMedian() {
+    return median;
+  }
+
+  public long get90Line() {
+    return line90;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String getHttpCode() {
+    return "";
+  }
+
+  public double getAverageSizeInKb() {
+    return averageSizeInKb;
+  }
+
+  public double getTotalTrafficInKb() {
+    return totalTrafficInKb;
+  }
+
+  /**
+   * @see ThroughputReport#get()
+   */
+  public long getThroughput() {
+    return throughput;
+  }
+
+  public double getApdex() {
+    return apdex;
+  }
+
+  public boolean hasLatency() {
+    return latency;
+  }
+
+  public long getAverageLatency() {
+    return averageLatency;
+  }
+
+  public long getAverageConnectTime() {
+    return averageConnectTime;
+  }
+
+  /**
+   * @return the retention the report was parsed with
+   */
+  SampleRetention getSampleRetention() {
+    if (sampleRetention == null) {
+      // summary written before the retention was kept, when all the samples
+      // were
+      return new SampleRetention(SampleRetention.ALL, 0);
+    }
+    return sampleRetention;
+  }
+
+  /**
+   * @see PerformanceReport#getThreadGroups()
+   */
+  public List<ThreadGroupReport> getThreadGroups() {
+    if (threadGroups == null) {
+      // summary written before the thread groups existed
+      return Collections.<ThreadGroupReport> emptyList();
+    }
+    return threadGroups;
+  }
+
+  public ThreadGroupReport getThreadGroup(String name) {
+    for (ThreadGroupReport threadGroup : getThreadGroups()) {
+      if (threadGroup.getName().equals(name)) {
+        return threadGroup;
+      }
+    }
+    return null;
+  }
+
+  public ThroughputTimeline getThroughputTimeline() {
+    if (throughputTimeline == null) {
+      // summary written before the timeline existed
+      return new ThroughputTimeline();
+    }
+    return throughputTimeline;
+  }
+
+  /**
+   * @see ThroughputTimeline#getPeakThroughput()
+   * @return the peak throughput, rounded to two decimals
+   */
+  public double getPeakThroughput() {
+    return Math.round(getThroughputTimeline().getPeakThroughput() * 100)
+        / 100d;
+  }
+
+  /**
+   * @see ThroughputTimeline#getSustainedThroughput()
+   * @return the sustained throughput, rounded to two decimals
+   */
+  public double getSustainedThroughput() {
+    return Math.round(getThroughputTimeline().getSustainedThroughput() * 100)
+        / 100d;
+  }
+
+  public Map<String, UriSummary> getUriSummaryMap() {
+    return uriSummaryMap;
+  }
+
+  public List<UriSummary> getUriListOrdered() {
+    return new ArrayList<UriSummary>(uriSummaryMap.values());
+  }
+
+  /**
+   * Links the summary with the one of the same report in a previous build, for
+   * the diffs.
+   */
+  void setLastBuildSummary(ReportSummary lastBuildSummary) {
+    for (Map.Entry<String, UriSummary> item : uriSummaryMap.entrySet()) {
+      item.getValue().setLastBuildUriSummary(
+          lastBuildSummary.getUriSummaryMap().get(item.getKey()));
+    }
+    this.lastBuildSummary = lastBuildSummary;
+  }
+
+  public long getAverageDiff() {
+    if (lastBuildSummary == null) {
+      return 0;
+    }
+    return getAverage() - lastBuildSummary.getAverage();
+  }
+
+  public long getMedianDiff() {
+    if (lastBuildSummary == null) {
+      return 0;
+    }
+    return getMedian() - lastBuildSummary.getMedian();
+  }
+
+  public double getErrorPercentDiff() {
+    if (lastBuildSummary == null) {
+      return 0;
+    }
+    return errorPercent() - lastBuildSummary.errorPercent();
+  }
+
+  public String getLastBuildHttpCodeIfChanged() {
+    return "";
+  }
+
+  public int getSizeDiff() {
+    if (lastBuildSummary == null) {
+      return 0;
+    }
+    return size() - lastBuildSummary.size();
+  }
+
+  static Map<String, ReportSummary> byReportFileName(
+      List<ReportSummary> summaries) {
+    if (summaries == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, ReportSummary> map = new LinkedHashMap<String, ReportSummary>();
+    for (ReportSummary summary : summaries) {
+      map.put(summary.getReportFileName(), summary);
+    }
+    return map;
+  }
+}
@@ -0,0 +1,136 @@
+package hudson.plugins.performance;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computes and persists the {@link ReportSummary}s of builds in the
+ * background, so that page views read them instead of parsing the reports.
+ *
+ * <p>
+ * Builds are queued at the end of {@link PerformancePublisher#perform} and, at
+ * startup, for every build that has a {@link PerformanceBuildAction} but no
+ * summaries yet. A small pool of low priority daemon threads does the work.
+ */
+public final class ReportSummaryWorker {
+
+  private static final Logger LOGGER = Logger
+      .getLogger(ReportSummaryWorker.class.getName());
+
+  private static final int POOL_SIZE = Math.max(1, Math.min(2, Runtime
+      .getRuntime().availableProcessors() / 2));
+
+  private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+      POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final ThreadFactory delegate = new DaemonThreadFactory();
+
+        public Thread newThread(Runnable r) {
+          Thread t = delegate.newThread(r);
+          t.setName("Performance report summaries");
+          t.setPriority(Thread.MIN_PRIORITY);
+          return t;
+        }
+      });
+
+  static {
+    EXECUTOR.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Root directories of the queued builds, so a build is only queued once.
+   */
+  private static final Set<String> PENDING = Collections
+      .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  private ReportSummaryWorker() {
+  }
+
+  /**
+   * Queues the computation of the summaries of a build, unless they already
+   * exist or are already queued.
+   */
+  public static void schedule(final AbstractBuild<?, ?> build) {
+    if (ReportSummary.exists(build)) {
+      return;
+    }
+    final String key = build.getRootDir().getPath();
+    if (!PENDING.add(key)) {
+      return;
+    }
+    EXECUTOR.execute(new Runnable() {
+      public void run() {
+        try {
+          summarize(build);
+        } catch (Throwable e) {
+          LOGGER.log(Level.WARNING, "Failed to summarize the performance "
+              + "reports of " + build, e);
+        } finally {
+          PENDING.remove(key);
+        }
+      }
+    });
+  }
+
+  /**
+   * Computes and persists the summaries of a build now. Only run by the
+   * workers, once at a time per build, without holding the build action's
+   * monitor so that its pages don't wait for the reports to be parsed.
+   *
+   * @return the summaries, or <code>null</code> if the build has no
+   *         performance reports
+   */
+  private static List<ReportSummary> summarize(AbstractBuild<?, ?> build)
+      throws IOException {
+    PerformanceBuildAction action = build
+        .getAction(PerformanceBuildAction.class);
+    if (action == null) {
+      return null;
+    }
+    List<ReportSummary> summaries = ReportSummary.load(build);
+    if (summaries != null) {
+      return summaries;
+    }
+    PerformanceReportMap reportMap = action.getPerformanceReportMap();
+    if (reportMap == null) {
+      return null;
+    }
+    Instrumentation.Timer timer = Instrumentation
+        .start(Instrumentation.Phase.AGGREGATE);
+    summaries = ReportSummary.summarize(reportMap.getPerformanceReportMap()
+        .values());
+    timer.stop();
+    ReportSummary.save(build, summaries);
+    TrendIndex.update(build, summaries);
+    return summaries;
+  }
+
+  @Initializer(after = InitMilestone.JOB_LOADED)
+  public static void scheduleMissingSummaries() {
+    for (AbstractProject<?, ?> project : Hudson.getInstance().getAllItems(
+        AbstractProject.class)) {
+      for (AbstractBuild<?, ?> build : project.getBuilds()) {
+        if (!build.isBuilding()
+            && build.getAction(PerformanceBuildAction.class) != null) {
+          schedule(build);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package hudson.plugins.performance;
+
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the report files found in a workspace to the master in bulk.
+ *
+ * <p>
+ * Copying the files one by one costs a remoting round-trip per file and sends
+ * them uncompressed. Instead, one call inspects all the files on the slave,
+ * skipping the ones whose size and checksum already match the copy on the
+ * master, and the remaining files are sent in a single compressed tar stream
+ * by {@link FilePath#copyRecursiveTo(String, FilePath)}.
+ */
+class ReportTransfer {
+
+  private final FilePath workspace;
+
+  private final File scratch;
+
+  private final PrintStream logger;
+
+  /**
+   * Files to copy, keyed by their path relative to the workspace.
+   */
+  private final Map<String, File> targets = new LinkedHashMap<String, File>();
+
+  private final List<File> localReports = new ArrayList<File>();
+
+  ReportTransfer(FilePath workspace, File scratch, PrintStream logger) {
+    this.workspace = workspace;
+    this.scratch = scratch;
+    this.logger = logger;
+  }
+
+  /**
+   * Schedules the copy of a file of the workspace.
+   */
+  void add(FilePath src, File target) throws IOException, InterruptedException {
+    String path = getRelativePath(src);
+    if (path == null) {
+      // not in the workspace, should not happen with ant patterns
+      if (src.isDirectory()) {
+        logDirectory(src.getName());
+        return;
+      }
+      src.copyTo(new FilePath(target));
+      localReports.add(target);
+      return;
+    }
+    targets.put(path, target);
+  }
+
+  /**
+   * Performs the scheduled copies.
+   *
+   * @return the local copies, in the order they were added
+   */
+  List<File> copy() throws IOException, InterruptedException {
+    if (targets.isEmpty()) {
+      return localReports;
+    }
+    long start = System.currentTimeMillis();
+
+    Map<String, Long> localLengths = new HashMap<String, Long>();
+    for (Map.Entry<String, File> target : targets.entrySet()) {
+      if (target.getValue().isFile()) {
+        localLengths.put(target.getKey(), target.getValue().length());
+      }
+    }
+    Map<String, RemoteFile> remote = workspace.act(new Inspect(
+        new ArrayList<String>(targets.keySet()), localLengths));
+
+    StringBuilder mask = new StringBuilder();
+    List<String> needed = new ArrayList<String>();
+    long bytes = 0;
+    int upToDate = 0;
+    for (Map.Entry<String, File> target : targets.entrySet()) {
+      String path = target.getKey();
+      RemoteFile file = remote.get(path);
+      if (!file.exists) {
+        // deleted from the workspace since it was found
+        logger.println("Performance: File '" + target.getValue().getName()
+            + "' no longer exists, skipping it");
+        continue;
+      }
+      if (file.directory) {
+        logDirectory(target.getValue().getName());
+        continue;
+      }
+      localReports.add(target.getValue());
+      // the slave only sends a checksum when the sizes match
+      if (file.digest != null
+          && file.digest.equals(Util.getDigestOf(new FileInputStream(target
+              .getValue())))) {
+        upToDate++;
+        continue;
+      }
+      needed.add(path);
+      bytes += file.length;
+      if (isPlainPath(path)) {
+        if (mask.length() > 0) {
+          mask.append(',');
+        }
+        mask.append(path);
+      }
+    }
+
+    try {
+      if (mask.length() > 0) {
+        workspace.copyRecursiveTo(mask.toString(), new FilePath(scratch));
+      }
+      for (String path : needed) {
+        File target = targets.get(path);
+        File copied = new File(scratch, path);
+        target.getParentFile().mkdirs();
+        if (target.exists()) {
+          target.delete();
+        }
+        if (!copied.isFile() || !copied.renameTo(target)) {
+          // excluded by the ant default excludes or not a plain path
+          workspace.child(path).copyTo(new FilePath(target));
+        }
+      }
+    } finally {
+      Util.deleteRecursive(scratch);
+    }
+
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    logger.println("Performance: Copied " + needed.size() + " report file(s), "
+        + (bytes / 1024) + " KB in " + elapsed + " ms ("
+        + (bytes * 1000 / 1024 / elapsed) + " KB/s), " + upToDate
+        + " already up to date");
+    return localReports;
+  }
+
+  private void logDirectory(String name) {
+    logger.println("Performance: File '" + name
+        + "' is a directory, not a Performance Report");
+  }
+
+  private String getRelativePath(FilePath src) {
+    String base = workspace.getRemote();
+    String remote = src.getRemote();
+    if (base == null || remote == null || remote.length() <= base.length() + 1
+        || !remote.startsWith(base)) {
+      return null;
+    }
+    char separator = remote.charAt(base.length());
+    if (base.endsWith("/") || base.endsWith("\\")) {
+      return remote.substring(base.length());
+    }
+    if (separator != '/' && separator != '\\') {
+      return null;
+    }
+    return remote.substring(base.length() + 1);
+  }
+
+  /**
+   * Whether the path can be used verbatim in an ant file mask.
+   */
+  private static boolean isPlainPath(String path) {
+    return path.indexOf(',') < 0 && path.indexOf('*') < 0
+        && path.indexOf('?') < 0 && path.trim().equals(path);
+  }
+
+  private static final class RemoteFile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean exists;
+
+    private boolean directory;
+
+    private long length;
+
+    private String digest;
+  }
+
+  /**
+   * Finds the size of the files on the slave, and their checksum when the
+   * master already has a file of the same size.
+   */
+  private static final class Inspect implements
+      FileCallable<Map<String, RemoteFile>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> paths;
+
+    private final Map<String, Long> localLengths;
+
+    Inspect(List<String> paths, Map<String, Long> localLengths) {
+      this.paths = paths;
+      this.localLengths = localLengths;
+    }
+
+    public Map<String, RemoteFile> invoke(File workspace, VirtualChannel channel)
+        throws IOException {
+      Map<String, RemoteFile> result = new HashMap<String, RemoteFile>();
+      for (String path : paths) {
+        File file = new File(workspace, path);
+        RemoteFile remote = new RemoteFile();
+        remote.exists = file.exists();
+        remote.directory = file.isDirectory();
+        remote.length = file.length();
+        Long localLength = localLengths.get(path);
+        if (!remote.directory && localLength != null
+            && localLength == remote.length) {
+          remote.digest = Util.getDigestOf(new FileInputStream(file));
+        }
+        result.put(path, remote);
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package hudson.plugins.performance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Pulls the samples of a report file one at a time, so that several files can
+ * be read side by side.
+ */
+abstract class SampleReader implements Closeable {
+
+  /**
+   * @return the next sample, or <code>null</code> at the end of the file
+   */
+  abstract HttpSample read() throws IOException;
+
+  /**
+   * Merges the readers into a single stream ordered by timestamp, given that
+   * each one is. Only the next sample of each reader is held, however large
+   * the files are.
+   */
+  static SampleReader merge(List<? extends SampleReader> readers)
+      throws IOException {
+    return new MergingReader(readers);
+  }
+
+  private static long getTimestamp(HttpSample sample) {
+    return sample.getDate() != null ? sample.getDate().getTime() : 0;
+  }
+
+  /**
+   * K-way merge of the readers, on a heap of their next samples.
+   */
+  private static final class MergingReader extends SampleReader {
+
+    private final List<? extends SampleReader> readers;
+
+    private final PriorityQueue<Head> heads;
+
+    MergingReader(List<? extends SampleReader> readers) throws IOException {
+      this.readers = readers;
+      this.heads = new PriorityQueue<Head>(Math.max(1, readers.size()),
+          new Comparator<Head>() {
+            public int compare(Head h1, Head h2) {
+              long t1 = getTimestamp(h1.sample);
+              long t2 = getTimestamp(h2.sample);
+              if (t1 != t2) {
+                return t1 < t2 ? -1 : 1;
+              }
+              // equal timestamps are taken in the order of the readers
+              return h1.index - h2.index;
+            }
+          });
+      for (int i = 0; i < readers.size(); i++) {
+        HttpSample sample = readers.get(i).read();
+        if (sample != null) {
+          heads.add(new Head(i, sample));
+        }
+      }
+    }
+
+    @Override
+    HttpSample read() throws IOException {
+      Head head = heads.poll();
+      if (head == null) {
+        return null;
+      }
+      HttpSample sample = head.sample;
+      head.sample = readers.get(head.index).read();
+      if (head.sample != null) {
+        heads.add(head);
+      }
+      return sample;
+    }
+
+    public void close() throws IOException {
+      IOException failure = null;
+      for (SampleReader reader : readers) {
+        try {
+          reader.close();
+        } catch (IOException e) {
+          failure = e;
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  private static final class Head {
+
+    private final int index;
+
+    private HttpSample sample;
+
+    Head(int index, HttpSample sample) {
+      this.index = index;
+      this.sample = sample;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+
+import java.io.Serializable;
+
+/**
+ * Which of their samples the {@link UriReport}s keep, for the sample table and
+ * the graph of the individual samples: all of them, a random reservoir of a
+ * fixed size per URI, or none. The figures of the reports are aggregated as
+ * the samples are added and don't depend on it.
+ *
+ * <p>
+ * The retention a report was parsed with is kept in its {@link ReportSummary}.
+ */
+public class SampleRetention implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final String ALL = "ALL";
+
+  public static final String RESERVOIR = "RESERVOIR";
+
+  public static final String NONE = "NONE";
+
+  public static final int DEFAULT_RESERVOIR_SIZE = 1000;
+
+  private final String mode;
+
+  private final int reservoirSize;
+
+  public SampleRetention(String mode, int reservoirSize) {
+    this.mode = mode == null ? ALL : mode;
+    this.reservoirSize = reservoirSize > 0 ? reservoirSize
+        : DEFAULT_RESERVOIR_SIZE;
+  }
+
+  /**
+   * @return the retention configured in the publisher of the build's project,
+   *         or all the samples
+   */
+  public static SampleRetention of(AbstractBuild<?, ?> build) {
+    if (build == null) {
+      return new SampleRetention(ALL, 0);
+    }
+    PerformancePublisher publisher = build.getProject().getPublishersList()
+        .get(PerformancePublisher.class);
+    if (publisher == null) {
+      return new SampleRetention(ALL, 0);
+    }
+    return new SampleRetention(publisher.getSampleRetention(),
+        publisher.getReservoirSize());
+  }
+
+  /**
+   * @return how many samples each {@link UriReport} keeps, -1 for all of them
+   */
+  public int getMaxSamples() {
+    if (NONE.equals(mode)) {
+      return 0;
+    }
+    if (RESERVOIR.equals(mode)) {
+      return reservoirSize;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,217 @@
+package hudson.plugins.performance;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Running figures of the samples of a {@link UriReport}, updated as each
+ * sample is added, so that the report doesn't need to keep the samples.
+ */
+final class SampleStatistics implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private int size;
+
+  private int errors;
+
+  private long totalDuration;
+
+  private long min = Long.MAX_VALUE;
+
+  private long max = Long.MIN_VALUE;
+
+  private double totalSizeInKb;
+
+  private final SampleValues durations = new SampleValues();
+
+  /**
+   * Only created with the first sample having one, as not every tool writes
+   * them.
+   */
+  private SampleValues latencies;
+
+  private SampleValues connectTimes;
+
+  private boolean hasLatency;
+
+  private long totalLatency;
+
+  private long totalConnectTime;
+
+  /**
+   * Start of the first sample and end of the last one, -1 and 0 without
+   * samples.
+   */
+  private long start = -1;
+
+  private long end;
+
+  private final Set<String> httpCodes = new HashSet<String>();
+
+  private String httpCode = "";
+
+  private long summarizerMax = Long.MIN_VALUE;
+
+  private long summarizerMin = Long.MAX_VALUE;
+
+  private long summarizerSize;
+
+  private float summarizerErrors;
+
+  void add(HttpSample sample) {
+    size++;
+    if (!sample.isSuccessful()) {
+      errors++;
+    }
+    long duration = sample.getDuration();
+    totalDuration += duration;
+    min = Math.min(min, duration);
+    max = Math.max(max, duration);
+    totalSizeInKb += sample.getSizeInKb();
+    durations.add(duration);
+
+    if (latencies == null && sample.getLatency() != 0) {
+      latencies = zeros(size - 1);
+    }
+    if (latencies != null) {
+      latencies.add(sample.getLatency());
+    }
+    if (connectTimes == null && sample.getConnectTime() != 0) {
+      connectTimes = zeros(size - 1);
+    }
+    if (connectTimes != null) {
+      connectTimes.add(sample.getConnectTime());
+    }
+    hasLatency |= sample.getLatency() > 0;
+    totalLatency += sample.getLatency();
+    totalConnectTime += sample.getConnectTime();
+
+    if (sample.getDate() != null) {
+      long sampleStart = sample.getDate().getTime();
+      if (start < 0 || start > sampleStart) {
+        start = sampleStart;
+      }
+      end = Math.max(end, sampleStart + duration);
+    }
+
+    if (httpCodes.add(sample.getHttpCode())) {
+      addHttpCode(sample.getHttpCode());
+    }
+
+    summarizerMax = Math.max(summarizerMax, sample.getSummarizerMax());
+    summarizerMin = Math.min(summarizerMin, sample.getSummarizerMin());
+    summarizerSize += sample.getSummarizerSamples();
+    summarizerErrors += sample.getSummarizerErrors();
+  }
+
+  private static SampleValues zeros(int count) {
+    SampleValues values = new SampleValues();
+    for (int i = 0; i < count; i++) {
+      values.add(0);
+    }
+    return values;
+  }
+
+  /**
+   * The codes listed as {@link UriReport} always did, a code found in the
+   * list already being skipped.
+   */
+  private void addHttpCode(String code) {
+    if (!httpCode.matches(".*" + code + ".*")) {
+      httpCode += (httpCode.length() > 1) ? "," + code : code;
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the estimated heap taken, in bytes
+   */
+  long getFootprint() {
+    long bytes = 256 + durations.getFootprint() + httpCodes.size()
+        * Footprint.ENTRY_BYTES;
+    if (latencies != null) {
+      bytes += latencies.getFootprint();
+    }
+    if (connectTimes != null) {
+      bytes += connectTimes.getFootprint();
+    }
+    return bytes;
+  }
+
+  int getErrors() {
+    return errors;
+  }
+
+  long getTotalDuration() {
+    return totalDuration;
+  }
+
+  long getMin() {
+    return min;
+  }
+
+  long getMax() {
+    return max;
+  }
+
+  double getTotalSizeInKb() {
+    return totalSizeInKb;
+  }
+
+  SampleValues getDurations() {
+    return durations;
+  }
+
+  boolean hasLatency() {
+    return hasLatency;
+  }
+
+  long getTotalLatency() {
+    return totalLatency;
+  }
+
+  long getTotalConnectTime() {
+    return totalConnectTime;
+  }
+
+  long getLatencyPercentile(double percentile) {
+    return latencies == null ? 0 : latencies.getPercentile(percentile);
+  }
+
+  long getConnectTimePercentile(double percentile) {
+    return connectTimes == null ? 0 : connectTimes.getPercentile(percentile);
+  }
+
+  long getStart() {
+    return start;
+  }
+
+  long getEnd() {
+    return end;
+  }
+
+  String getHttpCode() {
+    return httpCode;
+  }
+
+  long getSummarizerMax() {
+    return summarizerMax;
+  }
+
+  long getSummarizerMin() {
+    return summarizerMin;
+  }
+
+  long getSummarizerSize() {
+    return summarizerSize;
+  }
+
+  float getSummarizerErrors() {
+    return summarizerErrors;
+  }
+}
@@ -0,0 +1,286 @@
+package hudson.plugins.performance;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ * One page of the samples kept by a {@link UriReport}, filtered and sorted as
+ * asked in the query, so that large reports are browsed a page at a time.
+ *
+ * <p>
+ * The query parameters are <tt>sort</tt> (<tt>time</tt>, <tt>duration</tt>
+ * or <tt>code</tt>), <tt>desc</tt>, <tt>errors</tt> (only the failed
+ * samples), <tt>minDuration</tt> in ms, <tt>page</tt> from 1 and
+ * <tt>pageSize</tt>.
+ *
+ * <p>
+ * The samples are sorted once per column by {@link SortedSamples}, which the
+ * {@link UriReport} keeps, so a page costs one pass over the samples at most,
+ * and none without filters.
+ */
+public class SampleTable {
+
+  public static final String SORT_TIME = "time";
+
+  public static final String SORT_DURATION = "duration";
+
+  public static final String SORT_CODE = "code";
+
+  public static final int DEFAULT_PAGE_SIZE = 100;
+
+  public static final int MAX_PAGE_SIZE = 1000;
+
+  static final Comparator<HttpSample> BY_TIME = new Comparator<HttpSample>() {
+    public int compare(HttpSample s1, HttpSample s2) {
+      long t1 = s1.getDate() != null ? s1.getDate().getTime() : 0;
+      long t2 = s2.getDate() != null ? s2.getDate().getTime() : 0;
+      return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+    }
+  };
+
+  private static final Comparator<HttpSample> BY_DURATION = new Comparator<HttpSample>() {
+    public int compare(HttpSample s1, HttpSample s2) {
+      long d1 = s1.getDuration();
+      long d2 = s2.getDuration();
+      return d1 < d2 ? -1 : (d1 == d2 ? 0 : 1);
+    }
+  };
+
+  private static final Comparator<HttpSample> BY_CODE = new Comparator<HttpSample>() {
+    public int compare(HttpSample s1, HttpSample s2) {
+      String c1 = s1.getHttpCode() != null ? s1.getHttpCode() : "";
+      String c2 = s2.getHttpCode() != null ? s2.getHttpCode() : "";
+      return c1.compareTo(c2);
+    }
+  };
+
+  /**
+   * The samples sorted by each column, in ascending order, sorted when first
+   * asked for.
+   */
+  static final class SortedSamples {
+
+    private final List<HttpSample> samples;
+
+    private final Map<String, List<HttpSample>> sorted = new HashMap<String, List<HttpSample>>();
+
+    SortedSamples(List<HttpSample> samples) {
+      this.samples = samples;
+    }
+
+    synchronized List<HttpSample> get(String sort) {
+      List<HttpSample> samplesSorted = sorted.get(sort);
+      if (samplesSorted == null) {
+        samplesSorted = new ArrayList<HttpSample>(samples);
+        Collections.sort(samplesSorted, SORT_DURATION.equals(sort) ? BY_DURATION
+            : SORT_CODE.equals(sort) ? BY_CODE : BY_TIME);
+        samplesSorted = Collections.unmodifiableList(samplesSorted);
+        sorted.put(sort, samplesSorted);
+      }
+      return samplesSorted;
+    }
+  }
+
+  private final String sort;
+
+  private final boolean descending;
+
+  private final boolean errorsOnly;
+
+  private final long minDuration;
+
+  private final int pageSize;
+
+  private final int page;
+
+  /**
+   * The samples matching the filters, in order.
+   */
+  private final List<HttpSample> matching;
+
+  SampleTable(List<HttpSample> samples, String sort, boolean descending,
+      boolean errorsOnly, long minDuration, int page, int pageSize) {
+    this(new SortedSamples(samples), sort, descending, errorsOnly,
+        minDuration, page, pageSize);
+  }
+
+  SampleTable(SortedSamples samples, String sort, boolean descending,
+      boolean errorsOnly, long minDuration, int page, int pageSize) {
+    this.sort = SORT_DURATION.equals(sort) || SORT_CODE.equals(sort) ? sort
+        : SORT_TIME;
+    this.descending = descending;
+    this.errorsOnly = errorsOnly;
+    this.minDuration = Math.max(minDuration, 0);
+    this.pageSize = pageSize > 0 ? Math.min(pageSize, MAX_PAGE_SIZE)
+        : DEFAULT_PAGE_SIZE;
+
+    List<HttpSample> sorted = samples.get(this.sort);
+    if (descending) {
+      sorted = reverse(sorted);
+    }
+    if (!errorsOnly && this.minDuration == 0) {
+      matching = sorted;
+    } else {
+      matching = new ArrayList<HttpSample>();
+      for (HttpSample sample : sorted) {
+        if (errorsOnly && sample.isSuccessful()) {
+          continue;
+        }
+        if (sample.getDuration() < this.minDuration) {
+          continue;
+        }
+        matching.add(sample);
+      }
+    }
+    this.page = Math.max(1, Math.min(page, getPageCount()));
+  }
+
+  private static <T> List<T> reverse(final List<T> list) {
+    return new AbstractList<T>() {
+
+      @Override
+      public T get(int index) {
+        return list.get(list.size() - 1 - index);
+      }
+
+      @Override
+      public int size() {
+        return list.size();
+      }
+    };
+  }
+
+  static SampleTable of(SortedSamples samples, StaplerRequest request) {
+    return new SampleTable(samples, request.getParameter("sort"),
+        Boolean.parseBoolean(request.getParameter("desc")),
+        Boolean.parseBoolean(request.getParameter("errors")), parseLong(request
+            .getParameter("minDuration")), (int) parseLong(request
+            .getParameter("page")), (int) parseLong(request
+            .getParameter("pageSize")));
+  }
+
+  private static long parseLong(String value) {
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * @return the samples of the page
+   */
+  public List<HttpSample> getSamples() {
+    int from = (page - 1) * pageSize;
+    return matching.subList(Math.min(from, matching.size()), Math.min(from
+        + pageSize, matching.size()));
+  }
+
+  /**
+   * @return the number of samples matching the filters
+   */
+  public int getTotal() {
+    return matching.size();
+  }
+
+  public int getPage() {
+    return page;
+  }
+
+  public int getPageCount() {
+    return Math.max(1, (matching.size() + pageSize - 1) / pageSize);
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public String getSort() {
+    return sort;
+  }
+
+  public boolean isDescending() {
+    return descending;
+  }
+
+  public boolean isErrorsOnly() {
+    return errorsOnly;
+  }
+
+  public long getMinDuration() {
+    return minDuration;
+  }
+
+  /**
+   * @return the query of another page with the same filters and order
+   */
+  public String getPageQuery(int page) {
+    return getQuery(sort, descending, page);
+  }
+
+  /**
+   * @return the query sorting by that column, in reverse when it is already
+   *         the order
+   */
+  public String getSortQuery(String sort) {
+    return getQuery(sort, sort.equals(this.sort) && !descending, 1);
+  }
+
+  private String getQuery(String sort, boolean descending, int page) {
+    StringBuilder query = new StringBuilder("?sort=").append(sort);
+    if (descending) {
+      query.append("&desc=true");
+    }
+    if (errorsOnly) {
+      query.append("&errors=true");
+    }
+    if (minDuration > 0) {
+      query.append("&minDuration=").append(minDuration);
+    }
+    if (pageSize != DEFAULT_PAGE_SIZE) {
+      query.append("&pageSize=").append(pageSize);
+    }
+    return query.append("&page=").append(page).toString();
+  }
+
+  /**
+   * Writes the page as JSON, one sample at a time.
+   */
+  void writeJson(Writer out) throws IOException {
+    JsonWriter json = new JsonWriter(out);
+    json.beginObject();
+    json.name("total").value(getTotal());
+    json.name("page").value(page);
+    json.name("pageCount").value(getPageCount());
+    json.name("pageSize").value(pageSize);
+    json.name("samples").beginArray();
+    for (HttpSample sample : getSamples()) {
+      json.beginObject();
+      json.name("uri").value(sample.getUri());
+      json.name("timestamp").value(
+          sample.getDate() != null ? sample.getDate().getTime() : 0);
+      json.name("duration").value(sample.getDuration());
+      json.name("httpCode").value(sample.getHttpCode());
+      json.name("successful").value(sample.isSuccessful());
+      json.name("latency").value(sample.getLatency());
+      json.name("connectTime").value(sample.getConnectTime());
+      json.name("threadName").value(sample.getThreadName());
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
+    json.flush();
+  }
+}
@@ -0,0 +1,91 @@
+package hudson.plugins.performance;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * One measure of the samples, e.g. their durations, kept as primitives so
+ * that the percentiles stay exact once the samples themselves are dropped.
+ * Sorted in place when a percentile is asked for; synchronized, as the pages
+ * of a loaded report may ask for them concurrently.
+ */
+final class SampleValues implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private transient long[] values = new long[16];
+
+  private int size;
+
+  private transient boolean sorted = true;
+
+  synchronized void add(long value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size++] = value;
+    sorted = false;
+  }
+
+  synchronized void addAll(SampleValues other) {
+    if (size + other.size > values.length) {
+      values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+    }
+    System.arraycopy(other.values, 0, values, size, other.size);
+    size += other.size;
+    sorted = false;
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * @return the estimated heap taken, in bytes
+   */
+  synchronized long getFootprint() {
+    return 32 + values.length * Footprint.VALUE_BYTES;
+  }
+
+  /**
+   * @param percentile
+   *          between 0 (excluded) and 100
+   * @return the value at that rank, 0 if there are none
+   */
+  synchronized long getPercentile(double percentile) {
+    if (size == 0) {
+      return 0;
+    }
+    return getSorted(Math.min((int) (size * percentile / 100), size - 1));
+  }
+
+  /**
+   * @return the value at that index once sorted
+   */
+  synchronized long getSorted(int index) {
+    if (!sorted) {
+      Arrays.sort(values, 0, size);
+      sorted = true;
+    }
+    return values[index];
+  }
+
+  private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    for (int i = 0; i < size; i++) {
+      out.writeLong(values[i]);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException,
+      ClassNotFoundException {
+    in.defaultReadObject();
+    values = new long[Math.max(size, 16)];
+    for (int i = 0; i < size; i++) {
+      values[i] = in.readLong();
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package hudson.plugins.performance;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Sits between a parser and its {@link PerformanceReport} and drops the
+ * samples that started outside the steady state of the test, so they are
+ * never retained and none of the figures include them.
+ *
+ * <p>
+ * The steady state either starts a fixed number of seconds after the first
+ * sample and ends a fixed number of seconds before the last one, or is
+ * detected from the throughput: the samples are counted by windows of
+ * {@link #WINDOW} ms, the ramp-up ends with the first window whose throughput
+ * is within {@link #TOLERANCE} of the next one, and the ramp-down is the run
+ * of windows at the end of the test whose throughput falls below the steady
+ * state's. Only the samples of the windows still undecided are held, which
+ * is a few windows, or the trailing seconds being skipped. A test whose
+ * throughput never levels off is reduced to its last window.
+ */
+class SteadyStateFilter {
+
+  static final long WINDOW = 10000;
+
+  static final double TOLERANCE = 0.1;
+
+  private final PerformanceReport report;
+
+  private final long skipFirst;
+
+  private final long skipLast;
+
+  private final boolean detect;
+
+  private long firstTimestamp = Long.MIN_VALUE;
+
+  private long latestTimestamp = Long.MIN_VALUE;
+
+  /**
+   * Samples starting before are dropped, once known.
+   */
+  private long steadyStart = Long.MIN_VALUE;
+
+  private boolean steadyStartKnown;
+
+  private int excluded;
+
+  /**
+   * Fixed window: the samples of the last {@link #skipLast} ms, in arrival
+   * order.
+   */
+  private final LinkedList<HttpSample> trailing = new LinkedList<HttpSample>();
+
+  /**
+   * Detection: the undecided samples by window number.
+   */
+  private final TreeMap<Long, List<HttpSample>> windows = new TreeMap<Long, List<HttpSample>>();
+
+  /**
+   * Detection: windows below this number are decided.
+   */
+  private long decided = Long.MIN_VALUE;
+
+  /**
+   * Detection: windows below this number were dropped as ramp-up.
+   */
+  private long rampUpEnd = Long.MIN_VALUE;
+
+  private long steadyWindows;
+
+  private long steadySamples;
+
+  /**
+   * @return a filter for the parser's window, or <code>null</code> if it keeps
+   *         every sample
+   */
+  static SteadyStateFilter create(PerformanceReportParser parser,
+      PerformanceReport report) {
+    if (!parser.detectSteadyState && parser.skipFirstSeconds <= 0
+        && parser.skipLastSeconds <= 0) {
+      return null;
+    }
+    return new SteadyStateFilter(report, parser.skipFirstSeconds * 1000L,
+        parser.skipLastSeconds * 1000L, parser.detectSteadyState);
+  }
+
+  SteadyStateFilter(PerformanceReport report, long skipFirst, long skipLast,
+      boolean detect) {
+    this.report = report;
+    this.skipFirst = Math.max(0, skipFirst);
+    this.skipLast = Math.max(0, skipLast);
+    this.detect = detect;
+  }
+
+  public void add(HttpSample sample) throws SAXException {
+    if (sample.getDate() == null) {
+      report.addSample(sample);
+      return;
+    }
+    long timestamp = sample.getDate().getTime();
+    if (firstTimestamp == Long.MIN_VALUE) {
+      firstTimestamp = timestamp;
+      if (!detect) {
+        steadyStart = timestamp + skipFirst;
+        steadyStartKnown = true;
+      }
+    }
+    latestTimestamp = Math.max(latestTimestamp, timestamp);
+    if (steadyStartKnown && timestamp < steadyStart) {
+      excluded++;
+      return;
+    }
+    if (detect) {
+      addToWindow(sample, timestamp);
+    } else if (skipLast > 0) {
+      trailing.add(sample);
+      while (getTimestamp(trailing.getFirst()) <= latestTimestamp - skipLast) {
+        report.addSample(trailing.removeFirst());
+      }
+    } else {
+      report.addSample(sample);
+    }
+  }
+
+  /**
+   * Decides on the samples still held, at the end of the report.
+   */
+  public void finish(PrintStream logger) throws SAXException {
+    if (detect) {
+      // the windows still open are closed now
+      closeWindows(Long.MAX_VALUE);
+      if (!steadyStartKnown) {
+        logger.println("Performance: No steady state detected in "
+            + report.getReportFileName() + ", keeping its last samples");
+        for (List<HttpSample> samples : windows.values()) {
+          for (HttpSample sample : samples) {
+            report.addSample(sample);
+          }
+        }
+      } else {
+        for (List<HttpSample> samples : windows.values()) {
+          excluded += samples.size();
+        }
+      }
+      windows.clear();
+    } else {
+      for (HttpSample sample : trailing) {
+        if (getTimestamp(sample) <= latestTimestamp - skipLast) {
+          report.addSample(sample);
+        } else {
+          excluded++;
+        }
+      }
+      trailing.clear();
+    }
+    if (excluded > 0) {
+      logger.println("Performance: Excluded " + excluded
+          + " sample(s) outside the steady state of "
+          + report.getReportFileName());
+    }
+  }
+
+  int getExcluded() {
+    return excluded;
+  }
+
+  private void addToWindow(HttpSample sample, long timestamp)
+      throws SAXException {
+    long window = Math.round(Math.floor((timestamp - firstTimestamp)
+        / (double) WINDOW));
+    if (window < decided) {
+      // late sample of a window that was kept
+      report.addSample(sample);
+      return;
+    }
+    if (window < rampUpEnd) {
+      excluded++;
+      return;
+    }
+    List<HttpSample> samples = windows.get(window);
+    if (samples == null) {
+      samples = new ArrayList<HttpSample>();
+      windows.put(window, samples);
+    }
+    samples.add(sample);
+    // samples arrive up to a window late, windows before are complete
+    closeWindows(window - 1);
+  }
+
+  /**
+   * Decides on the held windows numbered below <code>end</code>.
+   */
+  private void closeWindows(long end) throws SAXException {
+    if (!steadyStartKnown) {
+      detectRampUp(end);
+    }
+    if (!steadyStartKnown) {
+      return;
+    }
+    // the windows below the steady level are held until a window at the
+    // level shows the test is still running, those at the end are ramp-down
+    List<Long> kept = new ArrayList<Long>();
+    List<Long> low = new ArrayList<Long>();
+    for (Map.Entry<Long, List<HttpSample>> window : windows.headMap(end)
+        .entrySet()) {
+      int count = window.getValue().size();
+      double level = steadyWindows == 0 ? count : steadySamples
+          / (double) steadyWindows;
+      if (count < (1 - TOLERANCE) * level) {
+        low.add(window.getKey());
+        continue;
+      }
+      for (Long dip : low) {
+        keep(windows.get(dip));
+      }
+      keep(window.getValue());
+      kept.addAll(low);
+      kept.add(window.getKey());
+      low.clear();
+      decided = window.getKey() + 1;
+    }
+    for (Long window : kept) {
+      windows.remove(window);
+    }
+  }
+
+  /**
+   * Looks for two consecutive windows with about the same throughput; the
+   * windows before the first one are dropped.
+   */
+  private void detectRampUp(long end) {
+    while (true) {
+      if (windows.size() < 2) {
+        return;
+      }
+      long first = windows.firstKey();
+      long second = first + 1;
+      if (second >= end) {
+        return;
+      }
+      int firstCount = windows.get(first).size();
+      List<HttpSample> next = windows.get(second);
+      int secondCount = next == null ? 0 : next.size();
+      if (secondCount > 0 && firstCount >= (1 - TOLERANCE) * secondCount) {
+        steadyStart = firstTimestamp + first * WINDOW;
+        steadyStartKnown = true;
+        decided = first;
+        return;
+      }
+      excluded += windows.remove(first).size();
+      rampUpEnd = first + 1;
+    }
+  }
+
+  private void keep(List<HttpSample> samples) throws SAXException {
+    for (HttpSample sample : samples) {
+      report.addSample(sample);
+    }
+    steadyWindows++;
+    steadySamples += samples.size();
+  }
+
+  private static long getTimestamp(HttpSample sample) {
+    return sample.getDate().getTime();
+  }
+}
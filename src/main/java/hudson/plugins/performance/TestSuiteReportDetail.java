@@ -13,9 +13,8 @@ import hudson.util.ShiftedCategoryAxis;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.SortedMap;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
@@ -73,9 +72,15 @@ public class TestSuiteReportDetail implements ModelObject {
     DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
     List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
     Range buildsLimits = this.buildsLimits;
+    // from the trend index, the reports of the builds are not loaded
+    SortedMap<Integer, Long> durations = TrendIndex.get(getProject())
+        .getTestCaseSeries(this.filename, testUri).getDurations();
 
     int nbBuildsToAnalyze = builds.size();
     for (AbstractBuild<?, ?> build : builds) {
+      if (buildsLimits.passed(nbBuildsToAnalyze)) {
+        break;
+      }
       if (buildsLimits.in(nbBuildsToAnalyze)) {
 
         if (!buildsLimits.includedByStep(build.number)) {
@@ -87,34 +92,16 @@ public class TestSuiteReportDetail implements ModelObject {
         if (performanceBuildAction == null) {
           continue;
         }
-        PerformanceReport performanceReport = performanceBuildAction
-            .getPerformanceReportMap().getPerformanceReport(this.filename);
-        if (performanceReport == null) {
+        Long duration = durations.get(build.number);
+        if (duration == null) {
           nbBuildsToAnalyze--;
           continue;
         }
-
-        List<HttpSample> allSamples = new ArrayList<HttpSample>();
-        for (UriReport currentReport : performanceReport.getUriReportMap()
-            .values()) {
-          allSamples.addAll(currentReport.getHttpSampleList());
-        }
-        Collections.sort(allSamples);
-        for (HttpSample sample : allSamples) {
-          if (sample.getUri().equals(testUri)) {
-            if (sample.hasError()) {
-              // we set duration as 0 for tests failed because of errors
-              dataSetBuilderAverage.add(0, sample.getUri(), label);
-            } else {
-              dataSetBuilderAverage.add(sample.getDuration(), sample.getUri(),
-                  label);
-            }
-          }
-        }
+        dataSetBuilderAverage.add(duration, testUri, label);
       }
       nbBuildsToAnalyze--;
     }
-    ChartUtil.generateGraph(request, response,
+    Instrumentation.generateGraph(request, response,
         createRespondingTimeChart(dataSetBuilderAverage.build()), 600, 200);
   }
 
@@ -168,45 +155,19 @@ public class TestSuiteReportDetail implements ModelObject {
   }
 
   public List<String> getPerformanceReportTestCaseList() {
-    this.performanceReportTestCaseList = new ArrayList<String>(0);
-    String performanceReportNameFile = this.getFilename();
-
-    List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-
-    builds.size();
-    for (AbstractBuild<?, ?> build : builds) {
-
-      PerformanceBuildAction performanceBuildAction = build
-          .getAction(PerformanceBuildAction.class);
-      if (performanceBuildAction == null) {
-        continue;
-      }
-
-      PerformanceReport performanceReport = performanceBuildAction
-          .getPerformanceReportMap().getPerformanceReport(
-              performanceReportNameFile);
-      if (performanceReport == null) {
-        continue;
-      }
-
-      List<HttpSample> allSamples = new ArrayList<HttpSample>();
-      for (UriReport currentReport : performanceReport.getUriReportMap()
-          .values()) {
-        allSamples.addAll(currentReport.getHttpSampleList());
-      }
-      Collections.sort(allSamples);
-      for (HttpSample sample : allSamples) {
-        if (!performanceReportTestCaseList.contains(sample.getUri())) {
-          performanceReportTestCaseList.add(sample.getUri());
-        }
-      }
-    }
-
-    Collections.sort(performanceReportTestCaseList);
-
+    this.performanceReportTestCaseList = TrendIndex.get(getProject())
+        .getTestCases(this.getFilename());
     return this.performanceReportTestCaseList;
   }
 
+  /**
+   * @return the runs of a test case in every build
+   */
+  public TrendIndex.TestCaseSeries getTestCaseSeries(String testCase) {
+    return TrendIndex.get(getProject()).getTestCaseSeries(getFilename(),
+        testCase);
+  }
+
   public AbstractProject<?, ?> getProject() {
     return project;
   }
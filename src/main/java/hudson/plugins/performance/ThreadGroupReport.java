@@ -0,0 +1,197 @@
+package hudson.plugins.performance;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The samples of a {@link PerformanceReport} run by the threads of one JMeter
+ * thread group, whatever their labels. Only the figures and the durations are
+ * kept, the samples themselves belong to the {@link UriReport}s.
+ *
+ * <p>
+ * JMeter names its threads <tt>&lt;thread group&gt; &lt;group number&gt;-&lt;thread number&gt;</tt>,
+ * the thread group is the name without the numbers.
+ *
+ * This object belongs under {@link PerformanceReport}, and without the
+ * durations under {@link ReportSummary}.
+ */
+public class ThreadGroupReport implements Serializable,
+    Comparable<ThreadGroupReport> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Pattern THREAD_NUMBERS = Pattern.compile("^(.*\\S)\\s+\\d+-\\d+$");
+
+  private final String name;
+
+  /**
+   * The thread names, each mapped to itself so that the samples share one
+   * instance of their thread name.
+   */
+  private final Map<String, String> threadNames = new HashMap<String, String>();
+
+  private int threads;
+
+  private int size;
+
+  private int errors;
+
+  private long totalDuration;
+
+  private long min = Long.MAX_VALUE;
+
+  private long max = Long.MIN_VALUE;
+
+  private long start = Long.MAX_VALUE;
+
+  private long end = Long.MIN_VALUE;
+
+  /**
+   * The first {@link #size} are the durations of the samples, <code>null</code>
+   * once summarized.
+   */
+  private long[] durations = new long[16];
+
+  private long median;
+
+  private long line90;
+
+  ThreadGroupReport(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @return the thread group of a JMeter thread name
+   */
+  public static String getThreadGroupName(String threadName) {
+    Matcher matcher = THREAD_NUMBERS.matcher(threadName);
+    return matcher.matches() ? matcher.group(1) : threadName;
+  }
+
+  void add(HttpSample sample) {
+    String threadName = threadNames.get(sample.getThreadName());
+    if (threadName == null) {
+      threadName = sample.getThreadName();
+      threadNames.put(threadName, threadName);
+      threads++;
+    }
+    sample.setThreadName(threadName);
+
+    if (size == durations.length) {
+      durations = Arrays.copyOf(durations, size * 2);
+    }
+    durations[size++] = sample.getDuration();
+    if (!sample.isSuccessful()) {
+      errors++;
+    }
+    totalDuration += sample.getDuration();
+    min = Math.min(min, sample.getDuration());
+    max = Math.max(max, sample.getDuration());
+    if (sample.getDate() != null) {
+      start = Math.min(start, sample.getDate().getTime());
+      end = Math.max(end, sample.getDate().getTime() + sample.getDuration());
+    }
+  }
+
+  /**
+   * @return a copy with the percentiles computed, without the durations and
+   *         the thread names
+   */
+  ThreadGroupReport summarize() {
+    ThreadGroupReport summary = new ThreadGroupReport(name);
+    summary.threads = threads;
+    summary.size = size;
+    summary.errors = errors;
+    summary.totalDuration = totalDuration;
+    summary.min = min;
+    summary.max = max;
+    summary.start = start;
+    summary.end = end;
+    summary.durations = null;
+    summary.median = getMedian();
+    summary.line90 = get90Line();
+    return summary;
+  }
+
+  /**
+   * @return the estimated heap taken, in bytes
+   */
+  long getFootprint() {
+    return 256 + threadNames.size() * Footprint.ENTRY_BYTES
+        + (durations == null ? 0 : durations.length * Footprint.VALUE_BYTES);
+  }
+
+  public int compareTo(ThreadGroupReport threadGroup) {
+    return name.compareTo(threadGroup.name);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the number of threads that ran samples
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int countErrors() {
+    return errors;
+  }
+
+  public double errorPercent() {
+    return size == 0 ? 0 : ((double) errors) / size * 100;
+  }
+
+  public long getAverage() {
+    return size == 0 ? 0 : totalDuration / size;
+  }
+
+  public long getMedian() {
+    return getPercentile(50, median);
+  }
+
+  public long get90Line() {
+    return getPercentile(90, line90);
+  }
+
+  private long getPercentile(double percentile, long summarized) {
+    if (durations == null) {
+      return summarized;
+    }
+    if (size == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(durations, size);
+    Arrays.sort(sorted);
+    return sorted[Math.min((int) (size * percentile / 100), size - 1)];
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * @return the samples per second from the start of the first sample to the
+   *         end of the last one
+   */
+  public double getThroughput() {
+    if (end <= start) {
+      return size;
+    }
+    return Math.round(size * 100000d / (end - start)) / 100d;
+  }
+}
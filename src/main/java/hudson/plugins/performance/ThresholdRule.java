@@ -0,0 +1,176 @@
+package hudson.plugins.performance;
+
+import hudson.model.Result;
+
+/**
+ * A limit on one metric of the {@link UriReport}s whose label matches a
+ * pattern, for instance "every <tt>/api/*</tt> label must have a 95th
+ * percentile under 800 ms or the build is unstable".
+ *
+ * @see ThresholdRuleSet
+ */
+public class ThresholdRule {
+
+  public enum Metric {
+    AVERAGE("average", "ms") {
+      double measure(UriReport report, double percentile) {
+        return report.getAverage();
+      }
+    },
+    MEDIAN("median", "ms") {
+      double measure(UriReport report, double percentile) {
+        return report.getMedian();
+      }
+    },
+    PERCENTILE("p", "ms") {
+      double measure(UriReport report, double percentile) {
+        return report.getPercentile(percentile);
+      }
+    },
+    MIN("min", "ms") {
+      double measure(UriReport report, double percentile) {
+        return report.getMin();
+      }
+    },
+    MAX("max", "ms") {
+      double measure(UriReport report, double percentile) {
+        return report.getMax();
+      }
+    },
+    ERRORS("errors", "%") {
+      double measure(UriReport report, double percentile) {
+        return report.errorPercent();
+      }
+    },
+    APDEX("apdex", "") {
+      double measure(UriReport report, double percentile) {
+        return report.getApdex();
+      }
+
+      boolean isViolatedBy(double value, double limit) {
+        // the higher the better
+        return value < limit;
+      }
+    };
+
+    private final String token;
+    private final String unit;
+
+    Metric(String token, String unit) {
+      this.token = token;
+      this.unit = unit;
+    }
+
+    abstract double measure(UriReport report, double percentile);
+
+    boolean isViolatedBy(double value, double limit) {
+      return value > limit;
+    }
+
+    public String getUnit() {
+      return unit;
+    }
+  }
+
+  private final String labelPattern;
+  private final Metric metric;
+  private final double percentile;
+  private final double limit;
+  private final Result severity;
+
+  public ThresholdRule(String labelPattern, Metric metric, double percentile,
+      double limit, Result severity) {
+    this.labelPattern = labelPattern;
+    this.metric = metric;
+    this.percentile = percentile;
+    this.limit = limit;
+    this.severity = severity;
+  }
+
+  /**
+   * Parses a metric name: <tt>average</tt> (or <tt>avg</tt>),
+   * <tt>median</tt>, <tt>min</tt>, <tt>max</tt>, <tt>errors</tt>,
+   * <tt>apdex</tt> or a percentile such as <tt>p90</tt> or <tt>p99.9</tt>.
+   *
+   * @return the percentile for percentile metrics, -1 otherwise
+   * @throws IllegalArgumentException
+   *           if the name is not a known metric
+   */
+  static double parsePercentile(String token) {
+    if (token.length() > 1 && token.charAt(0) == 'p') {
+      try {
+        double percentile = Double.parseDouble(token.substring(1));
+        if (percentile > 0 && percentile <= 100) {
+          return percentile;
+        }
+      } catch (NumberFormatException e) {
+        // fall through
+      }
+      throw new IllegalArgumentException("Invalid percentile '" + token + "'");
+    }
+    return -1;
+  }
+
+  static Metric parseMetric(String token) {
+    String t = token.toLowerCase();
+    if (parsePercentile(t) > 0) {
+      return Metric.PERCENTILE;
+    }
+    if ("avg".equals(t)) {
+      return Metric.AVERAGE;
+    }
+    for (Metric m : Metric.values()) {
+      if (m != Metric.PERCENTILE && m.token.equals(t)) {
+        return m;
+      }
+    }
+    throw new IllegalArgumentException("Unknown metric '" + token + "'");
+  }
+
+  /**
+   * Key identifying the measured quantity: rules with the same key compete
+   * for the same labels, rules with different keys are all applied.
+   */
+  public String getMetricKey() {
+    if (metric == Metric.PERCENTILE) {
+      return metric.token + percentile;
+    }
+    return metric.token;
+  }
+
+  public String getLabelPattern() {
+    return labelPattern;
+  }
+
+  public Metric getMetric() {
+    return metric;
+  }
+
+  public double getPercentile() {
+    return percentile;
+  }
+
+  public double getLimit() {
+    return limit;
+  }
+
+  public Result getSeverity() {
+    return severity;
+  }
+
+  public double measure(UriReport report) {
+    return metric.measure(report, percentile);
+  }
+
+  public boolean isViolatedBy(double value) {
+    return metric.isViolatedBy(value, limit);
+  }
+
+  @Override
+  public String toString() {
+    String name = metric == Metric.PERCENTILE ? "p"
+        + Double.toString(percentile).replaceAll("\\.0$", "") : metric.token;
+    return labelPattern + " " + name + " " + limit + metric.unit + " "
+        + severity.toString().toLowerCase();
+  }
+}
@@ -0,0 +1,144 @@
+package hudson.plugins.performance;
+
+import hudson.model.Result;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link ThresholdRule}s of a publisher, compiled for evaluation.
+ *
+ * <p>
+ * Rules are written one per line as
+ * <tt>&lt;label pattern&gt; &lt;metric&gt; &lt;limit&gt; [unstable|failure]</tt>
+ * , e.g. <tt>/api/* p95 800 unstable</tt>. Blank lines and lines starting with
+ * <tt>#</tt> are ignored. For each metric, the first rule whose pattern
+ * matches a label is the one applied to it.
+ *
+ * <p>
+ * Rules are grouped per metric into a {@link LabelMatcher}, so evaluating a
+ * report is a single pass over its {@link UriReport}s with one lookup per
+ * metric, rather than one regex per rule per label.
+ */
+public class ThresholdRuleSet {
+
+  private final List<ThresholdRule> rules = new ArrayList<ThresholdRule>();
+
+  private final Map<String, LabelMatcher<ThresholdRule>> matchers = new LinkedHashMap<String, LabelMatcher<ThresholdRule>>();
+
+  /**
+   * @throws IllegalArgumentException
+   *           on the first invalid line, with its line number
+   */
+  public static ThresholdRuleSet parse(String text) {
+    ThresholdRuleSet ruleSet = new ThresholdRuleSet();
+    if (text == null) {
+      return ruleSet;
+    }
+    String[] lines = text.split("\r?\n");
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].trim();
+      if (line.length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+      try {
+        ruleSet.add(parseRule(line));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": "
+            + e.getMessage());
+      }
+    }
+    return ruleSet;
+  }
+
+  static ThresholdRule parseRule(String line) {
+    String[] tokens = line.split("\\s+");
+    int last = tokens.length - 1;
+    Result severity = Result.UNSTABLE;
+    if (last >= 0 && Character.isLetter(tokens[last].charAt(0))) {
+      String name = tokens[last].toLowerCase();
+      if ("failure".equals(name) || "failed".equals(name)) {
+        severity = Result.FAILURE;
+      } else if (!"unstable".equals(name)) {
+        throw new IllegalArgumentException("Unknown severity '" + tokens[last]
+            + "', expected unstable or failure");
+      }
+      last--;
+    }
+    if (last < 2) {
+      throw new IllegalArgumentException(
+          "Expected '<label pattern> <metric> <limit> [unstable|failure]'");
+    }
+    double limit;
+    try {
+      limit = Double.parseDouble(tokens[last]);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid limit '" + tokens[last] + "'");
+    }
+    String metricName = tokens[last - 1];
+    ThresholdRule.Metric metric = ThresholdRule.parseMetric(metricName);
+    double percentile = ThresholdRule.parsePercentile(metricName.toLowerCase());
+    // the pattern may itself contain blanks
+    StringBuilder pattern = new StringBuilder(tokens[0]);
+    for (int i = 1; i < last - 1; i++) {
+      pattern.append(' ').append(tokens[i]);
+    }
+    return new ThresholdRule(pattern.toString(), metric, percentile, limit,
+        severity);
+  }
+
+  public void add(ThresholdRule rule) {
+    LabelMatcher<ThresholdRule> matcher = matchers.get(rule.getMetricKey());
+    if (matcher == null) {
+      matcher = new LabelMatcher<ThresholdRule>();
+      matchers.put(rule.getMetricKey(), matcher);
+    }
+    matcher.add(rule.getLabelPattern(), rule);
+    rules.add(rule);
+  }
+
+  public List<ThresholdRule> getRules() {
+    return Collections.unmodifiableList(rules);
+  }
+
+  public boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * Applies the rules to every {@link UriReport} of the report, logging each
+   * violation.
+   *
+   * @return the worst severity among the violated rules, or
+   *         {@link Result#SUCCESS} if none is
+   */
+  public Result evaluate(PerformanceReport report, PrintStream logger) {
+    Result result = Result.SUCCESS;
+    if (rules.isEmpty()) {
+      return result;
+    }
+    for (UriReport uriReport : report.getUriReportMap().values()) {
+      if (uriReport.size() == 0) {
+        continue;
+      }
+      for (LabelMatcher<ThresholdRule> matcher : matchers.values()) {
+        ThresholdRule rule = matcher.match(uriReport.getUri());
+        if (rule == null) {
+          continue;
+        }
+        double value = rule.measure(uriReport);
+        if (rule.isViolatedBy(value)) {
+          logger.println("Performance: " + rule.getSeverity() + ": "
+              + uriReport.getUri() + " measured " + value
+              + rule.getMetric().getUnit() + ", violating rule '" + rule + "'");
+          result = result.combine(rule.getSeverity());
+        }
+      }
+    }
+    return result;
+  }
+}
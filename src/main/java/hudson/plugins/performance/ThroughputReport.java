@@ -23,4 +23,18 @@ public class ThroughputReport {
         return sumThroughput;
     }
 
+    /**
+     * @see ThroughputTimeline#getPeakThroughput()
+     */
+    public double getPeak() {
+        return performanceReport.getThroughputTimeline().getPeakThroughput();
+    }
+
+    /**
+     * @see ThroughputTimeline#getSustainedThroughput()
+     */
+    public double getSustained() {
+        return performanceReport.getThroughputTimeline().getSustainedThroughput();
+    }
+
 }
@@ -0,0 +1,475 @@
+package hudson.plugins.performance;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests of a report rolled up by time bucket: the number of requests
+ * completed, the number of errors and a latency histogram for each bucket,
+ * and the time spent in requests during the bucket, i.e. the average number
+ * of requests in flight.
+ *
+ * <p>
+ * The timeline is filled while the samples are parsed. Buckets are one second
+ * wide until the test spans more than {@link #MAX_BUCKETS} of them, then they
+ * are merged into wider ones, so its size stays bounded whatever the length
+ * of the test. Every width divides the next one and buckets are aligned on
+ * multiples of their width, so a per-minute view and the timeline of a whole
+ * report are obtained by adding up whole buckets.
+ */
+public class ThroughputTimeline implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The bucket widths, in milliseconds.
+   */
+  static final long[] WIDTHS = { 1000, 2000, 4000, 12000, 60000, 120000,
+      240000, 720000, 3600000 };
+
+  static final int MAX_BUCKETS = 1800;
+
+  /**
+   * Latency class <code>k</code> holds the durations from 2^(k-1) ms to
+   * 2^k - 1 ms, the last class everything above.
+   */
+  static final int LATENCY_CLASSES = 16;
+
+  /**
+   * Length of the window over which the sustained throughput is measured.
+   */
+  static final long SUSTAINED_WINDOW = 60000;
+
+  private int widthIndex;
+
+  /**
+   * Number of the first bucket, i.e. its start time divided by the width.
+   */
+  private long first;
+
+  private int length;
+
+  private int[] counts = new int[0];
+
+  private int[] errors = new int[0];
+
+  /**
+   * {@link #LATENCY_CLASSES} counters per bucket.
+   */
+  private int[] latencies = new int[0];
+
+  /**
+   * Sum of the durations of the requests completed during each bucket.
+   */
+  private long[] latencySums = new long[0];
+
+  /**
+   * Milliseconds spent in requests during each bucket, whenever they
+   * completed.
+   */
+  private long[] busy = new long[0];
+
+  /**
+   * The latencies of the requests completed while a given number of requests
+   * were in flight, from the buckets at that level of concurrency.
+   */
+  public static class ConcurrencyLevel {
+
+    private final int from;
+
+    private final int to;
+
+    private long duration;
+
+    private long count;
+
+    private long latencySum;
+
+    private final long[] latencies = new long[LATENCY_CLASSES];
+
+    ConcurrencyLevel(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * @return the lowest concurrency of the level, included
+     */
+    public int getFrom() {
+      return from;
+    }
+
+    /**
+     * @return the highest concurrency of the level, excluded
+     */
+    public int getTo() {
+      return to;
+    }
+
+    /**
+     * @return the time spent at this level of concurrency, in seconds
+     */
+    public long getSeconds() {
+      return duration / 1000;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getAverage() {
+      return count == 0 ? 0 : latencySum / count;
+    }
+
+    /**
+     * @return an upper bound of the percentile, from the latency histogram
+     */
+    public long getPercentile(double percentile) {
+      return ThroughputTimeline.getPercentile(latencies, 0, count, percentile);
+    }
+  }
+
+  /**
+   * Adds a sample that completed at the given time.
+   */
+  public void add(long timestamp, long duration, boolean error) {
+    long start = timestamp - Math.max(0, duration);
+    int j = slot(start);
+    int i = slot(timestamp);
+    // covering the end may have widened the buckets
+    j = index(start);
+    counts[i]++;
+    if (error) {
+      errors[i]++;
+    }
+    latencies[i * LATENCY_CLASSES + latencyClass(duration)]++;
+    latencySums[i] += duration;
+    // spread the time in flight over the buckets the request went through
+    for (int b = j; b <= i; b++) {
+      long from = Math.max(start, getStart(b));
+      long to = Math.min(timestamp, getStart(b) + getBucketWidth());
+      if (to > from) {
+        busy[b] += to - from;
+      }
+    }
+  }
+
+  /**
+   * Adds all the buckets of another timeline.
+   */
+  public void addAll(ThroughputTimeline other) {
+    while (getBucketWidth() < other.getBucketWidth()) {
+      coarsen();
+    }
+    for (int j = 0; j < other.length; j++) {
+      if (other.counts[j] == 0 && other.busy[j] == 0) {
+        continue;
+      }
+      int i = slot(other.getStart(j));
+      counts[i] += other.counts[j];
+      errors[i] += other.errors[j];
+      latencySums[i] += other.latencySums[j];
+      busy[i] += other.busy[j];
+      for (int k = 0; k < LATENCY_CLASSES; k++) {
+        latencies[i * LATENCY_CLASSES + k] += other.latencies[j
+            * LATENCY_CLASSES + k];
+      }
+    }
+  }
+
+  /**
+   * @return the same timeline with buckets of at least a minute
+   */
+  public ThroughputTimeline perMinute() {
+    ThroughputTimeline minutes = new ThroughputTimeline();
+    while (minutes.getBucketWidth() < 60000) {
+      minutes.widthIndex++;
+    }
+    minutes.addAll(this);
+    return minutes;
+  }
+
+  static int latencyClass(long duration) {
+    if (duration <= 0) {
+      return 0;
+    }
+    return Math.min(LATENCY_CLASSES - 1,
+        64 - Long.numberOfLeadingZeros(duration));
+  }
+
+  /**
+   * Returns the index of the bucket of a timestamp, widening the buckets or
+   * growing the arrays as needed.
+   */
+  private int slot(long timestamp) {
+    long bucket = timestamp / getBucketWidth();
+    if (length == 0) {
+      first = bucket;
+    }
+    long lo = Math.min(first, bucket);
+    long hi = Math.max(first + length - 1, bucket);
+    while (hi - lo >= MAX_BUCKETS && widthIndex < WIDTHS.length - 1) {
+      coarsen();
+      bucket = timestamp / getBucketWidth();
+      lo = Math.min(first, bucket);
+      hi = Math.max(first + length - 1, bucket);
+    }
+    if (bucket < first) {
+      resize((int) (first - bucket), (int) (hi - bucket + 1));
+      first = bucket;
+    } else if (bucket >= first + length) {
+      resize(0, (int) (bucket - first + 1));
+    }
+    return (int) (bucket - first);
+  }
+
+  /**
+   * @return the index of the bucket of a timestamp the buckets cover
+   */
+  private int index(long timestamp) {
+    return (int) (timestamp / getBucketWidth() - first);
+  }
+
+  /**
+   * Moves the buckets by <code>offset</code> into arrays large enough for
+   * <code>newLength</code> buckets.
+   */
+  private void resize(int offset, int newLength) {
+    if (offset == 0 && newLength <= counts.length) {
+      length = newLength;
+      return;
+    }
+    int capacity = offset == 0 ? Math.max(newLength, counts.length * 2)
+        : newLength;
+    int[] newCounts = new int[capacity];
+    int[] newErrors = new int[capacity];
+    int[] newLatencies = new int[capacity * LATENCY_CLASSES];
+    long[] newLatencySums = new long[capacity];
+    long[] newBusy = new long[capacity];
+    System.arraycopy(counts, 0, newCounts, offset, length);
+    System.arraycopy(errors, 0, newErrors, offset, length);
+    System.arraycopy(latencies, 0, newLatencies, offset * LATENCY_CLASSES,
+        length * LATENCY_CLASSES);
+    System.arraycopy(latencySums, 0, newLatencySums, offset, length);
+    System.arraycopy(busy, 0, newBusy, offset, length);
+    counts = newCounts;
+    errors = newErrors;
+    latencies = newLatencies;
+    latencySums = newLatencySums;
+    busy = newBusy;
+    length = newLength;
+  }
+
+  /**
+   * Merges the buckets into buckets of the next width.
+   */
+  private void coarsen() {
+    int factor = (int) (WIDTHS[widthIndex + 1] / WIDTHS[widthIndex]);
+    widthIndex++;
+    if (length == 0) {
+      return;
+    }
+    long newFirst = first / factor;
+    int newLength = (int) ((first + length - 1) / factor - newFirst + 1);
+    int[] newCounts = new int[newLength];
+    int[] newErrors = new int[newLength];
+    int[] newLatencies = new int[newLength * LATENCY_CLASSES];
+    long[] newLatencySums = new long[newLength];
+    long[] newBusy = new long[newLength];
+    for (int j = 0; j < length; j++) {
+      int i = (int) ((first + j) / factor - newFirst);
+      newCounts[i] += counts[j];
+      newErrors[i] += errors[j];
+      newLatencySums[i] += latencySums[j];
+      newBusy[i] += busy[j];
+      for (int k = 0; k < LATENCY_CLASSES; k++) {
+        newLatencies[i * LATENCY_CLASSES + k] += latencies[j * LATENCY_CLASSES
+            + k];
+      }
+    }
+    first = newFirst;
+    length = newLength;
+    counts = newCounts;
+    errors = newErrors;
+    latencies = newLatencies;
+    latencySums = newLatencySums;
+    busy = newBusy;
+  }
+
+  private Object readResolve() {
+    if (busy == null) {
+      // written before the concurrency was tracked
+      latencySums = new long[counts.length];
+      busy = new long[counts.length];
+    }
+    return this;
+  }
+
+  /**
+   * @return the width of the buckets, in milliseconds
+   */
+  public long getBucketWidth() {
+    return WIDTHS[widthIndex];
+  }
+
+  /**
+   * @return the number of buckets, from the first to the last sample
+   */
+  public int size() {
+    return length;
+  }
+
+  /**
+   * @return the estimated heap taken, in bytes
+   */
+  long getFootprint() {
+    return 128 + 4L * (counts.length + errors.length + latencies.length) + 8L
+        * (latencySums.length + busy.length);
+  }
+
+  public long getStart(int bucket) {
+    return (first + bucket) * getBucketWidth();
+  }
+
+  public int getCount(int bucket) {
+    return counts[bucket];
+  }
+
+  public int getErrors(int bucket) {
+    return errors[bucket];
+  }
+
+  /**
+   * @return the requests per second completed during a bucket
+   */
+  public double getThroughput(int bucket) {
+    return counts[bucket] * 1000d / getBucketWidth();
+  }
+
+  /**
+   * Returns an upper bound of a latency percentile of a bucket, from its
+   * histogram.
+   *
+   * @param percentile
+   *          between 0 (excluded) and 100
+   */
+  public long getLatencyPercentile(int bucket, double percentile) {
+    long[] histogram = new long[LATENCY_CLASSES];
+    for (int k = 0; k < LATENCY_CLASSES; k++) {
+      histogram[k] = latencies[bucket * LATENCY_CLASSES + k];
+    }
+    return getPercentile(histogram, 0, counts[bucket], percentile);
+  }
+
+  static long getPercentile(long[] histogram, int offset, long count,
+      double percentile) {
+    long rank = (long) Math.ceil(count * percentile / 100);
+    long seen = 0;
+    for (int k = 0; k < LATENCY_CLASSES; k++) {
+      seen += histogram[offset + k];
+      if (seen >= rank && seen > 0) {
+        return k == LATENCY_CLASSES - 1 ? Long.MAX_VALUE : (1L << k) - 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @return the average latency of the requests completed during a bucket
+   */
+  public long getAverageLatency(int bucket) {
+    return counts[bucket] == 0 ? 0 : latencySums[bucket] / counts[bucket];
+  }
+
+  /**
+   * @return the average number of requests in flight during a bucket
+   */
+  public double getConcurrency(int bucket) {
+    return busy[bucket] / (double) getBucketWidth();
+  }
+
+  public double getMaxConcurrency() {
+    long max = 0;
+    for (int i = 0; i < length; i++) {
+      max = Math.max(max, busy[i]);
+    }
+    return max / (double) getBucketWidth();
+  }
+
+  /**
+   * Groups the buckets by their concurrency, in at most about ten levels of
+   * equal width, and adds up their latencies.
+   */
+  public List<ConcurrencyLevel> getConcurrencyLevels() {
+    List<ConcurrencyLevel> levels = new ArrayList<ConcurrencyLevel>();
+    int step = (int) Math.max(1, Math.ceil(getMaxConcurrency() / 10));
+    for (int i = 0; i < length; i++) {
+      if (counts[i] == 0) {
+        continue;
+      }
+      int index = (int) (getConcurrency(i) / step);
+      while (levels.size() <= index) {
+        levels.add(new ConcurrencyLevel(levels.size() * step,
+            (levels.size() + 1) * step));
+      }
+      ConcurrencyLevel level = levels.get(index);
+      level.duration += getBucketWidth();
+      level.count += counts[i];
+      level.latencySum += latencySums[i];
+      for (int k = 0; k < LATENCY_CLASSES; k++) {
+        level.latencies[k] += latencies[i * LATENCY_CLASSES + k];
+      }
+    }
+    List<ConcurrencyLevel> used = new ArrayList<ConcurrencyLevel>();
+    for (ConcurrencyLevel level : levels) {
+      if (level.count > 0) {
+        used.add(level);
+      }
+    }
+    return used;
+  }
+
+  public long getTotalCount() {
+    long total = 0;
+    for (int i = 0; i < length; i++) {
+      total += counts[i];
+    }
+    return total;
+  }
+
+  /**
+   * @return the highest requests per second over a single bucket
+   */
+  public double getPeakThroughput() {
+    int peak = 0;
+    for (int i = 0; i < length; i++) {
+      peak = Math.max(peak, counts[i]);
+    }
+    return peak * 1000d / getBucketWidth();
+  }
+
+  /**
+   * @return the highest requests per second averaged over
+   *         {@link #SUSTAINED_WINDOW}, or over the whole test if it is shorter
+   */
+  public double getSustainedThroughput() {
+    int window = (int) Math.max(1, SUSTAINED_WINDOW / getBucketWidth());
+    if (length == 0) {
+      return 0;
+    }
+    if (length <= window) {
+      return getTotalCount() * 1000d / (length * getBucketWidth());
+    }
+    long sum = 0;
+    long best = 0;
+    for (int i = 0; i < length; i++) {
+      sum += counts[i];
+      if (i >= window) {
+        sum -= counts[i - window];
+      }
+      best = Math.max(best, sum);
+    }
+    return best * 1000d / (window * getBucketWidth());
+  }
+}
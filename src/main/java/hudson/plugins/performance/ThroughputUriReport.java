@@ -1,7 +1,5 @@
 package hudson.plugins.performance;
 
-import java.util.List;
-
 /**
  * @author Artem Stasiuk (artem.stasuk@gmail.com)
  */
@@ -16,33 +14,27 @@ public class ThroughputUriReport {
     }
 
     public long get() {
-        final List<HttpSample> httpSamples = uriReport.getHttpSampleList();
-        final long durationInSeconds = calculateTestingDuration(httpSamples);
-        return httpSamples.size() / durationInSeconds;
+        final long durationInSeconds = calculateTestingDuration();
+        return uriReport.size() / durationInSeconds;
     }
 
-    private long calculateTestingDuration(final List<HttpSample> httpSamples) {
-        final long testingStartTime = testingStartTime(httpSamples);
-        final long testingFinishTime = testingFinishTime(httpSamples);
-        final long testingDuration = (testingFinishTime - testingStartTime) / MILLISECONDS_IN_SECOND;
-        return Math.max(testingDuration, 1);
+    /**
+     * @return the highest requests per second completed within one bucket of the timeline
+     */
+    public double getPeak() {
+        return uriReport.getThroughputTimeline().getPeakThroughput();
     }
 
-    private long testingStartTime(final List<HttpSample> httpSamples) {
-        long min = -1;
-        for (final HttpSample httpSample : httpSamples) {
-            if (min < 0 || min > httpSample.getDate().getTime()) min = httpSample.getDate().getTime();
-        }
-        return min;
+    /**
+     * @return the highest requests per second sustained over a minute
+     */
+    public double getSustained() {
+        return uriReport.getThroughputTimeline().getSustainedThroughput();
     }
 
-    private long testingFinishTime(final List<HttpSample> httpSamples) {
-        long max = 0;
-        for (final HttpSample httpSample : httpSamples) {
-            if (max < httpSample.getDate().getTime() + httpSample.getDuration())
-                max = httpSample.getDate().getTime() + httpSample.getDuration();
-        }
-        return max;
+    private long calculateTestingDuration() {
+        final long testingDuration = (uriReport.getEnd() - uriReport.getStart()) / MILLISECONDS_IN_SECOND;
+        return Math.max(testingDuration, 1);
     }
 
 }
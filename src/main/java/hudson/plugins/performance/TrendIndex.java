@@ -0,0 +1,844 @@
+package hudson.plugins.performance;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.Writer;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Per-project time series of the main figures of each report, one point per
+ * build, so trend graphs cost the number of points drawn instead of parsing
+ * every report of every build.
+ *
+ * <p>
+ * The index is persisted in the project directory and updated whenever the
+ * {@link ReportSummary}s of a build are computed. When it is missing, it is
+ * rebuilt from the summaries of the builds.
+ */
+public class TrendIndex implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Logger LOGGER = Logger.getLogger(TrendIndex.class
+      .getName());
+
+  static final String FILE_NAME = "performance-trend.serialized";
+
+  /**
+   * Indexes of the projects, keyed by project directory. The map lock is only
+   * held to find the holder; an index is loaded or rebuilt under the lock of
+   * its own holder, so that other projects are not blocked meanwhile.
+   */
+  private static final Map<String, Holder> INDEXES = new HashMap<String, Holder>();
+
+  private static class Holder {
+    private TrendIndex index;
+  }
+
+  /**
+   * Forgets the index of the projects deleted or renamed.
+   */
+  @Extension
+  public static class ProjectListener extends ItemListener {
+
+    @Override
+    public void onDeleted(Item item) {
+      if (item instanceof AbstractProject) {
+        evict(((AbstractProject<?, ?>) item).getRootDir());
+      }
+    }
+
+    @Override
+    public void onRenamed(Item item, String oldName, String newName) {
+      if (item instanceof AbstractProject) {
+        File rootDir = ((AbstractProject<?, ?>) item).getRootDir();
+        evict(new File(rootDir.getParentFile(), oldName));
+        evict(rootDir);
+      }
+    }
+  }
+
+  /**
+   * The figures of one report in one build.
+   */
+  public static class Point implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timestamp;
+
+    private final long average;
+
+    private final long median;
+
+    private final long line90;
+
+    private final long min;
+
+    private final long max;
+
+    private final int size;
+
+    private final int errors;
+
+    private final double errorPercent;
+
+    private final double averageSizeInKb;
+
+    private final double totalTrafficInKb;
+
+    private final long throughput;
+
+    private final double peakThroughput;
+
+    private final double sustainedThroughput;
+
+    private final double apdex;
+
+    /**
+     * Average of each URI, keyed by {@link UriSummary#getStaplerUri()}.
+     */
+    private final Map<String, Long> uriAverages = new LinkedHashMap<String, Long>();
+
+    /**
+     * Error percentage of each URI reported by the summarizer.
+     */
+    private final Map<String, Float> uriSummarizerErrors = new LinkedHashMap<String, Float>();
+
+    /**
+     * Longest duration of each test case, or URI, by its number in the index,
+     * -1 for those not run in the build, and the failed ones.
+     */
+    private int[] testCaseDurations;
+
+    private BitSet failedTestCases;
+
+    Point(long timestamp, ReportSummary summary) {
+      this.timestamp = timestamp;
+      average = summary.getAverage();
+      median = summary.getMedian();
+      line90 = summary.get90Line();
+      min = summary.getMin();
+      max = summary.getMax();
+      size = summary.size();
+      errors = summary.countErrors();
+      errorPercent = summary.errorPercent();
+      averageSizeInKb = summary.getAverageSizeInKb();
+      totalTrafficInKb = summary.getTotalTrafficInKb();
+      throughput = summary.getThroughput();
+      peakThroughput = summary.getPeakThroughput();
+      sustainedThroughput = summary.getSustainedThroughput();
+      apdex = summary.getApdex();
+      for (Map.Entry<String, UriSummary> uri : summary.getUriSummaryMap()
+          .entrySet()) {
+        uriAverages.put(uri.getKey(), uri.getValue().getAverage());
+        if (summary.ifSummarizerParserUsed(summary.getReportFileName())) {
+          float summarizerErrors = 0;
+          try {
+            summarizerErrors = Float.valueOf(uri.getValue()
+                .getSummarizerErrors());
+          } catch (NumberFormatException e) {
+            // no samples
+          }
+          uriSummarizerErrors.put(uri.getKey(), summarizerErrors);
+        }
+      }
+    }
+
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public long getAverage() {
+      return average;
+    }
+
+    public long getMedian() {
+      return median;
+    }
+
+    public long get90Line() {
+      return line90;
+    }
+
+    public long getMin() {
+      return min;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public int countErrors() {
+      return errors;
+    }
+
+    public double errorPercent() {
+      return errorPercent;
+    }
+
+    public double getAverageSizeInKb() {
+      return averageSizeInKb;
+    }
+
+    public double getTotalTrafficInKb() {
+      return totalTrafficInKb;
+    }
+
+    public long getThroughput() {
+      return throughput;
+    }
+
+    public double getPeakThroughput() {
+      return peakThroughput;
+    }
+
+    public double getSustainedThroughput() {
+      return sustainedThroughput;
+    }
+
+    public double getApdex() {
+      return apdex;
+    }
+
+    public Map<String, Long> getUriAverages() {
+      return uriAverages;
+    }
+
+    public Map<String, Float> getUriSummarizerErrors() {
+      return uriSummarizerErrors;
+    }
+  }
+
+  /**
+   * The runs of one test case across the builds.
+   */
+  public static class TestCaseSeries {
+
+    private final SortedMap<Integer, Long> durations = new TreeMap<Integer, Long>();
+
+    private final SortedSet<Integer> failedBuilds = new TreeSet<Integer>();
+
+    /**
+     * @return the longest duration of the test case in each build that ran it,
+     *         by build number
+     */
+    public SortedMap<Integer, Long> getDurations() {
+      return durations;
+    }
+
+    public SortedSet<Integer> getFailedBuilds() {
+      return failedBuilds;
+    }
+
+    public int getRunCount() {
+      return durations.size();
+    }
+
+    public int getFailureCount() {
+      return failedBuilds.size();
+    }
+  }
+
+  /**
+   * Build number to the points of its reports, keyed by report file name.
+   */
+  private final TreeMap<Integer, Map<String, Point>> builds = new TreeMap<Integer, Map<String, Point>>();
+
+  /**
+   * The test cases, or URIs, of each report in any build, by report file
+   * name. A test case is numbered by its position in the list.
+   */
+  private Map<String, List<String>> testCases = new HashMap<String, List<String>>();
+
+  private transient Map<String, Map<String, Integer>> testCaseNumbers;
+
+  /**
+   * The reports of the last build, sorted, until the points change.
+   */
+  private transient List<String> reportFileNames;
+
+  /**
+   * When the points last changed, for the caching of the trend data.
+   */
+  private long lastModified;
+
+  private transient File file;
+
+  TrendIndex(File file) {
+    this.file = file;
+  }
+
+  static File getIndexFile(AbstractProject<?, ?> project) {
+    return new File(project.getRootDir(), FILE_NAME);
+  }
+
+  /**
+   * Returns the index of a project, loading or rebuilding it if needed.
+   */
+  public static TrendIndex get(AbstractProject<?, ?> project) {
+    return get(getIndexFile(project), project);
+  }
+
+  /**
+   * Returns the index of a file, loading it if needed, or rebuilding it from
+   * the builds of the project.
+   */
+  static TrendIndex get(File file, AbstractProject<?, ?> project) {
+    Holder holder;
+    synchronized (INDEXES) {
+      holder = INDEXES.get(file.getPath());
+      if (holder == null) {
+        holder = new Holder();
+        INDEXES.put(file.getPath(), holder);
+      }
+    }
+    synchronized (holder) {
+      if (holder.index == null) {
+        TrendIndex index = load(file);
+        if (index == null) {
+          index = rebuild(project, file);
+        }
+        holder.index = index;
+      }
+      return holder.index;
+    }
+  }
+
+  /**
+   * Forgets the loaded index of a project directory.
+   */
+  static void evict(File projectDir) {
+    synchronized (INDEXES) {
+      INDEXES.remove(new File(projectDir, FILE_NAME).getPath());
+    }
+  }
+
+  private static TrendIndex load(File file) {
+    ObjectInputStream in = null;
+    try {
+      in = new ObjectInputStream(new FileInputStream(file));
+      TrendIndex index = (TrendIndex) in.readObject();
+      index.file = file;
+      if (index.testCases == null) {
+        // written before the test cases were indexed
+        return null;
+      }
+      if (index.lastModified == 0) {
+        // written before the changes were dated
+        index.lastModified = file.lastModified();
+      }
+      return index;
+    } catch (FileNotFoundException fne) {
+      // not built yet
+    } catch (Exception unknown) {
+      LOGGER.warning("Deserialization failed. " + unknown);
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Builds the index from the persisted summaries; builds without summaries
+   * are queued and will be added once summarized.
+   */
+  private static TrendIndex rebuild(AbstractProject<?, ?> project, File file) {
+    TrendIndex index = new TrendIndex(file);
+    for (AbstractBuild<?, ?> build : project.getBuilds()) {
+      if (build.getAction(PerformanceBuildAction.class) == null) {
+        continue;
+      }
+      List<ReportSummary> summaries = ReportSummary.load(build);
+      if (summaries == null) {
+        ReportSummaryWorker.schedule(build);
+      } else {
+        index.put(build, summaries);
+      }
+    }
+    index.save();
+    return index;
+  }
+
+  /**
+   * Adds or replaces the points of a build.
+   */
+  public static void update(AbstractBuild<?, ?> build,
+      List<ReportSummary> summaries) {
+    TrendIndex index = get(build.getProject());
+    index.put(build, summaries);
+    index.save();
+  }
+
+  private void put(AbstractBuild<?, ?> build, List<ReportSummary> summaries) {
+    put(build.number, build.getTimestamp().getTimeInMillis(), summaries);
+  }
+
+  synchronized void put(int buildNumber, long timestamp,
+      List<ReportSummary> summaries) {
+    Map<String, Point> points = new LinkedHashMap<String, Point>();
+    for (ReportSummary summary : summaries) {
+      Point point = new Point(timestamp, summary);
+      indexTestCases(point, summary);
+      points.put(summary.getReportFileName(), point);
+    }
+    builds.put(buildNumber, points);
+    reportFileNames = null;
+    lastModified = System.currentTimeMillis();
+  }
+
+  private void indexTestCases(Point point, ReportSummary summary) {
+    List<String> names = testCases.get(summary.getReportFileName());
+    if (names == null) {
+      names = new ArrayList<String>();
+      testCases.put(summary.getReportFileName(), names);
+    }
+    Map<String, Integer> numbers = getTestCaseNumbers(summary
+        .getReportFileName());
+    for (UriSummary uri : summary.getUriSummaryMap().values()) {
+      if (!numbers.containsKey(uri.getUri())) {
+        numbers.put(uri.getUri(), names.size());
+        names.add(uri.getUri());
+      }
+    }
+    int[] durations = new int[names.size()];
+    Arrays.fill(durations, -1);
+    BitSet failed = new BitSet();
+    for (UriSummary uri : summary.getUriSummaryMap().values()) {
+      int number = numbers.get(uri.getUri());
+      durations[number] = (int) Math.max(0, Math.min(uri.getMax(),
+          Integer.MAX_VALUE));
+      if (uri.countErrors() > 0) {
+        failed.set(number);
+      }
+    }
+    point.testCaseDurations = durations;
+    point.failedTestCases = failed;
+  }
+
+  private Map<String, Integer> getTestCaseNumbers(String reportFileName) {
+    if (testCaseNumbers == null) {
+      testCaseNumbers = new HashMap<String, Map<String, Integer>>();
+    }
+    Map<String, Integer> numbers = testCaseNumbers.get(reportFileName);
+    if (numbers == null) {
+      numbers = new HashMap<String, Integer>();
+      List<String> names = testCases.get(reportFileName);
+      if (names != null) {
+        for (int i = 0; i < names.size(); i++) {
+          numbers.put(names.get(i), i);
+        }
+      }
+      testCaseNumbers.put(reportFileName, numbers);
+    }
+    return numbers;
+  }
+
+  /**
+   * @return the file names of the reports of the last indexed build, sorted,
+   *         as the job page lists the reports of the last build
+   */
+  public synchronized List<String> getReportFileNames() {
+    if (reportFileNames == null) {
+      List<String> names = new ArrayList<String>();
+      if (!builds.isEmpty()) {
+        names.addAll(builds.lastEntry().getValue().keySet());
+        Collections.sort(names);
+      }
+      reportFileNames = Collections.unmodifiableList(names);
+    }
+    return reportFileNames;
+  }
+
+  /**
+   * @return the test cases, or URIs, of a report in any build, sorted
+   */
+  public synchronized List<String> getTestCases(String reportFileName) {
+    List<String> names = testCases.get(reportFileName);
+    if (names == null) {
+      return Collections.emptyList();
+    }
+    List<String> sorted = new ArrayList<String>(names);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  /**
+   * @return the runs of a test case, or URI, of a report in every build
+   */
+  public synchronized TestCaseSeries getTestCaseSeries(String reportFileName,
+      String testCase) {
+    TestCaseSeries series = new TestCaseSeries();
+    Integer number = getTestCaseNumbers(reportFileName).get(testCase);
+    if (number == null) {
+      return series;
+    }
+    for (Map.Entry<Integer, Map<String, Point>> build : builds.entrySet()) {
+      Point point = build.getValue().get(reportFileName);
+      if (point == null || point.testCaseDurations == null
+          || number >= point.testCaseDurations.length
+          || point.testCaseDurations[number] < 0) {
+        continue;
+      }
+      series.durations.put(build.getKey(),
+          (long) point.testCaseDurations[number]);
+      if (point.failedTestCases.get(number)) {
+        series.failedBuilds.add(build.getKey());
+      }
+    }
+    return series;
+  }
+
+  /**
+   * Forgets a build, e.g. one that has been deleted.
+   */
+  public synchronized void remove(int buildNumber) {
+    Map<String, Point> removed = builds.remove(buildNumber);
+    if (removed != null) {
+      for (String reportFileName : removed.keySet()) {
+        pruneTestCases(reportFileName);
+      }
+      reportFileNames = null;
+      lastModified = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Forgets the test cases of a report run by none of the builds left, and
+   * numbers the others again.
+   */
+  private void pruneTestCases(String reportFileName) {
+    List<String> names = testCases.get(reportFileName);
+    if (names == null) {
+      return;
+    }
+    BitSet run = new BitSet(names.size());
+    for (Map<String, Point> points : builds.values()) {
+      Point point = points.get(reportFileName);
+      if (point == null || point.testCaseDurations == null) {
+        continue;
+      }
+      for (int i = 0; i < point.testCaseDurations.length; i++) {
+        if (point.testCaseDurations[i] >= 0) {
+          run.set(i);
+        }
+      }
+    }
+    if (run.cardinality() == names.size()) {
+      return;
+    }
+    int[] numbers = new int[names.size()];
+    List<String> kept = new ArrayList<String>(run.cardinality());
+    for (int i = 0; i < names.size(); i++) {
+      numbers[i] = run.get(i) ? kept.size() : -1;
+      if (run.get(i)) {
+        kept.add(names.get(i));
+      }
+    }
+    for (Map<String, Point> points : builds.values()) {
+      Point point = points.get(reportFileName);
+      if (point == null || point.testCaseDurations == null) {
+        continue;
+      }
+      int[] durations = new int[kept.size()];
+      Arrays.fill(durations, -1);
+      BitSet failed = new BitSet();
+      for (int i = 0; i < point.testCaseDurations.length; i++) {
+        if (numbers[i] >= 0) {
+          durations[numbers[i]] = point.testCaseDurations[i];
+          if (point.failedTestCases.get(i)) {
+            failed.set(numbers[i]);
+          }
+        }
+      }
+      point.testCaseDurations = durations;
+      point.failedTestCases = failed;
+    }
+    if (kept.isEmpty()) {
+      testCases.remove(reportFileName);
+    } else {
+      testCases.put(reportFileName, kept);
+    }
+    if (testCaseNumbers != null) {
+      testCaseNumbers.remove(reportFileName);
+    }
+  }
+
+  public synchronized long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Returns the points of a report for the builds numbered from
+   * <code>first</code> to <code>last</code> included, in build number order.
+   */
+  public synchronized SortedMap<Integer, Point> getPoints(
+      String reportFileName, int first, int last) {
+    SortedMap<Integer, Point> points = new TreeMap<Integer, Point>();
+    if (first > last) {
+      return points;
+    }
+    for (Map.Entry<Integer, Map<String, Point>> build : builds.subMap(first,
+        true, last, true).entrySet()) {
+      Point point = build.getValue().get(reportFileName);
+      if (point != null) {
+        points.put(build.getKey(), point);
+      }
+    }
+    return points;
+  }
+
+  /**
+   * Returns the points of a report for the last <code>count</code> of the
+   * builds numbered from <code>first</code> to <code>last</code> included,
+   * all of them when <code>count</code> is not positive.
+   */
+  public synchronized SortedMap<Integer, Point> getPoints(
+      String reportFileName, int first, int last, int count) {
+    SortedMap<Integer, Point> points = getPoints(reportFileName, first, last);
+    if (count > 0 && points.size() > count) {
+      List<Integer> numbers = new ArrayList<Integer>(points.keySet());
+      points = points.tailMap(numbers.get(points.size() - count));
+    }
+    return points;
+  }
+
+  /**
+   * Serves the points of a report as JSON, up to a given build, within the
+   * <tt>from</tt> and <tt>to</tt> build numbers and the last <tt>builds</tt>
+   * builds requested. Answers 304 while the points are unchanged.
+   */
+  void serveJson(String reportFileName, int lastBuildNumber,
+      StaplerRequest request, StaplerResponse response) throws IOException {
+    response.setHeader("Cache-Control", "private, max-age=0, must-revalidate");
+    if (request.checkIfModified(getLastModified(), response)) {
+      return;
+    }
+    SortedMap<Integer, Point> points = getPoints(reportFileName,
+        getIntParameter(request, "from", 0), Math.min(lastBuildNumber,
+            getIntParameter(request, "to", Integer.MAX_VALUE)),
+        getIntParameter(request, "builds", 0));
+    response.setContentType("application/json;charset=UTF-8");
+    writeJson(reportFileName, points, response.getWriter());
+  }
+
+  private static int getIntParameter(StaplerRequest request, String name,
+      int defaultValue) {
+    String value = request.getParameter(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  synchronized void save() {
+    ObjectOutputStream out = null;
+    try {
+      File tmp = new File(file.getPath() + ".tmp");
+      out = new ObjectOutputStream(new FileOutputStream(tmp));
+      out.writeObject(this);
+      out.close();
+      out = null;
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        LOGGER.warning("Failed to rename " + tmp + " to " + file);
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Serialization failed", e);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the points of a report for the builds selected by the graph
+   * configuration, up to a given build, in build number order.
+   */
+  public synchronized SortedMap<Integer, Point> getPoints(
+      String reportFileName, GraphConfigurationDetail graphConf,
+      int lastBuildNumber) {
+    SortedMap<Integer, Point> points = new TreeMap<Integer, Point>();
+    for (Map.Entry<Integer, Map<String, Point>> build : builds.headMap(
+        lastBuildNumber + 1).entrySet()) {
+      Point point = build.getValue().get(reportFileName);
+      if (point != null) {
+        points.put(build.getKey(), point);
+      }
+    }
+    if (graphConf == null || graphConf.isNone()) {
+      return points;
+    }
+    if (graphConf.isBuildCount()) {
+      int skip = points.size() - graphConf.getBuildCount();
+      if (graphConf.getBuildCount() > 0 && skip > 0) {
+        List<Integer> numbers = new ArrayList<Integer>(points.keySet());
+        return new TreeMap<Integer, Point>(points.tailMap(numbers.get(skip)));
+      }
+      return points;
+    }
+    if (graphConf.isBuildNth()) {
+      if (graphConf.getBuildStep() > 0) {
+        SortedMap<Integer, Point> selected = new TreeMap<Integer, Point>();
+        for (Map.Entry<Integer, Point> point : points.entrySet()) {
+          if (point.getKey() % graphConf.getBuildStep() == 0) {
+            selected.put(point.getKey(), point.getValue());
+          }
+        }
+        return selected;
+      }
+      return points;
+    }
+    if (graphConf.isDate() && !graphConf.isDefaultDates()) {
+      try {
+        Date first = GraphConfigurationDetail.getGregorianCalendarFromString(
+            graphConf.getFirstDayCount()).getTime();
+        GregorianCalendar lastDate = GraphConfigurationDetail
+            .getGregorianCalendarFromString(graphConf.getLastDayCount());
+        lastDate.set(GregorianCalendar.HOUR_OF_DAY, 23);
+        lastDate.set(GregorianCalendar.MINUTE, 59);
+        lastDate.set(GregorianCalendar.SECOND, 59);
+        Date last = lastDate.getTime();
+        SortedMap<Integer, Point> selected = new TreeMap<Integer, Point>();
+        for (Map.Entry<Integer, Point> point : points.entrySet()) {
+          Date date = new Date(point.getValue().getTimestamp());
+          if (!date.before(first) && !date.after(last)) {
+            selected.put(point.getKey(), point.getValue());
+          }
+        }
+        return selected;
+      } catch (ParseException e) {
+        LOGGER.log(Level.SEVERE, "Error during the manage of the Calendar", e);
+      }
+    }
+    return points;
+  }
+
+  /**
+   * Writes the points of a report as JSON, one array per figure, in build
+   * number order.
+   */
+  static void writeJson(String reportFileName,
+      SortedMap<Integer, Point> points, Writer out) throws IOException {
+    JsonWriter json = new JsonWriter(out);
+    json.beginObject();
+    json.name("report").value(reportFileName);
+    json.name("builds").beginArray();
+    for (Integer build : points.keySet()) {
+      json.value(build);
+    }
+    json.endArray();
+    json.name("timestamps").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.getTimestamp());
+    }
+    json.endArray();
+    json.name("average").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.getAverage());
+    }
+    json.endArray();
+    json.name("median").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.getMedian());
+    }
+    json.endArray();
+    json.name("line90").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.get90Line());
+    }
+    json.endArray();
+    json.name("min").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.getMin());
+    }
+    json.endArray();
+    json.name("max").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.getMax());
+    }
+    json.endArray();
+    json.name("samples").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.size());
+    }
+    json.endArray();
+    json.name("errors").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.countErrors());
+    }
+    json.endArray();
+    json.name("errorPercent").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.errorPercent());
+    }
+    json.endArray();
+    json.name("throughput").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.getThroughput());
+    }
+    json.endArray();
+    json.name("peakThroughput").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.getPeakThroughput());
+    }
+    json.endArray();
+    json.name("apdex").beginArray();
+    for (Point point : points.values()) {
+      json.value(point.getApdex());
+    }
+    json.endArray();
+    json.endObject();
+    json.flush();
+  }
+}
@@ -2,7 +2,6 @@ package hudson.plugins.performance;
 
 import hudson.model.AbstractBuild;
 import hudson.model.ModelObject;
-import hudson.util.ChartUtil;
 
 import java.io.UnsupportedEncodingException;
 import java.io.IOException;
@@ -32,10 +31,30 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
   public final static String END_PERFORMANCE_PARAMETER = ".endperformanceparameter";
 
   /**
-   * Individual HTTP invocations to this URI and how they went.
+   * Individual HTTP invocations to this URI and how they went, all of them
+   * or those kept by the {@link SampleRetention}.
    */
   private final List<HttpSample> httpSampleList = new ArrayList<HttpSample>();
 
+  /**
+   * Figures of all the samples, whichever are kept.
+   */
+  private SampleStatistics statistics = new SampleStatistics();
+
+  /**
+   * How many samples are kept, -1 for all of them.
+   *
+   * @see SampleRetention#getMaxSamples()
+   */
+  private int maxSamples = -1;
+
+  private transient Random random;
+
+  /**
+   * The kept samples sorted for the {@link SampleTable}, until more are added.
+   */
+  private transient SampleTable.SortedSamples sortedSamples;
+
   /**
    * The parent object to which this object belongs.
    */
@@ -47,7 +66,28 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
    */
   private final String staplerUri;
   
-  private UriReport lastBuildUriReport;
+  /**
+   * Summary of the same URI in the previous build, for the diffs.
+   */
+  private transient UriSummary lastBuildUriSummary;
+
+  /**
+   * Rollup of {@link #httpSampleList} by completion time, filled as the samples
+   * are added.
+   */
+  private ThroughputTimeline throughputTimeline = new ThroughputTimeline();
+
+  /**
+   * Apdex T of this URI, in ms, and the samples counted against it. -1 when
+   * no Apdex is counted, 0 in caches written before it was.
+   *
+   * @see ApdexThresholds
+   */
+  private long apdexThreshold;
+
+  private int apdexSatisfied;
+
+  private int apdexTolerating;
 
   private String uri;
 
@@ -55,10 +95,152 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
     this.performanceReport = performanceReport;
     this.staplerUri = staplerUri;
     this.uri = uri;
+    this.apdexThreshold = performanceReport != null ? performanceReport
+        .getApdexThresholds().getThreshold(uri)
+        : ApdexThresholds.DEFAULT_THRESHOLD;
+    if (performanceReport != null) {
+      this.maxSamples = performanceReport.getSampleRetention().getMaxSamples();
+    }
   }
 
   public void addHttpSample(HttpSample httpSample) {
-    httpSampleList.add(httpSample);
+    statistics.add(httpSample);
+    keepHttpSample(httpSample);
+    sortedSamples = null;
+    if (throughputTimeline != null) {
+      addToTimeline(throughputTimeline, httpSample);
+    }
+    if (apdexThreshold > 0) {
+      countApdex(httpSample);
+    }
+  }
+
+  /**
+   * Keeps every sample, or a uniform random sample of them of at most
+   * {@link #maxSamples} (reservoir sampling).
+   */
+  private void keepHttpSample(HttpSample httpSample) {
+    if (maxSamples < 0 || httpSampleList.size() < maxSamples) {
+      httpSampleList.add(httpSample);
+    } else if (maxSamples > 0) {
+      if (random == null) {
+        // seeded, so that the same results keep the same samples
+        random = new Random(uri.hashCode());
+      }
+      int index = random.nextInt(statistics.size());
+      if (index < maxSamples) {
+        httpSampleList.set(index, httpSample);
+      }
+    }
+  }
+
+  private SampleStatistics getStatistics() {
+    if (statistics == null) {
+      // deserialized from a cache written before the figures were aggregated
+      SampleStatistics allSamples = new SampleStatistics();
+      for (HttpSample httpSample : httpSampleList) {
+        allSamples.add(httpSample);
+      }
+      statistics = allSamples;
+    }
+    return statistics;
+  }
+
+  private void countApdex(HttpSample httpSample) {
+    if (!httpSample.isSuccessful()) {
+      return;
+    }
+    if (httpSample.getDuration() <= apdexThreshold) {
+      apdexSatisfied++;
+    } else if (httpSample.getDuration() <= 4 * apdexThreshold) {
+      apdexTolerating++;
+    }
+  }
+
+  private void checkApdexCounted() {
+    if (apdexThreshold == 0) {
+      // deserialized from a cache written before Apdex was counted
+      apdexThreshold = performanceReport != null ? performanceReport
+          .getApdexThresholds().getThreshold(uri)
+          : ApdexThresholds.DEFAULT_THRESHOLD;
+      if (apdexThreshold > 0) {
+        for (HttpSample httpSample : httpSampleList) {
+          countApdex(httpSample);
+        }
+      }
+    }
+  }
+
+  public long getApdexThreshold() {
+    checkApdexCounted();
+    return apdexThreshold;
+  }
+
+  public int getApdexSatisfied() {
+    checkApdexCounted();
+    return apdexSatisfied;
+  }
+
+  public int getApdexTolerating() {
+    checkApdexCounted();
+    return apdexTolerating;
+  }
+
+  /**
+   * @return the score, 1 when no Apdex is counted
+   */
+  public double getApdex() {
+    checkApdexCounted();
+    if (apdexThreshold < 0) {
+      return 1;
+    }
+    return ApdexThresholds.score(apdexSatisfied, apdexTolerating, size());
+  }
+
+  private static void addToTimeline(ThroughputTimeline timeline,
+      HttpSample httpSample) {
+    if (httpSample.getDate() != null) {
+      timeline.add(httpSample.getDate().getTime() + httpSample.getDuration(),
+          httpSample.getDuration(), !httpSample.isSuccessful());
+    }
+  }
+
+  public ThroughputTimeline getThroughputTimeline() {
+    if (throughputTimeline == null) {
+      // deserialized from a cache written before the timeline existed
+      ThroughputTimeline timeline = new ThroughputTimeline();
+      for (HttpSample httpSample : httpSampleList) {
+        addToTimeline(timeline, httpSample);
+      }
+      throughputTimeline = timeline;
+    }
+    return throughputTimeline;
+  }
+
+  /**
+   * @return the estimated heap taken by this URI, its samples and figures, in
+   *         bytes
+   */
+  long getFootprint() {
+    long bytes = Footprint.URI_BYTES + httpSampleList.size()
+        * Footprint.SAMPLE_BYTES;
+    // the figures missing from old caches are estimated, not rebuilt
+    if (statistics != null) {
+      bytes += statistics.getFootprint();
+    } else {
+      bytes += httpSampleList.size() * 3 * Footprint.VALUE_BYTES;
+    }
+    if (throughputTimeline != null) {
+      bytes += throughputTimeline.getFootprint();
+    }
+    return bytes;
+  }
+
+  /**
+   * @return {@link #getFootprint()} in KB or MB
+   */
+  public String getMemoryFootprint() {
+    return Footprint.format(getFootprint());
   }
 
   public int compareTo(UriReport uriReport) {
@@ -69,65 +251,112 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
   }
 
   public int countErrors() {
-    int nbError = 0;
-    for (HttpSample currentSample : httpSampleList) {
-      if (!currentSample.isSuccessful()) {
-        nbError++;
-      }
-    }
-    return nbError;
+    return getStatistics().getErrors();
   }
 
   public double errorPercent() {
-    return ((double) countErrors()) / size() * 100;
+    return size() == 0 ? 0 : ((double) countErrors()) / size() * 100;
   }
 
   public long getAverage() {
-    long average = 0;
-    for (HttpSample currentSample : httpSampleList) {
-      average += currentSample.getDuration();
-    }
-    return average / size();
+    return getStatistics().getTotalDuration() / size();
   }
   
   public double getAverageSizeInKb(){ 
-	  double average = 0 ; 
-	  for (HttpSample currentSample : httpSampleList) {
-	      average += currentSample.getSizeInKb();
-	    }
-	    return roundTwoDecimals(average / size());
+    return roundTwoDecimals(getStatistics().getTotalSizeInKb() / size());
   }
 
   public long get90Line() {
+    SampleValues durations = getStatistics().getDurations();
     long result = 0;
-    Collections.sort(httpSampleList);
-    if (httpSampleList.size() > 0) {
-      result = httpSampleList.get((int) (httpSampleList.size() * .9)).getDuration();
+    if (durations.size() > 0) {
+      result = durations.getSorted((int) (durations.size() * .9));
     }
     return result;
   }
   
   public String getHttpCode() {
-    String result = "";
-    
-    for (HttpSample currentSample : httpSampleList) {
-      if ( !result.matches( ".*"+currentSample.getHttpCode()+".*" ) ) {
-          result += ( result.length() > 1 ) ? ","+currentSample.getHttpCode() : currentSample.getHttpCode();
-      }
-    }
-    
-    return result;
+    return getStatistics().getHttpCode();
   }
 
   public long getMedian() {
+    SampleValues durations = getStatistics().getDurations();
     long result = 0;
-    Collections.sort(httpSampleList);
-    if (httpSampleList.size() > 0) {
-      result = httpSampleList.get((int) (httpSampleList.size() * .5)).getDuration();
+    if (durations.size() > 0) {
+      result = durations.getSorted((int) (durations.size() * .5));
     }
     return result;
   }
 
+  /**
+   * @param percentile
+   *          between 0 (excluded) and 100, e.g. 95 or 99.9
+   */
+  public long getPercentile(double percentile) {
+    return getStatistics().getDurations().getPercentile(percentile);
+  }
+
+  /**
+   * @return whether the samples have a latency, which not every tool writes
+   */
+  public boolean hasLatency() {
+    return getStatistics().hasLatency();
+  }
+
+  public long getAverageLatency() {
+    if (size() == 0) {
+      return 0;
+    }
+    return getStatistics().getTotalLatency() / size();
+  }
+
+  public long getAverageConnectTime() {
+    if (size() == 0) {
+      return 0;
+    }
+    return getStatistics().getTotalConnectTime() / size();
+  }
+
+  /**
+   * @see #getPercentile(double)
+   */
+  public long getLatencyPercentile(double percentile) {
+    return getStatistics().getLatencyPercentile(percentile);
+  }
+
+  /**
+   * @see #getPercentile(double)
+   */
+  public long getConnectTimePercentile(double percentile) {
+    return getStatistics().getConnectTimePercentile(percentile);
+  }
+
+  long getTotalLatency() {
+    return getStatistics().getTotalLatency();
+  }
+
+  long getTotalConnectTime() {
+    return getStatistics().getTotalConnectTime();
+  }
+
+  SampleValues getDurations() {
+    return getStatistics().getDurations();
+  }
+
+  /**
+   * @return the start of the first sample, -1 without samples
+   */
+  long getStart() {
+    return getStatistics().getStart();
+  }
+
+  /**
+   * @return the end of the last sample, 0 without samples
+   */
+  long getEnd() {
+    return getStatistics().getEnd();
+  }
+
   public AbstractBuild<?, ?> getBuild() {
     return performanceReport.getBuild();
   }
@@ -140,32 +369,33 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
     return httpSampleList;
   }
 
+  /**
+   * @return the page of the kept samples asked for in the query
+   * @see SampleTable
+   */
+  public SampleTable getSampleTable(StaplerRequest request) {
+    SampleTable.SortedSamples sorted = sortedSamples;
+    if (sorted == null) {
+      sorted = new SampleTable.SortedSamples(httpSampleList);
+      sortedSamples = sorted;
+    }
+    return SampleTable.of(sorted, request);
+  }
+
   public PerformanceReport getPerformanceReport() {
     return performanceReport;
   }
 
   public long getMax() {
-    long max = Long.MIN_VALUE;
-    for (HttpSample currentSample : httpSampleList) {
-      max = Math.max(max, currentSample.getDuration());
-    }
-    return max;
+    return getStatistics().getMax();
   }
   
   public double getTotalTrafficInKb(){ 
-	  double traffic = 0 ; 
-	  for (HttpSample currentSample : httpSampleList) {
-		  traffic += currentSample.getSizeInKb();
-	    }
-	    return roundTwoDecimals(traffic);
+    return roundTwoDecimals(getStatistics().getTotalSizeInKb());
   }
 
   public long getMin() {
-    long min = Long.MAX_VALUE;
-    for (HttpSample currentSample : httpSampleList) {
-      min = Math.min(min, currentSample.getDuration());
-    }
-    return min;
+    return getStatistics().getMin();
   }
 
   public String getStaplerUri() {
@@ -191,8 +421,11 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
     this.uri = uri;
   }
 
+  /**
+   * @return the number of samples, including those not kept
+   */
   public int size() {
-    return httpSampleList.size();
+    return getStatistics().size();
   }
 
   public String encodeUriReport() throws UnsupportedEncodingException {
@@ -203,79 +436,64 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
     return URLEncoder.encode(sb.toString(), "UTF-8");
   }
 
-  public void addLastBuildUriReport( UriReport lastBuildUriReport ) {
-      this.lastBuildUriReport = lastBuildUriReport;
+  public void setLastBuildUriSummary( UriSummary lastBuildUriSummary ) {
+      this.lastBuildUriSummary = lastBuildUriSummary;
   }
   
   public long getAverageDiff() {
-      if ( lastBuildUriReport == null ) {
+      if ( lastBuildUriSummary == null ) {
           return 0;
       }
-      return getAverage() - lastBuildUriReport.getAverage();
+      return getAverage() - lastBuildUriSummary.getAverage();
   }
   
   public long getMedianDiff() {
-      if ( lastBuildUriReport == null ) {
+      if ( lastBuildUriSummary == null ) {
           return 0;
       }
-      return getMedian() - lastBuildUriReport.getMedian();
+      return getMedian() - lastBuildUriSummary.getMedian();
   }
   
   public double getErrorPercentDiff() {
-      if ( lastBuildUriReport == null ) {
+      if ( lastBuildUriSummary == null ) {
           return 0;
       }
-      return errorPercent() - lastBuildUriReport.errorPercent();
+      return errorPercent() - lastBuildUriSummary.errorPercent();
   }
   
   public String getLastBuildHttpCodeIfChanged() {
-      if ( lastBuildUriReport == null ) {
+      if ( lastBuildUriSummary == null ) {
           return "";
       }
       
-      if ( lastBuildUriReport.getHttpCode().equals(getHttpCode()) ) {
+      if ( lastBuildUriSummary.getHttpCode().equals(getHttpCode()) ) {
           return "";
       }
       
-      return lastBuildUriReport.getHttpCode();
+      return lastBuildUriSummary.getHttpCode();
   }
   
   public int getSizeDiff() {
-      if ( lastBuildUriReport == null ) {
+      if ( lastBuildUriSummary == null ) {
           return 0;
       }
-      return size() - lastBuildUriReport.size();
+      return size() - lastBuildUriSummary.size();
   }
 
   public long getSummarizerMax() {
-    long max =  Long.MIN_VALUE;
-    for (HttpSample currentSample : httpSampleList) {
-        max = Math.max(max, currentSample.getSummarizerMax());
-    }
-    return max;
+    return getStatistics().getSummarizerMax();
   }
 
   public long getSummarizerMin() {
-    long min = Long.MAX_VALUE;
-    for (HttpSample currentSample : httpSampleList) {
-        min = Math.min(min, currentSample.getSummarizerMin());
-    }
-    return min;
+    return getStatistics().getSummarizerMin();
   }
 
   public long getSummarizerSize() {
-    long size=0;
-    for (HttpSample currentSample : httpSampleList) {
-        size+=currentSample.getSummarizerSamples();
-    }
-    return size;
+    return getStatistics().getSummarizerSize();
   }
 
   public String getSummarizerErrors() {
-    float nbError = 0;
-    for (HttpSample currentSample : httpSampleList) {
-        nbError+=currentSample.getSummarizerErrors();
-    }
+    float nbError = getStatistics().getSummarizerErrors();
     return new DecimalFormat("#.##").format(nbError/getSummarizerSize()*100).replace(",", ".");     
   }
 
@@ -289,10 +507,15 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
          TimeSeries responseTime = new TimeSeries("Response Time", FixedMillisecond.class);
         // TimeSeries errors = new TimeSeries("errors", Minute.class);
          
-         for (int i=0; i<=this.httpSampleList.size()-1; i++) {
-             RegularTimePeriod current = new FixedMillisecond(this.httpSampleList.get(i).getDate());
-             responseTime.addOrUpdate(current,this.httpSampleList.get(i).getDuration());
-             //errors.addOrUpdate(current,report.getHttpSampleList().get(i).getSummarizerErrors());
+         // no more points than the graph can show, however many samples
+         long[] timestamps = new long[httpSampleList.size()];
+         long[] durations = new long[httpSampleList.size()];
+         int size = getSamplesByTime(timestamps, durations);
+         int[] points = Downsampling.largestTriangleThreeBuckets(timestamps,
+                 durations, size, Downsampling.MAX_POINTS);
+         for (int i : points) {
+             RegularTimePeriod current = new FixedMillisecond(timestamps[i]);
+             responseTime.addOrUpdate(current, durations[i]);
          }
 
        resp.addSeries(responseTime);
@@ -300,11 +523,68 @@ public class UriReport extends AbstractReport implements  Serializable, ModelObj
        dataset.add(resp);
       // dataset.add(err);
 
-            ChartUtil.generateGraph(request, response,
+            Instrumentation.generateGraph(request, response,
                                 PerformanceProjectAction.createSummarizerTrend(dataset, uri),400, 200);
      
     }
 
+    /**
+     * Serves a page of the samples as JSON, with the query of {@link SampleTable}.
+     */
+    public void doSamples(StaplerRequest request, StaplerResponse response)
+            throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        getSampleTable(request).writeJson(response.getWriter());
+    }
+
+    /**
+     * Fills the columns with the start and duration of the kept samples having
+     * a date, in the order of their start.
+     *
+     * @return the number of samples filled in
+     */
+    private int getSamplesByTime(long[] timestamps, long[] durations) {
+        List<HttpSample> samples = httpSampleList;
+        for (int i = 1; i < samples.size(); i++) {
+            if (samples.get(i - 1).getDate() != null && samples.get(i).getDate() != null
+                    && samples.get(i - 1).getDate().after(samples.get(i).getDate())) {
+                samples = new ArrayList<HttpSample>(httpSampleList);
+                Collections.sort(samples, SampleTable.BY_TIME);
+                break;
+            }
+        }
+        int size = 0;
+        for (HttpSample sample : samples) {
+            if (sample.getDate() != null) {
+                timestamps[size] = sample.getDate().getTime();
+                durations[size] = sample.getDuration();
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public void doTimeBreakdownGraph(StaplerRequest request,
+                                StaplerResponse response) throws IOException {
+        Instrumentation.generateGraph(request, response,
+                PerformanceProjectAction.createTimeBreakdownChart(httpSampleList,
+                        getThroughputTimeline().getBucketWidth(), uri), 400, 200);
+    }
+
+    public void doThroughputTimelineGraph(StaplerRequest request,
+                                StaplerResponse response) throws IOException {
+        Instrumentation.generateGraph(request, response,
+                PerformanceProjectAction.createThroughputTimelineChart(
+                        getThroughputTimeline(), uri), 400, 200);
+    }
+
+    public void doConcurrencyGraph(StaplerRequest request,
+                                StaplerResponse response) throws IOException {
+        Instrumentation.generateGraph(request, response,
+                PerformanceProjectAction.createConcurrencyChart(
+                        getThroughputTimeline(), uri), 400, 200);
+    }
+
     private double roundTwoDecimals(double d) {
         DecimalFormat twoDForm = new DecimalFormat("#.##");
   	  return Double.valueOf(twoDForm.format(d));
@@ -0,0 +1,245 @@
+package hudson.plugins.performance;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * The metrics of a {@link UriReport}, without its samples.
+ *
+ * This object belongs under {@link ReportSummary}.
+ */
+public class UriSummary extends AbstractReport implements Serializable,
+    Comparable<UriSummary> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String reportFileName;
+
+  private final String staplerUri;
+
+  private final String uri;
+
+  private final int size;
+
+  private final int errors;
+
+  private final long average;
+
+  private final long median;
+
+  private final long line90;
+
+  private final long min;
+
+  private final long max;
+
+  private final String httpCode;
+
+  private final double averageSizeInKb;
+
+  private final double totalTrafficInKb;
+
+  private final long summarizerSize;
+
+  private final long summarizerMin;
+
+  private final long summarizerMax;
+
+  private final String summarizerErrors;
+
+  private final long apdexThreshold;
+
+  private final double apdex;
+
+  private final boolean latency;
+
+  private final long averageLatency;
+
+  private final long averageConnectTime;
+
+  private transient UriSummary lastBuildUriSummary;
+
+  UriSummary(UriReport uriReport) {
+    reportFileName = uriReport.getPerformanceReport().getReportFileName();
+    staplerUri = uriReport.getStaplerUri();
+    uri = uriReport.getUri();
+    size = uriReport.size();
+    errors = uriReport.countErrors();
+    average = uriReport.getAverage();
+    median = uriReport.getMedian();
+    line90 = uriReport.get90Line();
+    min = uriReport.getMin();
+    max = uriReport.getMax();
+    httpCode = uriReport.getHttpCode();
+    averageSizeInKb = uriReport.getAverageSizeInKb();
+    totalTrafficInKb = uriReport.getTotalTrafficInKb();
+    summarizerSize = uriReport.getSummarizerSize();
+    summarizerMin = uriReport.getSummarizerMin();
+    summarizerMax = uriReport.getSummarizerMax();
+    summarizerErrors = uriReport.getSummarizerErrors();
+    apdexThreshold = uriReport.getApdexThreshold();
+    apdex = uriReport.getApdex();
+    latency = uriReport.hasLatency();
+    averageLatency = uriReport.getAverageLatency();
+    averageConnectTime = uriReport.getAverageConnectTime();
+  }
+
+  public int compareTo(UriSummary uriSummary) {
+    if (uriSummary == this) {
+      return 0;
+    }
+    return uriSummary.getUri().compareTo(this.getUri());
+  }
+
+  public int countErrors() {
+    return errors;
+  }
+
+  public double errorPercent() {
+    return size == 0 ? 0 : ((double) errors) / size * 100;
+  }
+
+  public long getAverage() {
+    return average;
+  }
+
+  public long getMedian() {
+    return median;
+  }
+
+  public long get90Line() {
+    return line90;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String getHttpCode() {
+    return httpCode;
+  }
+
+  public double getAverageSizeInKb() {
+    return averageSizeInKb;
+  }
+
+  public double getTotalTrafficInKb() {
+    return totalTrafficInKb;
+  }
+
+  public long getSummarizerSize() {
+    return summarizerSize;
+  }
+
+  public long getSummarizerMin() {
+    return summarizerMin;
+  }
+
+  public long getSummarizerMax() {
+    return summarizerMax;
+  }
+
+  public String getSummarizerErrors() {
+    return summarizerErrors;
+  }
+
+  public long getApdexThreshold() {
+    return apdexThreshold;
+  }
+
+  public double getApdex() {
+    return apdex;
+  }
+
+  public boolean hasLatency() {
+    return latency;
+  }
+
+  public long getAverageLatency() {
+    return averageLatency;
+  }
+
+  public long getAverageConnectTime() {
+    return averageConnectTime;
+  }
+
+  public String getStaplerUri() {
+    return staplerUri;
+  }
+
+  public String getUri() {
+    return uri;
+  }
+
+  public String getShortUri() {
+    if (uri.length() > 130) {
+      return uri.substring(0, 129);
+    }
+    return uri;
+  }
+
+  public boolean isFailed() {
+    return errors != 0;
+  }
+
+  /**
+   * @see UriReport#encodeUriReport()
+   */
+  public String encodeUriReport() throws UnsupportedEncodingException {
+    StringBuilder sb = new StringBuilder(120);
+    sb.append(reportFileName).append(GraphConfigurationDetail.SEPARATOR)
+        .append(staplerUri).append(UriReport.END_PERFORMANCE_PARAMETER);
+    return URLEncoder.encode(sb.toString(), "UTF-8");
+  }
+
+  void setLastBuildUriSummary(UriSummary lastBuildUriSummary) {
+    this.lastBuildUriSummary = lastBuildUriSummary;
+  }
+
+  public long getAverageDiff() {
+    if (lastBuildUriSummary == null) {
+      return 0;
+    }
+    return getAverage() - lastBuildUriSummary.getAverage();
+  }
+
+  public long getMedianDiff() {
+    if (lastBuildUriSummary == null) {
+      return 0;
+    }
+    return getMedian() - lastBuildUriSummary.getMedian();
+  }
+
+  public double getErrorPercentDiff() {
+    if (lastBuildUriSummary == null) {
+      return 0;
+    }
+    return errorPercent() - lastBuildUriSummary.errorPercent();
+  }
+
+  public String getLastBuildHttpCodeIfChanged() {
+    if (lastBuildUriSummary == null) {
+      return "";
+    }
+    if (lastBuildUriSummary.getHttpCode().equals(getHttpCode())) {
+      return "";
+    }
+    return lastBuildUriSummary.getHttpCode();
+  }
+
+  public int getSizeDiff() {
+    if (lastBuildUriSummary == null) {
+      return 0;
+    }
+    return size() - lastBuildUriSummary.size();
+  }
+}
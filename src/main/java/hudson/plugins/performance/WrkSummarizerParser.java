@@ -71,6 +71,14 @@ public class WrkSummarizerParser extends PerformanceReportParser {
     return "**/*.wrk";
   }
 
+  /**
+   * @return none, the samples being averages of many requests
+   */
+  @Override
+  protected ApdexThresholds getApdexThresholds(AbstractBuild<?, ?> build) {
+    return ApdexThresholds.NONE;
+  }
+
   @Override
   public Collection<PerformanceReport> parse(AbstractBuild<?, ?> build,
       Collection<File> reports, TaskListener listener) throws IOException {
@@ -80,13 +88,12 @@ public class WrkSummarizerParser extends PerformanceReportParser {
     PrintStream logger = listener.getLogger();
 
     for (File f : reports) {
-      final PerformanceReport r = new PerformanceReport();
+      final PerformanceReport r = newReport(build, f.getName());
       Scanner s = null;
 
       try {
         HttpSample sample = new HttpSample();
 
-        r.setReportFileName(f.getName());
         logger.println("Performance: Parsing WrkSummarizer report file "
             + f.getName());
 
@@ -0,0 +1,126 @@
+/*
+ * Draws the performance trend graphs in the browser, from the trendData JSON
+ * of the project action, instead of fetching images rendered on the server.
+ */
+var PerformanceTrend = (function() {
+
+  var COLORS = [ "#d24939", "#3465a4", "#73d216", "#f57900", "#75507b" ];
+
+  function load(url, callback) {
+    var request = new XMLHttpRequest();
+    request.open("GET", url, true);
+    request.onreadystatechange = function() {
+      if (request.readyState == 4 && request.status == 200) {
+        callback(JSON.parse(request.responseText));
+      }
+    };
+    request.send(null);
+  }
+
+  function niceMax(max) {
+    if (max <= 0) {
+      return 1;
+    }
+    var magnitude = Math.pow(10, Math.floor(Math.log(max) / Math.LN10));
+    var steps = [ 1, 2, 2.5, 5, 10 ];
+    for (var i = 0; i < steps.length; i++) {
+      if (steps[i] * magnitude >= max) {
+        return steps[i] * magnitude;
+      }
+    }
+    return 10 * magnitude;
+  }
+
+  /*
+   * A line per series, one point per build, the build numbers along the x
+   * axis.
+   */
+  function drawLines(canvas, title, unit, builds, series, maxValue) {
+    var context = canvas.getContext("2d");
+    var width = canvas.width, height = canvas.height;
+    var left = 50, right = 10, top = 25, bottom = 40;
+    context.clearRect(0, 0, width, height);
+    context.font = "11px sans-serif";
+    context.fillStyle = "#000";
+    context.fillText(title + (unit ? " (" + unit + ")" : ""), left, 15);
+
+    var max = maxValue;
+    if (!max) {
+      max = 0;
+      for (var s = 0; s < series.length; s++) {
+        for (var i = 0; i < series[s].values.length; i++) {
+          if (series[s].values[i] != null) {
+            max = Math.max(max, series[s].values[i]);
+          }
+        }
+      }
+      max = niceMax(max);
+    }
+    var plotWidth = width - left - right, plotHeight = height - top - bottom;
+    function x(i) {
+      return left + (builds.length > 1 ? i * plotWidth / (builds.length - 1) : plotWidth / 2);
+    }
+    function y(value) {
+      return top + plotHeight - value * plotHeight / max;
+    }
+
+    context.strokeStyle = "#ccc";
+    context.lineWidth = 1;
+    for (var tick = 0; tick <= 4; tick++) {
+      var value = max * tick / 4;
+      context.beginPath();
+      context.moveTo(left, y(value));
+      context.lineTo(left + plotWidth, y(value));
+      context.stroke();
+      context.fillText(String(Math.round(value * 100) / 100), 2, y(value) + 4);
+    }
+    var every = Math.max(1, Math.ceil(builds.length / (plotWidth / 40)));
+    for (var b = 0; b < builds.length; b += every) {
+      context.fillText("#" + builds[b], x(b) - 8, top + plotHeight + 15);
+    }
+
+    for (var s = 0; s < series.length; s++) {
+      context.strokeStyle = COLORS[s % COLORS.length];
+      context.lineWidth = 2;
+      context.beginPath();
+      var drawing = false;
+      for (var i = 0; i < series[s].values.length; i++) {
+        var v = series[s].values[i];
+        if (v == null) {
+          drawing = false;
+          continue;
+        }
+        if (drawing) {
+          context.lineTo(x(i), y(v));
+        } else {
+          context.moveTo(x(i), y(v));
+          drawing = true;
+        }
+      }
+      context.stroke();
+      context.fillStyle = COLORS[s % COLORS.length];
+      context.fillText(series[s].name, left + s * 90, height - 5);
+    }
+  }
+
+  function draw(container, url) {
+    load(url, function(trend) {
+      var canvases = container.getElementsByTagName("canvas");
+      drawLines(canvases[0], "Response time", "ms", trend.builds, [
+        { name : "average", values : trend.average },
+        { name : "median", values : trend.median },
+        { name : "90% line", values : trend.line90 } ]);
+      drawLines(canvases[1], "Errors", "%", trend.builds, [
+        { name : "errors", values : trend.errorPercent } ], 100);
+      drawLines(canvases[2], "Throughput", "requests/s", trend.builds, [
+        { name : "average", values : trend.throughput },
+        { name : "peak", values : trend.peakThroughput } ]);
+      drawLines(canvases[3], "Apdex", null, trend.builds, [
+        { name : "apdex", values : trend.apdex } ], 1);
+    });
+  }
+
+  return {
+    draw : draw
+  };
+})();
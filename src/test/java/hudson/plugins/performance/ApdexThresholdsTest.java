@@ -0,0 +1,114 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import hudson.model.Result;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class ApdexThresholdsTest {
+
+	@Test
+	public void testParse() {
+		ApdexThresholds thresholds = ApdexThresholds.parse(200,
+				"# comment\n\n/search/* 1200\nregex:.*\\.png 50\nMy Login Page 300");
+		assertEquals(200, thresholds.getThreshold());
+		assertEquals(1200, thresholds.getThreshold("/search/books"));
+		assertEquals(50, thresholds.getThreshold("/static/logo.png"));
+		assertEquals(300, thresholds.getThreshold("My Login Page"));
+		assertEquals(200, thresholds.getThreshold("/checkout"));
+		assertEquals(ApdexThresholds.DEFAULT_THRESHOLD, ApdexThresholds.parse(0,
+				null).getThreshold());
+	}
+
+	@Test
+	public void testParseInvalid() {
+		String[] invalid = { "/search/*", "/search/* fast", "/search/* 0",
+				"regex:/api/( 100" };
+		for (String thresholds : invalid) {
+			try {
+				ApdexThresholds.parse(500, "/ok 100\n" + thresholds);
+				fail(thresholds);
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2: "));
+			}
+		}
+	}
+
+	@Test
+	public void testThresholdsKeptWithBuild() {
+		PerformanceBuildAction action = new PerformanceBuildAction(null, null,
+				null);
+		// builds recorded before the thresholds were kept
+		assertNull(action.getApdexThresholds());
+		action.setApdexThresholds(200, "/search/* 1200");
+		ApdexThresholds thresholds = action.getApdexThresholds();
+		assertEquals(200, thresholds.getThreshold("/checkout"));
+		assertEquals(1200, thresholds.getThreshold("/search/books"));
+		// invalid per-label thresholds fall back to the job's T
+		action.setApdexThresholds(300, "/search/*");
+		assertEquals(300, action.getApdexThresholds().getThreshold(
+				"/search/books"));
+	}
+
+	@Test
+	public void testScore() throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		report.setApdexThresholds(ApdexThresholds.parse(100, "/slow 1000"));
+		// 6 satisfied, 2 tolerating, 1 frustrated and 1 failed
+		long[] durations = { 10, 20, 50, 80, 100, 100, 101, 400, 401, 10 };
+		for (int i = 0; i < durations.length; i++) {
+			report.addSample(sample("/fast", durations[i], i < durations.length - 1));
+			report.addSample(sample("/slow", 10 * durations[i], true));
+		}
+		UriReport fast = report.getUriReportMap().get("_fast");
+		assertEquals(100, fast.getApdexThreshold());
+		assertEquals(6, fast.getApdexSatisfied());
+		assertEquals(2, fast.getApdexTolerating());
+		assertEquals(0.7, fast.getApdex(), 0.0001);
+		UriReport slow = report.getUriReportMap().get("_slow");
+		assertEquals(1000, slow.getApdexThreshold());
+		assertEquals(0.8, slow.getApdex(), 0.0001);
+		assertEquals(0.75, report.getApdex(), 0.0001);
+		assertEquals("0.75", report.getApdexFormated());
+		assertEquals(1.0, new PerformanceReport().getApdex(), 0);
+	}
+
+	@Test
+	public void testNotCounted() throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		report.setApdexThresholds(ApdexThresholds.NONE);
+		report.addSample(sample("/api", 5000, true));
+		UriReport api = report.getUriReportMap().get("_api");
+		assertEquals(-1, api.getApdexThreshold());
+		assertEquals(0, api.getApdexTolerating());
+		assertEquals(1.0, api.getApdex(), 0);
+		assertEquals(1.0, report.getApdex(), 0);
+	}
+
+	@Test
+	public void testThresholdRule() throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		for (int i = 0; i < 10; i++) {
+			report.addSample(sample("/api", i < 8 ? 100 : 5000, true));
+		}
+		PrintStream logger = new PrintStream(new ByteArrayOutputStream());
+		assertEquals(Result.SUCCESS,
+				ThresholdRuleSet.parse("/api apdex 0.8").evaluate(report, logger));
+		assertEquals(Result.UNSTABLE,
+				ThresholdRuleSet.parse("/api apdex 0.85").evaluate(report, logger));
+	}
+
+	private HttpSample sample(String uri, long duration, boolean successful) {
+		HttpSample sample = new HttpSample();
+		sample.setUri(uri);
+		sample.setDuration(duration);
+		sample.setDate(new Date());
+		sample.setSuccessful(successful);
+		return sample;
+	}
+}
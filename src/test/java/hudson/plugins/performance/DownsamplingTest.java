@@ -0,0 +1,42 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DownsamplingTest {
+
+	@Test
+	public void testKeepsAllBelowThreshold() {
+		long[] x = { 1, 2, 3, 4 };
+		long[] y = { 5, 6, 7, 8 };
+		assertArrayEquals(new int[] { 0, 1, 2 },
+				Downsampling.largestTriangleThreeBuckets(x, y, 3, 10));
+	}
+
+	@Test
+	public void testKeepsPeaks() {
+		int size = 100000;
+		long[] x = new long[size];
+		long[] y = new long[size];
+		for (int i = 0; i < size; i++) {
+			x[i] = 1400000000000L + i;
+			y[i] = 100 + i % 7;
+		}
+		y[31337] = 5000;
+		y[77777] = 0;
+		int[] kept = Downsampling.largestTriangleThreeBuckets(x, y, size, 500);
+		assertEquals(500, kept.length);
+		assertEquals(0, kept[0]);
+		assertEquals(size - 1, kept[kept.length - 1]);
+		boolean peak = false;
+		boolean valley = false;
+		for (int i = 1; i < kept.length; i++) {
+			assertTrue(kept[i] > kept[i - 1]);
+			peak |= kept[i] == 31337;
+			valley |= kept[i] == 77777;
+		}
+		assertTrue(peak);
+		assertTrue(valley);
+	}
+}
@@ -0,0 +1,146 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+import org.kohsuke.stapler.HttpResponseException;
+
+public class FootprintTest {
+
+	@After
+	public void tearDown() {
+		System.clearProperty(Footprint.BUDGET_PROPERTY);
+	}
+
+	@Test
+	public void testFootprintGrowsWithSamples() throws Exception {
+		SampleRetention all = new SampleRetention(SampleRetention.ALL, 0);
+		long small = report(1000, all).getFootprint();
+		long large = report(10000, all).getFootprint();
+		assertTrue(large > 5 * small);
+		assertTrue(large > 10000 * Footprint.SAMPLE_BYTES);
+	}
+
+	@Test
+	public void testRetentionReducesFootprint() throws Exception {
+		long all = report(10000,
+				new SampleRetention(SampleRetention.ALL, 0)).getFootprint();
+		long reservoir = report(10000,
+				new SampleRetention(SampleRetention.RESERVOIR, 100)).getFootprint();
+		long none = report(10000,
+				new SampleRetention(SampleRetention.NONE, 0)).getFootprint();
+		assertTrue(reservoir < all / 4);
+		assertTrue(none < reservoir);
+		// the values of the percentiles are kept whatever the retention
+		assertTrue(none > 10000 * Footprint.VALUE_BYTES);
+	}
+
+	@Test
+	public void testEstimateFromSummary() throws Exception {
+		for (SampleRetention retention : new SampleRetention[] {
+				new SampleRetention(SampleRetention.ALL, 0),
+				new SampleRetention(SampleRetention.RESERVOIR, 100) }) {
+			PerformanceReport report = report(10000, retention);
+			ReportSummary summary = ReportSummary.summarize(
+					Collections.singleton(report)).get(0);
+			long estimate = Footprint.estimate(summary);
+			assertTrue(estimate > report.getFootprint() / 2);
+			assertTrue(estimate < report.getFootprint() * 2);
+			assertEquals(estimate, Footprint.estimate(
+					Collections.singleton(summary)));
+		}
+	}
+
+	@Test
+	public void testEstimateFromPersistedRetention() throws Exception {
+		ReportSummary summary = ReportSummary.summarize(
+				Collections.singleton(report(10000, new SampleRetention(
+						SampleRetention.NONE, 0)))).get(0);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(summary);
+		out.close();
+		ReportSummary read = (ReportSummary) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(0, read.getSampleRetention().getMaxSamples());
+		assertEquals(Footprint.estimate(summary), Footprint.estimate(read));
+		// whatever the retention configured since
+		ReportSummary all = ReportSummary.summarize(
+				Collections.singleton(report(10000, new SampleRetention(
+						SampleRetention.ALL, 0)))).get(0);
+		assertTrue(Footprint.estimate(read) < Footprint.estimate(all) / 4);
+	}
+
+	@Test
+	public void testBudget() {
+		assertEquals(Runtime.getRuntime().maxMemory() / 4, Footprint.getBudget());
+		System.setProperty(Footprint.BUDGET_PROPERTY, "64");
+		assertEquals(64L * 1024 * 1024, Footprint.getBudget());
+		System.setProperty(Footprint.BUDGET_PROPERTY, "-1");
+		assertEquals(-1, Footprint.getBudget());
+	}
+
+	@Test
+	public void testResident() throws Exception {
+		PerformanceReport report = report(1000,
+				new SampleRetention(SampleRetention.ALL, 0));
+		long before = Footprint.getResident(null);
+		Footprint.addResident(null, report);
+		Footprint.addResident(null, report);
+		assertEquals(before + report.getFootprint(), Footprint.getResident(null));
+	}
+
+	@Test
+	public void testSummaryOnlyPagesRefused() throws Exception {
+		PerformanceReportMap reportMap = new PerformanceReportMap(null, null) {
+			@Override
+			public boolean isSummaryOnly() {
+				return true;
+			}
+		};
+		try {
+			reportMap.getUriReport("results.jtl:_home");
+			fail("the URI report of a summary only build");
+		} catch (HttpResponseException e) {
+			// expected
+		}
+		try {
+			reportMap.getPerformanceReport("results.jtl");
+			fail("the report of a summary only build");
+		} catch (HttpResponseException e) {
+			// expected
+		}
+		try {
+			reportMap.getDynamic("trendReport", null, null);
+			fail("the trend report of a summary only build");
+		} catch (HttpResponseException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFormat() {
+		assertEquals("1 KB", Footprint.format(100));
+		assertEquals("512 KB", Footprint.format(512 * 1024));
+		assertEquals("3 MB", Footprint.format(3 * 1024 * 1024 + 1));
+	}
+
+	private static PerformanceReport report(int samples,
+			SampleRetention retention) throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		report.setSampleRetention(retention);
+		report.setReportFileName("results.jtl");
+		for (HttpSample sample : new SyntheticResults(42).samples(samples)
+				.labels(5).generate()) {
+			report.addSample(sample);
+		}
+		return report;
+	}
+}
@@ -0,0 +1,90 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstrumentationTest {
+
+	@Before
+	public void setUp() {
+		Instrumentation.reset();
+	}
+
+	@Test
+	public void testTotals() {
+		Instrumentation.start(Instrumentation.Phase.PARSE).stop(1000);
+		Instrumentation.start(Instrumentation.Phase.PARSE).stop(500);
+		Instrumentation.start(Instrumentation.Phase.LOCATE).stop();
+
+		List<Instrumentation.Measure> totals = Instrumentation.getTotals();
+		// in the order of the phases
+		assertEquals(2, totals.size());
+		assertEquals(Instrumentation.Phase.LOCATE, totals.get(0).getPhase());
+		assertEquals(1, totals.get(0).getCount());
+		assertEquals(Instrumentation.Phase.PARSE, totals.get(1).getPhase());
+		assertEquals(2, totals.get(1).getCount());
+		assertEquals(1500, totals.get(1).getItems());
+
+		Instrumentation.reset();
+		assertTrue(Instrumentation.getTotals().isEmpty());
+	}
+
+	@Test
+	public void testUnknownAllocation() {
+		Instrumentation.Measure measure = new Instrumentation.Measure(
+				Instrumentation.Phase.COPY, 2000000, 4096, 0);
+		measure.add(new Instrumentation.Measure(Instrumentation.Phase.COPY,
+				1000000, -1, 0));
+		assertEquals(3, measure.getTotalMillis());
+		assertEquals(2, measure.getMaxMillis());
+		assertEquals(-1, measure.getAllocatedBytes());
+		assertEquals(-1, measure.getAverageAllocatedKb());
+	}
+
+	@Test
+	public void testAllocatedBytes() {
+		long before = Instrumentation.allocatedBytes();
+		byte[][] allocated = new byte[16][];
+		for (int i = 0; i < allocated.length; i++) {
+			allocated[i] = new byte[64 * 1024];
+		}
+		long after = Instrumentation.allocatedBytes();
+		// -1 throughout on the JVMs that don't tell
+		if (before < 0) {
+			assertEquals(-1, after);
+		} else {
+			assertTrue(after - before >= allocated.length * 64 * 1024);
+		}
+	}
+
+	@Test
+	public void testSummary() {
+		Instrumentation.Summary summary = new Instrumentation.Summary();
+		summary.addParse(new Instrumentation.Measure(
+				Instrumentation.Phase.PARSE, 2000000000L, 3 * 1024 * 1024,
+				1000000), "results.jtl");
+		summary.add(new Instrumentation.Measure(Instrumentation.Phase.COPY,
+				5000000, 1024 * 1024, 0));
+		summary.add(new Instrumentation.Measure(Instrumentation.Phase.COPY,
+				5000000, 1024 * 1024, 0));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		summary.print(new PrintStream(out, true));
+		String[] lines = out.toString().split("\\r?\\n");
+		assertEquals(2, lines.length);
+		assertEquals(
+				"Performance: Parsed results.jtl: 1000000 samples in 2000 ms (500000 samples/s, 3 MB allocated)",
+				lines[0]);
+		assertEquals("Performance: Timings "
+				+ Instrumentation.Phase.COPY.getDisplayName() + " 10 ms, "
+				+ Instrumentation.Phase.PARSE.getDisplayName()
+				+ " 2000 ms; 5 MB allocated", lines[1]);
+	}
+}
@@ -5,8 +5,11 @@ import org.junit.Test;
 import org.jvnet.hudson.test.HudsonTestCase;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.net.URL;
+import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collection;
 
 public class JmeterSummarizerParserTest extends HudsonTestCase {
 
@@ -18,4 +21,31 @@ public class JmeterSummarizerParserTest extends HudsonTestCase {
         jmeterSummarizerParser.parse(new FreeStyleBuild(createFreeStyleProject()), Arrays.asList(summaryLogFile), createTaskListener());
     }
 
+    @Test
+    public void testParseSummariserLines() throws Exception {
+        File log = File.createTempFile("jmeter", ".log");
+        try {
+            FileWriter out = new FileWriter(log);
+            out.write("2014/05/22 14:50:15 INFO  - jmeter.JMeter: java.version=1.6.0_27 \n");
+            out.write("2014/05/22 14:50:45 INFO  - jmeter.reporters.Summariser: login?a=b +    119 in    30s =    4.0/s Avg:   120 Min:    50 Max:  1234 Err:     3 (2.52%) Active: 5 Started: 5 Finished: 0 \n");
+            out.write("2014/05/22 14:50:45 INFO  - jmeter.reporters.Summariser: summary =    119 in    30s =    4.0/s Avg:   120 Min:    50 Max:  1234 Err:     3 (2.52%) \n");
+            out.close();
+            Collection<PerformanceReport> reports = new JmeterSummarizerParser("*.log", "yyyy/MM/dd HH:mm:ss")
+                    .parse(new FreeStyleBuild(createFreeStyleProject()), Arrays.asList(log), createTaskListener());
+            assertEquals(1, reports.size());
+            PerformanceReport report = reports.iterator().next();
+            assertEquals(1, report.size());
+            UriReport uri = report.getUriListOrdered().get(0);
+            assertEquals("login?a b", uri.getUri());
+            HttpSample sample = uri.getHttpSampleList().get(0);
+            assertEquals(119, sample.getSummarizerSamples());
+            assertEquals(120, sample.getDuration());
+            assertEquals(50, sample.getSummarizerMin());
+            assertEquals(1234, sample.getSummarizerMax());
+            assertEquals(3, sample.getSummarizerErrors(), 0);
+            assertEquals(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").parse("2014/05/22 14:50:45"), sample.getDate());
+        } finally {
+            log.delete();
+        }
+    }
 }
@@ -0,0 +1,28 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class JsonWriterTest {
+
+	@Test
+	public void testNesting() throws Exception {
+		StringWriter out = new StringWriter();
+		JsonWriter json = new JsonWriter(out);
+		json.beginObject();
+		json.name("report").value("a \"b\"\n");
+		json.name("builds").beginArray().value(1).value(2).endArray();
+		json.name("apdex").beginArray().value(0.5).value(Double.NaN).endArray();
+		json.name("uris").beginArray();
+		json.beginObject().name("uri").value((String) null).endObject();
+		json.beginObject().name("failed").value(true).endObject();
+		json.endArray();
+		json.endObject();
+		assertEquals("{\"report\":\"a \\\"b\\\"\\u000a\",\"builds\":[1,2],"
+				+ "\"apdex\":[0.5,null],\"uris\":[{\"uri\":null},"
+				+ "{\"failed\":true}]}", out.toString());
+	}
+}
@@ -0,0 +1,84 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+public class LabelRulesTest {
+
+	@Test
+	public void testTemplates() {
+		LabelRules rules = LabelRules.parse("# comment\n\n"
+				+ "/user/{id}/orders\n" + "/order/{id}\n" + "/a.b/{x}/{y}");
+		assertEquals("/user/{id}/orders", rules.normalize("/user/1234/orders"));
+		assertEquals("/order/{id}", rules.normalize("/order/42"));
+		// one segment only, and the dot is not a wildcard
+		assertEquals("/order/42/lines", rules.normalize("/order/42/lines"));
+		assertEquals("/a.b/{x}/{y}", rules.normalize("/a.b/1/2"));
+		assertEquals("/aXb/1/2", rules.normalize("/aXb/1/2"));
+		assertEquals("Login page", rules.normalize("Login page"));
+	}
+
+	@Test
+	public void testRegex() {
+		LabelRules rules = LabelRules.parse("regex:/search\\?q=.* => /search\n"
+				+ "regex:(GET|POST) /item/\\d+ => $1 /item/{id}");
+		assertEquals("/search", rules.normalize("/search?q=books"));
+		assertEquals("POST /item/{id}", rules.normalize("POST /item/17"));
+		assertEquals("GET /item/abc", rules.normalize("GET /item/abc"));
+	}
+
+	@Test
+	public void testRegexAlternationReplacesWholeLabel() {
+		LabelRules rules = LabelRules.parse("regex:a|ab => x\n"
+				+ "regex:(/cart|/cart/checkout) => [$1]");
+		assertEquals("x", rules.normalize("ab"));
+		assertEquals("x", rules.normalize("a"));
+		assertEquals("[/cart/checkout]", rules.normalize("/cart/checkout"));
+	}
+
+	@Test
+	public void testFirstRuleWins() {
+		LabelRules rules = LabelRules
+				.parse("/user/{id}\nregex:/user/.* => /users");
+		assertEquals("/user/{id}", rules.normalize("/user/1"));
+		assertEquals("/users", rules.normalize("/user/1/photo"));
+	}
+
+	@Test
+	public void testParseInvalid() {
+		String[] invalid = { "/user/1", "regex:/user/.*", "regex:/user/( => x",
+				"regex:/user/(\\d+) => /user/$2" };
+		for (String rules : invalid) {
+			try {
+				LabelRules.parse("/ok/{id}\n" + rules);
+				fail(rules);
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2: "));
+			}
+		}
+	}
+
+	@Test
+	public void testReportAggregatesNormalizedLabels() throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		report.setLabelRules(LabelRules.parse("/user/{id}"));
+		for (int i = 0; i < 100; i++) {
+			HttpSample sample = new HttpSample();
+			sample.setUri("/user/" + i);
+			sample.setDate(new Date());
+			sample.setDuration(i);
+			sample.setSuccessful(true);
+			report.addSample(sample);
+		}
+		assertEquals(1, report.getUriReportMap().size());
+		UriReport uriReport = report.getUriReportMap().get("_user_{id}");
+		assertEquals(100, uriReport.size());
+		assertEquals("/user/{id}", uriReport.getUri());
+		// the samples share the label
+		assertSame(uriReport.getHttpSampleList().get(0).getUri(), uriReport
+				.getHttpSampleList().get(99).getUri());
+	}
+}
@@ -0,0 +1,79 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import hudson.plugins.performance.PerformanceProjectAction.Range;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PerformanceProjectActionTest {
+
+	/**
+	 * Start times of the builds, newest first; numbered from 4 down to 1 by the
+	 * loops over the builds.
+	 */
+	private static final List<Long> START_TIMES = Arrays.asList(400L, 300L,
+			200L, 100L);
+
+	@Test
+	public void testCountBuildsStartedAfter() {
+		assertEquals(0, PerformanceProjectAction.countBuildsStartedAfter(
+				Collections.<Long> emptyList(), 100, false));
+		assertEquals(4, PerformanceProjectAction.countBuildsStartedAfter(
+				START_TIMES, 50, false));
+		assertEquals(0, PerformanceProjectAction.countBuildsStartedAfter(
+				START_TIMES, 500, true));
+		assertEquals(2, PerformanceProjectAction.countBuildsStartedAfter(
+				START_TIMES, 250, false));
+		assertEquals(1, PerformanceProjectAction.countBuildsStartedAfter(
+				START_TIMES, 300, false));
+		assertEquals(3, PerformanceProjectAction.countBuildsStartedAfter(
+				START_TIMES, 200, true));
+	}
+
+	@Test
+	public void testDateRange() {
+		assertRange(2, 3, PerformanceProjectAction.dateRange(START_TIMES, 150,
+				350));
+		// starting before the first build
+		assertRange(1, 4, PerformanceProjectAction.dateRange(START_TIMES, 0, 1000));
+		// builds started at the very limits are left out
+		assertRange(2, 3, PerformanceProjectAction.dateRange(START_TIMES, 100,
+				400));
+	}
+
+	@Test
+	public void testEmptyDateRange() {
+		// no builds
+		assertEmpty(PerformanceProjectAction.dateRange(
+				Collections.<Long> emptyList(), 0, 1000), 0);
+		// starting after the last build
+		assertEmpty(PerformanceProjectAction.dateRange(START_TIMES, 500, 1000), 4);
+		// ending before the first build
+		assertEmpty(PerformanceProjectAction.dateRange(START_TIMES, 0, 50), 4);
+		// between two builds
+		assertEmpty(PerformanceProjectAction.dateRange(START_TIMES, 210, 290), 4);
+	}
+
+	private static void assertRange(int first, int last, Range range) {
+		assertEquals(first, range.first);
+		assertEquals(last, range.last);
+		assertFalse(range.passed(first));
+		assertTrue(range.passed(first - 1));
+		assertTrue(range.in(first));
+		assertTrue(range.in(last));
+		assertFalse(range.in(last + 1));
+	}
+
+	private static void assertEmpty(Range range, int builds) {
+		for (int build = builds; build > 0; build--) {
+			assertFalse(range.in(build));
+		}
+		// the loops over the builds stop at the newest one
+		assertTrue(range.passed(builds));
+	}
+}
@@ -139,6 +139,47 @@ import static java.util.Arrays.asList;
         }
     }
 
+    public void testBuildUnstableThresholdRule() throws Exception {
+        FreeStyleProject p = createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build,
+                                   Launcher launcher, BuildListener listener)
+                    throws InterruptedException, IOException {
+                build.getWorkspace().child("test.jtl").copyFrom(
+                        getClass().getResource("/JMeterResults.jtl"));
+                return true;
+            }
+        });
+        PerformancePublisher publisher = new PerformancePublisher(0, 0, "", 0, 0, 0, 0, 0, false, "", false, false, asList(new JMeterParser(
+                "**/*.jtl")),false);
+        publisher.setThresholdRules("Work* max 100000 failure\nHo?e p95 1000 unstable");
+        p.getPublishersList().add(publisher);
+
+        assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+    }
+
+    public void testBuildUnstableThresholdRuleInRelativeMode() throws Exception {
+        FreeStyleProject p = createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build,
+                                   Launcher launcher, BuildListener listener)
+                    throws InterruptedException, IOException {
+                build.getWorkspace().child("test1.xml").copyFrom(
+                        getClass().getResource("/TEST-JUnitResults-relative-thrashould.xml"));
+                return true;
+            }
+        });
+        PerformancePublisher publisher = new PerformancePublisher(0, 0, null, 100.0d, 0, 50.0d, 0, 0, false, "ART", true, true, asList(new JUnitParser(
+                "**/*.xml")), false);
+        publisher.setThresholdRules("* max 50 unstable");
+        p.getPublishersList().add(publisher);
+
+        // no build to compare with, the rules still apply
+        assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0).get());
+    }
+
     @Bug(22011)
     public void testBuildUnstableAverageResponseTimeRelativeThreshold() throws Exception {
         FreeStyleProject p = createFreeStyleProject();
@@ -8,6 +8,8 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -92,6 +94,8 @@ public class PerformanceReportTest {
 		assertEquals(14720, firstHttpSample.getDuration());
 		assertEquals(new Date(1296846793179L), firstHttpSample.getDate());
 		assertTrue(firstHttpSample.isSuccessful());
+		assertEquals(9770, firstHttpSample.getLatency());
+		assertEquals(0, firstHttpSample.getConnectTime());
 		String logoutUri = "Workgroup";
 		UriReport secondUriReport = uriReportMap.get(logoutUri);
 		HttpSample secondHttpSample = secondUriReport.getHttpSampleList()
@@ -191,4 +195,29 @@ public class PerformanceReportTest {
 		UriReport report = uriReportMap.get("Home");
 		assertNotNull(report);
 	}
+	@Test
+	public void testMergeDistributedReports() throws IOException {
+		Collection<PerformanceReport> reports = new JMeterParser("", 0, 0,
+				false, "-agent\\d+").parse(null, Arrays.asList(new File(
+				"src/test/resources/JMeterDistributed-agent1.jtl"), new File(
+				"src/test/resources/JMeterDistributed-agent2.jtl")),
+				new StreamTaskListener(System.out));
+		assertEquals(1, reports.size());
+		PerformanceReport merged = reports.iterator().next();
+		assertEquals("JMeterDistributed.jtl", merged.getReportFileName());
+		// nested samples are not counted
+		assertEquals(6, merged.size());
+		UriReport login = merged.getUriReportMap().get("Login");
+		assertEquals(2, login.size());
+		assertEquals(1, login.countErrors());
+		// the samples come in timestamp order across the files
+		List<HttpSample> samples = login.getHttpSampleList();
+		assertEquals(400, samples.get(0).getDuration());
+		assertEquals(500, samples.get(1).getDuration());
+		samples = merged.getUriReportMap().get("Home").getHttpSampleList();
+		assertEquals(100, samples.get(0).getDuration());
+		assertEquals(200, samples.get(1).getDuration());
+		assertEquals(300, samples.get(2).getDuration());
+		assertEquals(600, samples.get(3).getDuration());
+	}
 }
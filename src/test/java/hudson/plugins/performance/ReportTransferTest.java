@@ -0,0 +1,138 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import hudson.FilePath;
+import hudson.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReportTransferTest {
+
+	private File dir;
+
+	private File workspace;
+
+	private File master;
+
+	private ByteArrayOutputStream log;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("transfer", "");
+		dir.delete();
+		workspace = new File(dir, "workspace");
+		master = new File(dir, "master");
+		new File(workspace, "sub").mkdirs();
+		master.mkdirs();
+		log = new ByteArrayOutputStream();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Util.deleteRecursive(dir);
+	}
+
+	@Test
+	public void testCopy() throws Exception {
+		write(new File(workspace, "a.jtl"), "first");
+		write(new File(workspace, "sub/b.jtl"), "second");
+		ReportTransfer transfer = transfer();
+		transfer.add(new FilePath(new File(workspace, "a.jtl")), new File(
+				master, "a.jtl"));
+		transfer.add(new FilePath(new File(workspace, "sub/b.jtl")), new File(
+				master, "b.jtl"));
+
+		List<File> copies = transfer.copy();
+		assertEquals(Arrays.asList(new File(master, "a.jtl"), new File(master,
+				"b.jtl")), copies);
+		assertEquals("first", read(copies.get(0)));
+		assertEquals("second", read(copies.get(1)));
+		assertTrue(log.toString(), log.toString().contains(
+				"Copied 2 report file(s)"));
+		// the scratch directory is cleaned up
+		assertFalse(new File(dir, "scratch").exists());
+	}
+
+	@Test
+	public void testUnchangedFileNotCopiedAgain() throws Exception {
+		write(new File(workspace, "a.jtl"), "same");
+		write(new File(workspace, "b.jtl"), "newer");
+		File a = new File(master, "a.jtl");
+		write(a, "same");
+		a.setLastModified(1000000000000L);
+		// same size, other content
+		File b = new File(master, "b.jtl");
+		write(b, "older");
+		ReportTransfer transfer = transfer();
+		transfer.add(new FilePath(new File(workspace, "a.jtl")), a);
+		transfer.add(new FilePath(new File(workspace, "b.jtl")), b);
+
+		assertEquals(Arrays.asList(a, b), transfer.copy());
+		assertEquals(1000000000000L, a.lastModified());
+		assertEquals("newer", read(b));
+		assertTrue(log.toString(), log.toString().contains(
+				"Copied 1 report file(s)"));
+		assertTrue(log.toString(), log.toString().contains(
+				"1 already up to date"));
+	}
+
+	@Test
+	public void testMissingSource() throws Exception {
+		write(new File(workspace, "a.jtl"), "first");
+		write(new File(workspace, "b.jtl"), "second");
+		ReportTransfer transfer = transfer();
+		transfer.add(new FilePath(new File(workspace, "a.jtl")), new File(
+				master, "a.jtl"));
+		transfer.add(new FilePath(new File(workspace, "b.jtl")), new File(
+				master, "b.jtl"));
+		// deleted after the reports were located
+		new File(workspace, "b.jtl").delete();
+
+		assertEquals(Arrays.asList(new File(master, "a.jtl")), transfer.copy());
+		assertFalse(new File(master, "b.jtl").exists());
+		assertTrue(log.toString(), log.toString().contains(
+				"File 'b.jtl' no longer exists"));
+	}
+
+	private ReportTransfer transfer() {
+		return new ReportTransfer(new FilePath(workspace), new File(dir,
+				"scratch"), new PrintStream(log, true));
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		StringBuilder content = new StringBuilder();
+		Reader in = new FileReader(file);
+		try {
+			char[] buffer = new char[256];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				content.append(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return content.toString();
+	}
+}
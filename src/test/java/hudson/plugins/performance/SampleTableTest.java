@@ -0,0 +1,100 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SampleTableTest {
+
+	private static final long START = 1400000000000L;
+
+	@Test
+	public void testPages() {
+		SampleTable table = new SampleTable(samples(250), null, false, false, 0,
+				3, 100);
+		assertEquals(250, table.getTotal());
+		assertEquals(3, table.getPageCount());
+		assertEquals(3, table.getPage());
+		assertEquals(50, table.getSamples().size());
+		assertEquals(START + 200 * 1000, table.getSamples().get(0).getDate()
+				.getTime());
+
+		// out of range pages and sizes are brought back in range
+		table = new SampleTable(samples(250), null, false, false, 0, 7, 5000);
+		assertEquals(SampleTable.MAX_PAGE_SIZE, table.getPageSize());
+		assertEquals(1, table.getPage());
+		assertEquals(1, new SampleTable(samples(0), null, false, false, 0, 0, 0)
+				.getPageCount());
+	}
+
+	@Test
+	public void testSortAndFilter() {
+		SampleTable table = new SampleTable(samples(250),
+				SampleTable.SORT_DURATION, true, true, 100, 1, 10);
+		// every fifth sample fails, those of 100 ms and more
+		assertEquals(30, table.getTotal());
+		assertEquals(245, table.getSamples().get(0).getDuration());
+		assertEquals(200, table.getSamples().get(9).getDuration());
+		for (HttpSample sample : table.getSamples()) {
+			assertFalse(sample.isSuccessful());
+		}
+		assertEquals("?sort=duration&desc=true&errors=true&minDuration=100"
+				+ "&pageSize=10&page=2", table.getPageQuery(2));
+		assertEquals("?sort=duration&errors=true&minDuration=100&pageSize=10"
+				+ "&page=1", table.getSortQuery(SampleTable.SORT_DURATION));
+
+		table = new SampleTable(samples(10), SampleTable.SORT_CODE, false,
+				false, 0, 1, 0);
+		assertEquals("200", table.getSamples().get(0).getHttpCode());
+		assertEquals("500", table.getSamples().get(9).getHttpCode());
+	}
+
+	@Test
+	public void testSortedOnce() {
+		SampleTable.SortedSamples sorted = new SampleTable.SortedSamples(
+				samples(20));
+		List<HttpSample> byDuration = sorted.get(SampleTable.SORT_DURATION);
+		assertSame(byDuration, sorted.get(SampleTable.SORT_DURATION));
+		SampleTable table = new SampleTable(sorted, SampleTable.SORT_DURATION,
+				true, false, 0, 2, 5);
+		assertEquals(20, table.getTotal());
+		assertEquals(14, table.getSamples().get(0).getDuration());
+		assertEquals(10, table.getSamples().get(4).getDuration());
+		assertSame(byDuration, sorted.get(SampleTable.SORT_DURATION));
+	}
+
+	@Test
+	public void testJson() throws Exception {
+		List<HttpSample> samples = samples(3);
+		samples.get(0).setUri("/search?q=\"a\\b\"");
+		StringWriter json = new StringWriter();
+		new SampleTable(samples, null, false, false, 0, 1, 2).writeJson(json);
+		assertEquals("{\"total\":3,\"page\":1,\"pageCount\":2,\"pageSize\":2,"
+				+ "\"samples\":[{\"uri\":\"/search?q=\\\"a\\\\b\\\"\","
+				+ "\"timestamp\":" + START + ",\"duration\":0,\"httpCode\":\"500\","
+				+ "\"successful\":false,\"latency\":0,\"connectTime\":0,"
+				+ "\"threadName\":null},{\"uri\":\"/home\",\"timestamp\":"
+				+ (START + 1000) + ",\"duration\":1,\"httpCode\":\"200\","
+				+ "\"successful\":true,\"latency\":0,\"connectTime\":0,"
+				+ "\"threadName\":null}]}", json.toString());
+	}
+
+	private List<HttpSample> samples(int count) {
+		List<HttpSample> samples = new ArrayList<HttpSample>();
+		for (int i = 0; i < count; i++) {
+			HttpSample sample = new HttpSample();
+			sample.setUri("/home");
+			sample.setDate(new Date(START + i * 1000));
+			sample.setDuration(i);
+			sample.setSuccessful(i % 5 != 0);
+			sample.setHttpCode(i % 5 != 0 ? "200" : "500");
+			samples.add(sample);
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,127 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SteadyStateFilterTest {
+
+	private static final long START = 1400000000000L;
+
+	private PerformanceReport report;
+
+	private PrintStream logger;
+
+	@Before
+	public void setUp() {
+		report = new PerformanceReport();
+		report.setReportFileName("test.jtl");
+		logger = new PrintStream(new ByteArrayOutputStream());
+	}
+
+	@Test
+	public void testSkipFirstAndLastSeconds() throws Exception {
+		SteadyStateFilter filter = new SteadyStateFilter(report, 10000, 5000,
+				false);
+		// one sample per second for a minute
+		for (int s = 0; s < 60; s++) {
+			filter.add(sample(START + s * 1000L, s < 10 ? 1000 : 100));
+		}
+		filter.finish(logger);
+
+		// the samples started from the 10th to the 54th second are kept
+		assertEquals(45, report.size());
+		assertEquals(15, filter.getExcluded());
+		assertEquals(100, report.getMax());
+	}
+
+	@Test
+	public void testSkipLastSecondsWithLateSamples() throws Exception {
+		SteadyStateFilter filter = new SteadyStateFilter(report, 0, 5000, false);
+		for (int s = 0; s < 30; s++) {
+			filter.add(sample(START + s * 1000L, 10));
+			// a sample written after the next one started
+			filter.add(sample(START + s * 1000L - 500, 10));
+		}
+		filter.finish(logger);
+
+		// started by the 24th second, except the one before the first sample
+		assertEquals(49, report.size());
+		assertEquals(11, filter.getExcluded());
+	}
+
+	@Test
+	public void testDetectSteadyState() throws Exception {
+		SteadyStateFilter filter = new SteadyStateFilter(report, 0, 0, true);
+		// 30 s ramp-up: 1, then 5, then 10 requests per second
+		addRequests(filter, 0, 10, 1, 1000);
+		addRequests(filter, 10, 20, 5, 800);
+		addRequests(filter, 20, 30, 10, 500);
+		// two minutes at 20 requests per second
+		addRequests(filter, 30, 150, 20, 100);
+		// ramp-down
+		addRequests(filter, 150, 160, 5, 50);
+		addRequests(filter, 160, 170, 1, 50);
+		filter.finish(logger);
+
+		assertEquals(120 * 20, report.size());
+		assertEquals(100, report.getMin());
+		assertEquals(100, report.getMax());
+	}
+
+	@Test
+	public void testDetectKeepsDips() throws Exception {
+		SteadyStateFilter filter = new SteadyStateFilter(report, 0, 0, true);
+		addRequests(filter, 0, 60, 10, 100);
+		// a short dip within the steady state
+		addRequests(filter, 60, 70, 2, 100);
+		addRequests(filter, 70, 130, 10, 100);
+		filter.finish(logger);
+
+		assertEquals(120 * 10 + 20, report.size());
+	}
+
+	@Test
+	public void testNoSteadyStateKeepsLastWindow() throws Exception {
+		SteadyStateFilter filter = new SteadyStateFilter(report, 0, 0, true);
+		// keeps growing
+		for (int w = 0; w < 5; w++) {
+			addRequests(filter, w * 10, w * 10 + 10, 1 << w, 100);
+		}
+		filter.finish(logger);
+
+		assertEquals(10 * 16, report.size());
+		assertEquals(10 * (1 + 2 + 4 + 8), filter.getExcluded());
+	}
+
+	@Test
+	public void testNoWindowNoFilter() {
+		assertNull(SteadyStateFilter.create(new JMeterParser(""), report));
+		assertNotNull(SteadyStateFilter.create(new JMeterParser("", 0, 0, true),
+				report));
+	}
+
+	private void addRequests(SteadyStateFilter filter, int from, int to,
+			int perSecond, long duration) throws Exception {
+		for (int s = from; s < to; s++) {
+			for (int i = 0; i < perSecond; i++) {
+				filter.add(sample(START + s * 1000L + i * 1000L / perSecond,
+						duration));
+			}
+		}
+	}
+
+	private HttpSample sample(long timestamp, long duration) {
+		HttpSample sample = new HttpSample();
+		sample.setUri("/test");
+		sample.setDate(new Date(timestamp));
+		sample.setDuration(duration);
+		sample.setSuccessful(true);
+		return sample;
+	}
+}
@@ -0,0 +1,344 @@
+package hudson.plugins.performance;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates load test results of any size in the formats of the parsers, for
+ * the tests and the benchmarks. The same seed and settings always give the
+ * same results.
+ *
+ * <pre>
+ * File jtl = new SyntheticResults(42).labels(50).samples(1000000)
+ *     .errorRate(0.01).writeJMeterXml(new File(dir, &quot;results.jtl&quot;));
+ * </pre>
+ */
+public class SyntheticResults {
+
+	/**
+	 * How the durations are spread around their mean.
+	 */
+	public enum Distribution {
+		CONSTANT, UNIFORM, NORMAL, LOG_NORMAL
+	}
+
+	public static final long START = 1400000000000L;
+
+	public static final String CSV_PATTERN = "timestamp,elapsed,responseCode,threadName,success,failureMessage,grpThreads,allThreads,URL,Latency,SampleCount,ErrorCount";
+
+	private final long seed;
+
+	private int samples = 1000;
+
+	private int labels = 10;
+
+	private long meanDuration = 200;
+
+	private long deviation = 50;
+
+	private Distribution distribution = Distribution.NORMAL;
+
+	private double errorRate = 0.02;
+
+	private int depth;
+
+	private int children = 2;
+
+	private long interval = 10;
+
+	public SyntheticResults(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param samples
+	 *          the number of samples, or of summariser lines in a log
+	 */
+	public SyntheticResults samples(int samples) {
+		this.samples = samples;
+		return this;
+	}
+
+	/**
+	 * @param labels
+	 *          the number of distinct URIs, or test cases
+	 */
+	public SyntheticResults labels(int labels) {
+		this.labels = labels;
+		return this;
+	}
+
+	public SyntheticResults durations(Distribution distribution,
+			long meanDuration, long deviation) {
+		this.distribution = distribution;
+		this.meanDuration = meanDuration;
+		this.deviation = deviation;
+		return this;
+	}
+
+	/**
+	 * @param errorRate
+	 *          the share of failed samples, from 0 to 1
+	 */
+	public SyntheticResults errorRate(double errorRate) {
+		this.errorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * Nests sub-samples in each sample of the JMeter XML results, as JMeter
+	 * writes the requests of a transaction or the resources of a page.
+	 *
+	 * @param depth
+	 *          the levels of sub-samples below each sample
+	 * @param children
+	 *          the sub-samples of a sample at each level
+	 */
+	public SyntheticResults nesting(int depth, int children) {
+		this.depth = depth;
+		this.children = children;
+		return this;
+	}
+
+	/**
+	 * @param interval
+	 *          ms between the starts of two samples
+	 */
+	public SyntheticResults interval(long interval) {
+		this.interval = interval;
+		return this;
+	}
+
+	public static String label(int index) {
+		return "/page/" + index;
+	}
+
+	/**
+	 * @return the samples, in time order
+	 */
+	public List<HttpSample> generate() {
+		Random random = new Random(seed);
+		List<HttpSample> list = new ArrayList<HttpSample>(samples);
+		for (int i = 0; i < samples; i++) {
+			list.add(sample(random, i));
+		}
+		return list;
+	}
+
+	private HttpSample sample(Random random, int index) {
+		HttpSample sample = new HttpSample();
+		sample.setUri(label(random.nextInt(labels)));
+		sample.setDate(new Date(START + index * interval));
+		sample.setDuration(duration(random));
+		sample.setLatency(sample.getDuration() / 2);
+		boolean successful = random.nextDouble() >= errorRate;
+		sample.setSuccessful(successful);
+		sample.setHttpCode(successful ? "200" : "500");
+		sample.setSizeInKb(random.nextInt(100));
+		sample.setThreadName("Users 1-" + (1 + index % 10));
+		return sample;
+	}
+
+	private long duration(Random random) {
+		double duration;
+		switch (distribution) {
+		case CONSTANT:
+			duration = meanDuration;
+			break;
+		case UNIFORM:
+			duration = meanDuration + (random.nextDouble() * 2 - 1) * deviation;
+			break;
+		case LOG_NORMAL:
+			// mean and deviation of the durations, not of their logarithm
+			double variance = Math.log(1 + (double) deviation * deviation
+					/ ((double) meanDuration * meanDuration));
+			duration = Math.exp(Math.log(meanDuration) - variance / 2
+					+ random.nextGaussian() * Math.sqrt(variance));
+			break;
+		default:
+			duration = meanDuration + random.nextGaussian() * deviation;
+		}
+		return Math.max(1, Math.round(duration));
+	}
+
+	public File writeJMeterXml(File file) throws IOException {
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<testResults version=\"1.2\">\n");
+			Random random = new Random(seed);
+			Random nested = new Random(seed + 1);
+			for (int i = 0; i < samples; i++) {
+				writeJMeterSample(out, sample(random, i), nested, depth, "");
+			}
+			out.write("</testResults>\n");
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private void writeJMeterSample(Writer out, HttpSample sample, Random nested,
+			int levels, String indent) throws IOException {
+		out.write(indent + "<httpSample t=\"" + sample.getDuration() + "\" lt=\""
+				+ sample.getLatency() + "\" ts=\"" + sample.getDate().getTime()
+				+ "\" s=\"" + sample.isSuccessful() + "\" lb=\"" + sample.getUri()
+				+ "\" rc=\"" + sample.getHttpCode() + "\" rm=\"OK\" tn=\""
+				+ sample.getThreadName() + "\" dt=\"text\" by=\""
+				+ (long) (sample.getSizeInKb() * 1024) + "\"");
+		if (levels == 0) {
+			out.write("/>\n");
+			return;
+		}
+		out.write(">\n");
+		long start = sample.getDate().getTime();
+		for (int i = 0; i < children; i++) {
+			// the sub-samples share the duration of their parent
+			long duration = sample.getDuration() / children;
+			HttpSample child = new HttpSample();
+			child.setUri(sample.getUri() + "/" + i);
+			child.setDate(new Date(start + i * duration));
+			child.setDuration(duration);
+			child.setLatency(duration / 2);
+			child.setSuccessful(sample.isSuccessful() || nested.nextBoolean());
+			child.setHttpCode(child.isSuccessful() ? "200" : "500");
+			child.setSizeInKb(sample.getSizeInKb() / children);
+			child.setThreadName(sample.getThreadName());
+			writeJMeterSample(out, child, nested, levels - 1, indent + "  ");
+		}
+		out.write(indent + "</httpSample>\n");
+	}
+
+	/**
+	 * @return the file, in the {@link #CSV_PATTERN} columns
+	 */
+	public File writeJMeterCsv(File file) throws IOException {
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			for (HttpSample sample : generate()) {
+				out.write(sample.getDate().getTime() + "," + sample.getDuration() + ","
+						+ sample.getHttpCode() + "," + sample.getThreadName() + ","
+						+ sample.isSuccessful() + ",,1,1," + sample.getUri() + ","
+						+ sample.getLatency() + ",1," + (sample.isSuccessful() ? 0 : 1)
+						+ "\n");
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	public File writeJUnit(File file) throws IOException {
+		List<HttpSample> list = generate();
+		int failures = 0;
+		for (HttpSample sample : list) {
+			if (!sample.isSuccessful()) {
+				failures++;
+			}
+		}
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<testsuite name=\"Synthetic\" tests=\"" + list.size()
+					+ "\" failures=\"" + failures + "\" errors=\"0\">\n");
+			for (HttpSample sample : list) {
+				out.write("  <testcase name=\"" + sample.getUri() + "\" time=\""
+						+ sample.getDuration() / 1000.0 + "\"");
+				if (sample.isSuccessful()) {
+					out.write("/>\n");
+				} else {
+					out.write(">\n    <failure message=\"failed\"/>\n  </testcase>\n");
+				}
+			}
+			out.write("</testsuite>\n");
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Writes a JMeter log with a summariser line per label every 30 seconds,
+	 * among other log lines. The samples are the summariser lines, each
+	 * summing up 100 to 200 requests.
+	 */
+	public File writeSummarizerLog(File file) throws IOException {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+		Random random = new Random(seed);
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			for (int i = 0; i < samples; i++) {
+				String date = format.format(new Date(START + i / labels * 30000L));
+				int requests = 100 + random.nextInt(100);
+				long average = duration(random);
+				int errors = 0;
+				for (int r = 0; r < requests; r++) {
+					if (random.nextDouble() < errorRate) {
+						errors++;
+					}
+				}
+				out.write(date + " INFO  - jmeter.threads.JMeterThread: Thread started: Users 1-1 \n");
+				out.write(date + " INFO  - jmeter.reporters.Summariser: "
+						+ label(i % labels) + " +    " + requests + " in    30s =    "
+						+ requests / 30 + ".0/s Avg:   " + average + " Min:     "
+						+ Math.max(1, average / 4) + " Max:  " + average * 4
+						+ " Err:     " + errors + " (" + errors * 100 / requests
+						+ ".00%) Active: 5 Started: 5 Finished: 0 \n");
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Writes the wrk summary of the samples, which is a single figure per
+	 * measure whatever their number.
+	 */
+	public File writeWrk(File file) throws IOException {
+		List<HttpSample> list = generate();
+		long total = 0;
+		long max = 0;
+		for (HttpSample sample : list) {
+			total += sample.getDuration();
+			max = Math.max(max, sample.getDuration());
+		}
+		double average = list.isEmpty() ? 0 : (double) total / list.size();
+		double squares = 0;
+		for (HttpSample sample : list) {
+			squares += (sample.getDuration() - average)
+					* (sample.getDuration() - average);
+		}
+		double stdev = list.isEmpty() ? 0 : Math.sqrt(squares / list.size());
+		double seconds = Math.max(1, list.size() * interval / 1000.0);
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write("Running " + Math.round(seconds) + "s test @ http://localhost:8080\n");
+			out.write("  8 threads and 16 connections\n");
+			out.write("  Thread Stats   Avg      Stdev     Max   +/- Stdev\n");
+			out.write("    Latency    " + round(average) + "ms   " + round(stdev)
+					+ "ms " + max + ".00ms   68.27%\n");
+			out.write("    Req/Sec    " + round(list.size() / seconds / 8) + "      1.00    "
+					+ round(list.size() / seconds / 4) + "     69.63%\n");
+			out.write("  " + list.size() + " requests in " + round(seconds)
+					+ "s, 46.03MB read\n");
+			out.write("Requests/sec:    " + round(list.size() / seconds) + "\n");
+			out.write("Transfer/sec:      9.06MB\n");
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static String round(double value) {
+		return Double.toString(Math.round(value * 100) / 100.0);
+	}
+}
@@ -0,0 +1,150 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import hudson.util.StreamTaskListener;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyntheticResultsTest {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("synthetic", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private PerformanceReport parse(PerformanceReportParser parser, File file)
+			throws IOException {
+		return parser.parse(null, Collections.singleton(file),
+				new StreamTaskListener(System.out)).iterator().next();
+	}
+
+	private int countErrors(List<HttpSample> samples) {
+		int errors = 0;
+		for (HttpSample sample : samples) {
+			if (!sample.isSuccessful()) {
+				errors++;
+			}
+		}
+		return errors;
+	}
+
+	@Test
+	public void testSameSeedSameResults() throws IOException {
+		File first = new SyntheticResults(7).samples(500).writeJMeterXml(
+				new File(dir, "first.jtl"));
+		File second = new SyntheticResults(7).samples(500).writeJMeterXml(
+				new File(dir, "second.jtl"));
+		assertArrayEquals(read(first), read(second));
+	}
+
+	private byte[] read(File file) throws IOException {
+		byte[] bytes = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while (read < bytes.length) {
+				read += in.read(bytes, read, bytes.length - read);
+			}
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+
+	@Test
+	public void testJMeterXml() throws IOException {
+		SyntheticResults results = new SyntheticResults(1).samples(2000)
+				.labels(25).errorRate(0.1).nesting(2, 3);
+		PerformanceReport report = parse(new JMeterParser(""),
+				results.writeJMeterXml(new File(dir, "results.jtl")));
+		// the sub-samples are not counted
+		assertEquals(2000, report.size());
+		assertEquals(25, report.getUriReportMap().size());
+		assertEquals(countErrors(results.generate()), report.countErrors());
+	}
+
+	@Test
+	public void testJMeterCsv() throws Exception {
+		SyntheticResults results = new SyntheticResults(2).samples(1000)
+				.labels(5);
+		PerformanceReport report = parse(new JMeterCsvParser("",
+				SyntheticResults.CSV_PATTERN, ",", false), results
+				.writeJMeterCsv(new File(dir, "results.csv")));
+		assertEquals(1000, report.size());
+		assertEquals(5, report.getUriReportMap().size());
+		assertEquals(countErrors(results.generate()), report.countErrors());
+	}
+
+	@Test
+	public void testJUnit() throws IOException {
+		SyntheticResults results = new SyntheticResults(3).samples(300)
+				.labels(300).errorRate(0.5);
+		PerformanceReport report = parse(new JUnitParser(""), results
+				.writeJUnit(new File(dir, "TEST-results.xml")));
+		assertEquals(300, report.size());
+		assertEquals(countErrors(results.generate()), report.countErrors());
+	}
+
+	@Test
+	public void testSummarizerLog() throws IOException {
+		PerformanceReport report = parse(new JmeterSummarizerParser("", null),
+				new SyntheticResults(4).samples(120).labels(4)
+						.writeSummarizerLog(new File(dir, "jmeter.log")));
+		assertEquals(120, report.size());
+		assertEquals(4, report.getUriReportMap().size());
+	}
+
+	@Test
+	public void testWrk() throws IOException {
+		PerformanceReport report = parse(new WrkSummarizerParser(""),
+				new SyntheticResults(5).samples(1000).durations(
+						SyntheticResults.Distribution.CONSTANT, 120, 0)
+						.writeWrk(new File(dir, "results.wrk")));
+		assertEquals(120, report.getAverage());
+	}
+
+	@Test
+	public void testDistributions() {
+		for (SyntheticResults.Distribution distribution : SyntheticResults.Distribution
+				.values()) {
+			List<HttpSample> samples = new SyntheticResults(6).samples(20000)
+					.durations(distribution, 300, 100).generate();
+			long total = 0;
+			long max = 0;
+			for (HttpSample sample : samples) {
+				total += sample.getDuration();
+				max = Math.max(max, sample.getDuration());
+			}
+			long average = total / samples.size();
+			assertTrue(distribution + " average " + average,
+					Math.abs(average - 300) <= 10);
+			if (distribution == SyntheticResults.Distribution.LOG_NORMAL) {
+				assertTrue("long tail " + max, max > 3 * 300);
+			}
+		}
+	}
+}
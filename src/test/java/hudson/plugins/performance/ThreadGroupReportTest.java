@@ -0,0 +1,76 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ThreadGroupReportTest {
+
+	private static final long START = 1400000000000L;
+
+	@Test
+	public void testThreadGroupName() {
+		assertEquals("Browsing users",
+				ThreadGroupReport.getThreadGroupName("Browsing users 1-12"));
+		assertEquals("Buyers", ThreadGroupReport.getThreadGroupName("Buyers 2-1"));
+		assertEquals("setUp Thread Group",
+				ThreadGroupReport.getThreadGroupName("setUp Thread Group"));
+		assertEquals("1-2", ThreadGroupReport.getThreadGroupName("1-2"));
+	}
+
+	@Test
+	public void testGroupByThreadGroup() throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		for (int i = 0; i < 10; i++) {
+			report.addSample(sample("/home", "Browsers 1-" + (i % 5 + 1), START
+					+ i * 100, 10 * (i + 1), true));
+			report.addSample(sample("/checkout", "Buyers 2-" + (i % 2 + 1), START
+					+ i * 100, 100, i < 3));
+		}
+		// samples without a thread name are not grouped
+		report.addSample(sample("/home", null, START, 10, true));
+
+		List<ThreadGroupReport> threadGroups = report.getThreadGroups();
+		assertEquals(2, threadGroups.size());
+		ThreadGroupReport browsers = threadGroups.get(0);
+		assertEquals("Browsers", browsers.getName());
+		assertEquals(5, browsers.getThreads());
+		assertEquals(10, browsers.size());
+		assertEquals(55, browsers.getAverage());
+		assertEquals(60, browsers.getMedian());
+		assertEquals(100, browsers.get90Line());
+		assertEquals(0, browsers.countErrors());
+		ThreadGroupReport buyers = threadGroups.get(1);
+		assertEquals(2, buyers.getThreads());
+		assertEquals(70.0, buyers.errorPercent(), 0);
+		// 10 samples from the start of the first to the end of the last
+		assertEquals(10.0, buyers.getThroughput(), 0);
+
+		// the samples of a thread share its name
+		List<HttpSample> samples = report.getUriReportMap().get("_checkout")
+				.getHttpSampleList();
+		assertSame(samples.get(0).getThreadName(), samples.get(2)
+				.getThreadName());
+
+		ThreadGroupReport summary = browsers.summarize();
+		assertEquals(60, summary.getMedian());
+		assertEquals(100, summary.get90Line());
+		assertEquals(5, summary.getThreads());
+		assertEquals(10, summary.size());
+	}
+
+	private HttpSample sample(String uri, String threadName, long timestamp,
+			long duration, boolean successful) {
+		HttpSample sample = new HttpSample();
+		sample.setUri(uri);
+		// a new instance, as read from a file
+		sample.setThreadName(threadName == null ? null : new String(threadName));
+		sample.setDate(new Date(timestamp));
+		sample.setDuration(duration);
+		sample.setSuccessful(successful);
+		return sample;
+	}
+}
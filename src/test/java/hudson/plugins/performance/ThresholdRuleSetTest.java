@@ -0,0 +1,123 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import hudson.model.Result;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThresholdRuleSetTest {
+
+	private PerformanceReport report;
+	private PrintStream logger;
+
+	@Before
+	public void setUp() throws Exception {
+		report = new PerformanceReport();
+		for (int i = 1; i <= 100; i++) {
+			report.addSample(sample("/api/users", i, true));
+			report.addSample(sample("/api/orders", 10 * i, i % 10 != 0));
+			report.addSample(sample("/static/logo.png", 5, true));
+		}
+		logger = new PrintStream(new ByteArrayOutputStream());
+	}
+
+	private HttpSample sample(String uri, long duration, boolean successful) {
+		HttpSample sample = new HttpSample();
+		sample.setUri(uri);
+		sample.setDuration(duration);
+		sample.setDate(new Date());
+		sample.setSuccessful(successful);
+		return sample;
+	}
+
+	@Test
+	public void testParse() {
+		ThresholdRuleSet ruleSet = ThresholdRuleSet.parse("# comment\n\n"
+				+ "/api/* p99.9 800\n" + "regex:/static/.* avg 10 failure\n"
+				+ "My Login Page errors 5 FAILED");
+		assertEquals(3, ruleSet.getRules().size());
+		ThresholdRule rule = ruleSet.getRules().get(0);
+		assertEquals("/api/*", rule.getLabelPattern());
+		assertEquals(ThresholdRule.Metric.PERCENTILE, rule.getMetric());
+		assertEquals(99.9, rule.getPercentile(), 0);
+		assertEquals(800, rule.getLimit(), 0);
+		assertEquals(Result.UNSTABLE, rule.getSeverity());
+		assertEquals(Result.FAILURE, ruleSet.getRules().get(1).getSeverity());
+		assertEquals("My Login Page", ruleSet.getRules().get(2).getLabelPattern());
+		assertEquals(ThresholdRule.Metric.ERRORS, ruleSet.getRules().get(2)
+				.getMetric());
+	}
+
+	@Test
+	public void testParseInvalid() {
+		String[] invalid = { "/api/* p95", "/api/* p95 fast", "/api/* p0 10",
+				"/api/* mean 10", "/api/* max 10 broken", "regex:/api/( max 10" };
+		for (String rules : invalid) {
+			try {
+				ThresholdRuleSet.parse("/ok max 1\n" + rules);
+				fail(rules);
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2: "));
+			}
+		}
+	}
+
+	@Test
+	public void testEvaluate() {
+		assertEquals(Result.SUCCESS,
+				ThresholdRuleSet.parse("/api/* p95 1000").evaluate(report, logger));
+		assertEquals(Result.UNSTABLE,
+				ThresholdRuleSet.parse("/api/* p95 900").evaluate(report, logger));
+		assertEquals(Result.FAILURE, ThresholdRuleSet.parse(
+				"/api/* p95 900\n" + "/api/orders errors 5 failure").evaluate(report,
+				logger));
+		assertEquals(Result.SUCCESS,
+				ThresholdRuleSet.parse("/api/* max 10000\n" + "*.png max 5")
+						.evaluate(report, logger));
+	}
+
+	@Test
+	public void testFirstMatchingRuleWins() {
+		ThresholdRuleSet ruleSet = ThresholdRuleSet.parse("/api/orders max 2000\n"
+				+ "/api/* max 50");
+		assertEquals(Result.UNSTABLE, ruleSet.evaluate(report, logger));
+		ruleSet = ThresholdRuleSet.parse("/api/orders max 2000\n"
+				+ "regex:/api/(users|orders) max 100 failure");
+		assertEquals(Result.SUCCESS, ruleSet.evaluate(report, logger));
+	}
+
+	@Test
+	public void testLabelMatcher() {
+		LabelMatcher<String> matcher = new LabelMatcher<String>();
+		matcher.add("regex:/a/(b|c)/.*", "first").add("/a/b/d", "second")
+				.add("/a/*", "third").add("/x?", "fourth");
+		assertEquals("first", matcher.match("/a/b/d"));
+		assertEquals("third", matcher.match("/a/e"));
+		assertEquals("fourth", matcher.match("/xy"));
+		assertNull(matcher.match("/xyz"));
+		assertNull(matcher.match("/a.e"));
+	}
+
+	@Test
+	public void testLabelMatcherBackReferencesAndNamedGroups() {
+		LabelMatcher<String> matcher = new LabelMatcher<String>();
+		matcher.add("regex:/(a)/.*", "first")
+				.add("regex:/(\\w)\\1/.*", "second")
+				.add("regex:/(?<page>x)/.*", "third")
+				.add("regex:/(?<page>y)/.*", "fourth").add("/*", "fifth");
+		assertEquals("first", matcher.match("/a/1"));
+		assertEquals("second", matcher.match("/bb/1"));
+		assertEquals("fifth", matcher.match("/bc/1"));
+		assertEquals("third", matcher.match("/x/1"));
+		assertEquals("fourth", matcher.match("/y/1"));
+		assertTrue(LabelMatcher.isStandalone("(?<page>x)"));
+		assertFalse(LabelMatcher.isStandalone("(?<=x)y"));
+		assertFalse(LabelMatcher.isStandalone("\\\\1"));
+	}
+}
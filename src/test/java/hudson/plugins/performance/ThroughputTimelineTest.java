@@ -0,0 +1,164 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ThroughputTimelineTest {
+
+	private static final long START = 1400000000000L;
+
+	@Test
+	public void testPerSecondBuckets() {
+		ThroughputTimeline timeline = new ThroughputTimeline();
+		timeline.add(START + 100, 10, false);
+		timeline.add(START + 900, 300, true);
+		timeline.add(START + 2500, 500, false);
+		// out of order
+		timeline.add(START - 500, 1, false);
+
+		assertEquals(1000, timeline.getBucketWidth());
+		assertEquals(4, timeline.size());
+		assertEquals(START - 1000, timeline.getStart(0));
+		assertEquals(1, timeline.getCount(0));
+		assertEquals(2, timeline.getCount(1));
+		assertEquals(1, timeline.getErrors(1));
+		assertEquals(0, timeline.getCount(2));
+		assertEquals(1, timeline.getCount(3));
+		assertEquals(4, timeline.getTotalCount());
+		assertEquals(2.0, timeline.getPeakThroughput(), 0);
+		assertEquals(15, timeline.getLatencyPercentile(1, 50));
+		assertEquals(511, timeline.getLatencyPercentile(1, 100));
+	}
+
+	@Test
+	public void testRequestStartingBeforeTheBuckets() {
+		ThroughputTimeline timeline = new ThroughputTimeline();
+		timeline.add(START + 100, 10, false);
+		// in flight for the two seconds before the first bucket
+		timeline.add(START + 1500, 3000, false);
+
+		assertEquals(START - 2000, timeline.getStart(0));
+		assertEquals(4, timeline.size());
+		assertEquals(0, timeline.getCount(0));
+		assertEquals(1, timeline.getCount(2));
+		assertEquals(1, timeline.getCount(3));
+		assertEquals(0.5, timeline.getConcurrency(0), 0.01);
+		assertEquals(1.0, timeline.getConcurrency(1), 0.01);
+	}
+
+	@Test
+	public void testLongTestsUseWiderBuckets() {
+		ThroughputTimeline timeline = new ThroughputTimeline();
+		for (int s = 0; s < 4 * 3600; s++) {
+			timeline.add(START + s * 1000L, 10, false);
+		}
+		assertTrue(timeline.size() <= ThroughputTimeline.MAX_BUCKETS);
+		assertEquals(12000, timeline.getBucketWidth());
+		assertEquals(4 * 3600, timeline.getTotalCount());
+		assertEquals(1.0, timeline.getPeakThroughput(), 0.1);
+		assertEquals(1.0, timeline.getSustainedThroughput(), 0.1);
+	}
+
+	@Test
+	public void testSustainedThroughput() {
+		ThroughputTimeline timeline = new ThroughputTimeline();
+		// a burst of 100 requests in one second, then 2 per second for 5 minutes
+		for (int i = 0; i < 100; i++) {
+			timeline.add(START, 1, false);
+		}
+		for (int s = 1; s <= 300; s++) {
+			timeline.add(START + s * 1000L, 1, false);
+			timeline.add(START + s * 1000L + 500, 1, false);
+		}
+		assertEquals(100.0, timeline.getPeakThroughput(), 0);
+		assertEquals((100 + 59 * 2) / 60.0, timeline.getSustainedThroughput(),
+				0.001);
+	}
+
+	@Test
+	public void testPerMinute() {
+		ThroughputTimeline timeline = new ThroughputTimeline();
+		for (int s = 0; s < 150; s++) {
+			timeline.add(START + s * 1000L, 10, s % 10 == 0);
+		}
+		ThroughputTimeline minutes = timeline.perMinute();
+		assertEquals(60000, minutes.getBucketWidth());
+		assertEquals(150, minutes.getTotalCount());
+		int errors = 0;
+		for (int i = 0; i < minutes.size(); i++) {
+			assertEquals(0, minutes.getStart(i) % 60000);
+			errors += minutes.getErrors(i);
+		}
+		assertEquals(15, errors);
+	}
+
+	@Test
+	public void testReportTimelineAddsUpUris() throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		report.setReportFileName("test.jtl");
+		for (int i = 0; i < 10; i++) {
+			HttpSample sample = new HttpSample();
+			sample.setUri(i % 2 == 0 ? "/login" : "/logout");
+			sample.setDate(new Date(START + i * 100));
+			sample.setDuration(50);
+			sample.setSuccessful(true);
+			report.addSample(sample);
+		}
+		ThroughputTimeline timeline = report.getThroughputTimeline();
+		assertEquals(10, timeline.getTotalCount());
+		assertEquals(10.0, timeline.getPeakThroughput(), 0);
+		assertEquals(5, report.getUriReportMap().get("_login")
+				.getThroughputTimeline().getTotalCount());
+	}
+
+	@Test
+	public void testConcurrency() {
+		ThroughputTimeline timeline = new ThroughputTimeline();
+		// 4 requests of 2.5 s each, all started at the same time
+		for (int i = 0; i < 4; i++) {
+			timeline.add(START + 2500, 2500, false);
+		}
+		assertEquals(3, timeline.size());
+		assertEquals(4.0, timeline.getConcurrency(0), 0);
+		assertEquals(4.0, timeline.getConcurrency(1), 0);
+		assertEquals(2.0, timeline.getConcurrency(2), 0);
+		assertEquals(0, timeline.getCount(0));
+		assertEquals(4, timeline.getCount(2));
+		assertEquals(2500, timeline.getAverageLatency(2));
+		assertEquals(4.0, timeline.getMaxConcurrency(), 0);
+	}
+
+	@Test
+	public void testLatencyByConcurrencyLevel() {
+		ThroughputTimeline timeline = new ThroughputTimeline();
+		// a minute with 1 request in flight, then one with 20 slower ones
+		for (int s = 0; s < 60; s++) {
+			timeline.add(START + s * 1000L + 999, 999, false);
+		}
+		for (int s = 60; s < 120; s++) {
+			for (int i = 0; i < 10; i++) {
+				timeline.add(START + s * 1000L + 1999, 1999, false);
+			}
+		}
+		List<ThroughputTimeline.ConcurrencyLevel> levels = timeline
+				.getConcurrencyLevels();
+		ThroughputTimeline.ConcurrencyLevel low = levels.get(0);
+		ThroughputTimeline.ConcurrencyLevel high = levels
+				.get(levels.size() - 1);
+		assertEquals(0, low.getFrom());
+		assertEquals(999, low.getAverage());
+		assertEquals(1023, low.getPercentile(90));
+		assertEquals(20, high.getTo());
+		assertEquals(1999, high.getAverage());
+		assertEquals(2047, high.getPercentile(90));
+		long count = 0;
+		for (ThroughputTimeline.ConcurrencyLevel level : levels) {
+			count += level.getCount();
+		}
+		assertEquals(60 + 600, count);
+	}
+}
@@ -0,0 +1,322 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.Test;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+public class TrendIndexTest {
+
+	@Test
+	public void testReportFileNamesOfLastBuild() throws Exception {
+		TrendIndex index = new TrendIndex(null);
+		assertTrue(index.getReportFileNames().isEmpty());
+		index.put(1, 1000, summaries("b.jtl", "a.jtl"));
+		assertEquals(Arrays.asList("a.jtl", "b.jtl"), index.getReportFileNames());
+		index.put(2, 2000, summaries("c.jtl", "b.jtl"));
+		assertEquals(Arrays.asList("b.jtl", "c.jtl"), index.getReportFileNames());
+		// a build indexed late does not change the reports of the last one
+		index.put(0, 500, summaries("d.jtl"));
+		assertEquals(Arrays.asList("b.jtl", "c.jtl"), index.getReportFileNames());
+		index.remove(2);
+		assertEquals(Arrays.asList("a.jtl", "b.jtl"), index.getReportFileNames());
+	}
+
+	@Test
+	public void testTestCases() throws Exception {
+		TrendIndex index = new TrendIndex(null);
+		index.put(1, 1000, run("/b", 100, true, "/a", 50, true, "/a", 70, false));
+		index.put(2, 2000, run("/c", 30, true, "/b", 120, false));
+		assertEquals(Arrays.asList("/a", "/b", "/c"),
+				index.getTestCases("results.jtl"));
+		assertTrue(index.getTestCases("other.jtl").isEmpty());
+
+		// the longest duration and whether any sample failed, per build
+		TrendIndex.TestCaseSeries a = index.getTestCaseSeries("results.jtl", "/a");
+		assertEquals(1, a.getRunCount());
+		assertEquals(Long.valueOf(70), a.getDurations().get(1));
+		assertEquals(Collections.singleton(1), a.getFailedBuilds());
+		TrendIndex.TestCaseSeries b = index.getTestCaseSeries("results.jtl", "/b");
+		assertEquals(2, b.getRunCount());
+		assertEquals(Long.valueOf(100), b.getDurations().get(1));
+		assertEquals(Long.valueOf(120), b.getDurations().get(2));
+		assertEquals(Collections.singleton(2), b.getFailedBuilds());
+		assertEquals(0, index.getTestCaseSeries("results.jtl", "/d").getRunCount());
+	}
+
+	@Test
+	public void testRemovePrunesTestCases() throws Exception {
+		TrendIndex index = new TrendIndex(null);
+		index.put(1, 1000, run("/a", 50, false, "/b", 100, true));
+		index.put(2, 2000, run("/b", 110, true, "/c", 30, false));
+		index.put(3, 3000, run("/c", 40, true));
+		index.remove(1);
+		assertEquals(Arrays.asList("/b", "/c"), index.getTestCases("results.jtl"));
+		assertEquals(0, index.getTestCaseSeries("results.jtl", "/a").getRunCount());
+		// the series of the test cases left are unchanged
+		TrendIndex.TestCaseSeries c = index.getTestCaseSeries("results.jtl", "/c");
+		assertEquals(Long.valueOf(30), c.getDurations().get(2));
+		assertEquals(Long.valueOf(40), c.getDurations().get(3));
+		assertEquals(Collections.singleton(2), c.getFailedBuilds());
+		assertEquals(Long.valueOf(110), index.getTestCaseSeries("results.jtl",
+				"/b").getDurations().get(2));
+
+		// test cases added after the pruning are numbered after the others
+		index.put(4, 4000, run("/d", 10, false, "/c", 20, true));
+		assertEquals(Arrays.asList("/b", "/c", "/d"),
+				index.getTestCases("results.jtl"));
+		assertEquals(Collections.singleton(4), index.getTestCaseSeries(
+				"results.jtl", "/d").getFailedBuilds());
+
+		index.remove(2);
+		index.remove(3);
+		index.remove(4);
+		assertTrue(index.getTestCases("results.jtl").isEmpty());
+	}
+
+	@Test
+	public void testPointsOfBuildRange() throws Exception {
+		TrendIndex index = trend(5);
+		index.put(3, 3000, summaries("other.jtl"));
+		assertEquals(Arrays.asList(2, 4), new ArrayList<Integer>(index
+				.getPoints("results.jtl", 2, 4).keySet()));
+		assertEquals(Arrays.asList(1, 2, 4, 5), new ArrayList<Integer>(index
+				.getPoints("results.jtl", 0, Integer.MAX_VALUE).keySet()));
+		assertTrue(index.getPoints("results.jtl", 4, 2).isEmpty());
+		// the last builds of the range
+		assertEquals(Arrays.asList(2, 4), new ArrayList<Integer>(index
+				.getPoints("results.jtl", 0, 4, 2).keySet()));
+		assertEquals(Arrays.asList(1, 2), new ArrayList<Integer>(index
+				.getPoints("results.jtl", 0, 2, 5).keySet()));
+		assertEquals(4, index.getPoints("results.jtl", 0, 5, 0).size());
+	}
+
+	@Test
+	public void testWriteJson() throws Exception {
+		TrendIndex index = trend(3);
+		StringWriter out = new StringWriter();
+		TrendIndex.writeJson("results.jtl", index.getPoints("results.jtl", 2, 3),
+				out);
+		String json = out.toString();
+		assertTrue(json, json.startsWith("{\"report\":\"results.jtl\","
+				+ "\"builds\":[2,3],\"timestamps\":[2000,3000],"
+				+ "\"average\":[200,300],"));
+		assertTrue(json, json.contains("\"max\":[200,300],"));
+		assertTrue(json, json.contains("\"samples\":[1,1],\"errors\":[0,1],"));
+		assertTrue(json, json.endsWith("}"));
+	}
+
+	@Test
+	public void testServeJson() throws Exception {
+		TrendIndex index = trend(5);
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("from", "2");
+		parameters.put("builds", "2");
+		StringWriter out = new StringWriter();
+		index.serveJson("results.jtl", 4, request(parameters, false),
+				response(out));
+		// up to the build asked for, whatever the "to" parameter
+		assertTrue(out.toString(), out.toString().contains("\"builds\":[3,4],"));
+
+		parameters.put("to", "3");
+		parameters.put("builds", "x");
+		out = new StringWriter();
+		index.serveJson("results.jtl", 5, request(parameters, false),
+				response(out));
+		assertTrue(out.toString(), out.toString().contains("\"builds\":[2,3],"));
+
+		// nothing written while the browser has the points
+		out = new StringWriter();
+		index.serveJson("results.jtl", 5, request(parameters, true),
+				response(out));
+		assertEquals("", out.toString());
+	}
+
+	@Test
+	public void testPointsOfGraphConfiguration() throws Exception {
+		TrendIndex index = trend(6);
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5), new ArrayList<Integer>(index
+				.getPoints("results.jtl", null, 5).keySet()));
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), new ArrayList<Integer>(
+				index.getPoints("results.jtl", graphConf("NONE:0:dd/MM/yyyy:"
+						+ "dd/MM/yyyy:1"), 6).keySet()));
+		// the last builds up to the one drawn
+		assertEquals(Arrays.asList(3, 4, 5), new ArrayList<Integer>(index
+				.getPoints("results.jtl", graphConf("BUILD:3:dd/MM/yyyy:"
+						+ "dd/MM/yyyy:1"), 5).keySet()));
+		assertEquals(6, index.getPoints("results.jtl", graphConf("BUILD:0:"
+				+ "dd/MM/yyyy:dd/MM/yyyy:1"), 6).size());
+		// every nth build
+		assertEquals(Arrays.asList(2, 4, 6), new ArrayList<Integer>(index
+				.getPoints("results.jtl", graphConf("BUILDNTH:0:dd/MM/yyyy:"
+						+ "dd/MM/yyyy:2"), 6).keySet()));
+	}
+
+	@Test
+	public void testPointsOfDateRange() throws Exception {
+		TrendIndex index = new TrendIndex(null);
+		index.put(1, date(9, 23), run("/a", 100, true));
+		index.put(2, date(10, 0), run("/a", 100, true));
+		index.put(3, date(11, 23), run("/a", 100, true));
+		index.put(4, date(12, 0), run("/a", 100, true));
+		// both days included, up to their last second
+		assertEquals(Arrays.asList(2, 3), new ArrayList<Integer>(index
+				.getPoints("results.jtl", graphConf("DATE:0:10/03/2014:"
+						+ "11/03/2014:1"), 4).keySet()));
+		assertEquals(Arrays.asList(2), new ArrayList<Integer>(index.getPoints(
+				"results.jtl", graphConf("DATE:0:10/03/2014:11/03/2014:1"), 2)
+				.keySet()));
+	}
+
+	@Test
+	public void testReloadAfterEviction() throws Exception {
+		File dir = File.createTempFile("trend", "");
+		dir.delete();
+		dir.mkdirs();
+		File file = new File(dir, TrendIndex.FILE_NAME);
+		try {
+			trend(2, file).save();
+
+			// loaded once, then held
+			TrendIndex loaded = TrendIndex.get(file, null);
+			assertEquals(2, loaded.getPoints("results.jtl", 0, 10).size());
+			assertSame(loaded, TrendIndex.get(file, null));
+
+			trend(3, file).save();
+			assertSame(loaded, TrendIndex.get(file, null));
+			TrendIndex.evict(dir);
+			TrendIndex reloaded = TrendIndex.get(file, null);
+			assertNotSame(loaded, reloaded);
+			assertEquals(3, reloaded.getPoints("results.jtl", 0, 10).size());
+		} finally {
+			TrendIndex.evict(dir);
+			file.delete();
+			dir.delete();
+		}
+	}
+
+	private static long date(int day, int hour) {
+		return new GregorianCalendar(2014, Calendar.MARCH, day, hour, 30)
+				.getTimeInMillis();
+	}
+
+	private static GraphConfigurationDetail graphConf(String value) {
+		final Cookie[] cookies = { new Cookie("hudson.plugins.performance",
+				value) };
+		return new GraphConfigurationDetail(null, "performance",
+				(StaplerRequest) Proxy.newProxyInstance(
+						TrendIndexTest.class.getClassLoader(),
+						new Class<?>[] { StaplerRequest.class },
+						new InvocationHandler() {
+							public Object invoke(Object proxy, Method method,
+									Object[] args) {
+								if (method.getName().equals("getCookies")) {
+									return cookies;
+								}
+								throw new UnsupportedOperationException(method
+										.getName());
+							}
+						}));
+	}
+
+	/**
+	 * @return an index of one report over builds numbered from 1, each with
+	 *         one sample lasting 100 ms times the build number, failing in
+	 *         the odd builds, and started at 1000 ms times the build number
+	 */
+	private static TrendIndex trend(int builds) throws Exception {
+		return trend(builds, null);
+	}
+
+	private static TrendIndex trend(int builds, File file) throws Exception {
+		TrendIndex index = new TrendIndex(file);
+		for (int i = 1; i <= builds; i++) {
+			index.put(i, i * 1000, run("/a", i * 100, i % 2 == 0));
+		}
+		return index;
+	}
+
+	private static StaplerRequest request(final Map<String, String> parameters,
+			final boolean notModified) {
+		return (StaplerRequest) Proxy.newProxyInstance(
+				TrendIndexTest.class.getClassLoader(),
+				new Class<?>[] { StaplerRequest.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getParameter")) {
+							return parameters.get(args[0]);
+						}
+						if (method.getName().equals("checkIfModified")) {
+							return notModified;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private static StaplerResponse response(final StringWriter out) {
+		return (StaplerResponse) Proxy.newProxyInstance(
+				TrendIndexTest.class.getClassLoader(),
+				new Class<?>[] { StaplerResponse.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getWriter")) {
+							return new PrintWriter(out);
+						}
+						return null;
+					}
+				});
+	}
+
+	/**
+	 * @return the summary of a report with samples given as URI, duration and
+	 *         success
+	 */
+	private static List<ReportSummary> run(Object... samples) throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		report.setReportFileName("results.jtl");
+		for (int i = 0; i < samples.length; i += 3) {
+			HttpSample sample = new HttpSample();
+			sample.setUri((String) samples[i]);
+			sample.setDuration((Integer) samples[i + 1]);
+			sample.setDate(new Date());
+			sample.setSuccessful((Boolean) samples[i + 2]);
+			report.addSample(sample);
+		}
+		return ReportSummary.summarize(Collections.singleton(report));
+	}
+
+	private static List<ReportSummary> summaries(String... reportFileNames)
+			throws Exception {
+		List<PerformanceReport> reports = new ArrayList<PerformanceReport>();
+		for (String reportFileName : reportFileNames) {
+			PerformanceReport report = new PerformanceReport();
+			report.setReportFileName(reportFileName);
+			HttpSample sample = new HttpSample();
+			sample.setUri("/home");
+			sample.setDuration(100);
+			sample.setDate(new Date());
+			sample.setSuccessful(true);
+			report.addSample(sample);
+			reports.add(report);
+		}
+		return ReportSummary.summarize(reports);
+	}
+}
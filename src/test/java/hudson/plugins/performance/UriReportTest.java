@@ -5,7 +5,12 @@ import static org.junit.Assert.*;
 import hudson.plugins.performance.HttpSample;
 import hudson.plugins.performance.UriReport;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Date;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -43,6 +48,11 @@ public class UriReportTest {
 		assertEquals(2, uriReport.countErrors());
 	}
 
+	@Test
+	public void testErrorPercentWithoutSamples() {
+		assertEquals(0, new UriReport(null, "_empty", "/empty").errorPercent(), 0);
+	}
+
 	@Test
 	public void testGetAverage() {
 		assertEquals(AVERAGE, uriReport.getAverage());
@@ -63,4 +73,95 @@ public class UriReportTest {
 		assertTrue(uriReport.isFailed());
 	}
 
+	@Test
+	public void testLatencyAndConnectTime() {
+		UriReport report = new UriReport(null, null, null);
+		for (int i = 1; i <= 10; i++) {
+			HttpSample sample = new HttpSample();
+			sample.setDate(new Date());
+			sample.setDuration(100 * i);
+			sample.setLatency(50 * i);
+			sample.setConnectTime(i);
+			sample.setSuccessful(true);
+			report.addHttpSample(sample);
+		}
+		assertTrue(report.hasLatency());
+		assertEquals(275, report.getAverageLatency());
+		assertEquals(5, report.getAverageConnectTime());
+		assertEquals(300, report.getLatencyPercentile(50));
+		assertEquals(500, report.getLatencyPercentile(90));
+		assertEquals(10, report.getConnectTimePercentile(99));
+		assertFalse(uriReport.hasLatency());
+	}
+
+	@Test
+	public void testSampleRetention() throws Exception {
+		PerformanceReport all = report(new SampleRetention(
+				SampleRetention.ALL, 0));
+		PerformanceReport reservoir = report(new SampleRetention(
+				SampleRetention.RESERVOIR, 10));
+		PerformanceReport none = report(new SampleRetention(
+				SampleRetention.NONE, 0));
+		UriReport kept = all.getUriReportMap().get("_home");
+		assertEquals(750, kept.getHttpSampleList().size());
+		assertEquals(10, reservoir.getUriReportMap().get("_home")
+				.getHttpSampleList().size());
+		assertTrue(none.getUriReportMap().get("_home").getHttpSampleList()
+				.isEmpty());
+
+		// the figures don't depend on the samples kept, even once cached
+		for (PerformanceReport report : new PerformanceReport[] { reservoir,
+				none, serializeAndBack(none) }) {
+			UriReport uriReport = report.getUriReportMap().get("_home");
+			assertEquals(kept.size(), uriReport.size());
+			assertEquals(kept.countErrors(), uriReport.countErrors());
+			assertEquals(kept.getAverage(), uriReport.getAverage());
+			assertEquals(kept.getMedian(), uriReport.getMedian());
+			assertEquals(kept.get90Line(), uriReport.get90Line());
+			assertEquals(kept.getPercentile(99), uriReport.getPercentile(99));
+			assertEquals(kept.getMin(), uriReport.getMin());
+			assertEquals(kept.getMax(), uriReport.getMax());
+			assertEquals(kept.getHttpCode(), uriReport.getHttpCode());
+			assertEquals(kept.getTotalTrafficInKb(),
+					uriReport.getTotalTrafficInKb(), 0);
+			assertEquals(kept.getAverageLatency(), uriReport.getAverageLatency());
+			assertEquals(kept.getLatencyPercentile(90),
+					uriReport.getLatencyPercentile(90));
+			assertEquals(kept.getApdex(), uriReport.getApdex(), 0);
+			assertEquals(new ThroughputUriReport(kept).get(),
+					new ThroughputUriReport(uriReport).get());
+			assertEquals(all.getMedian(), report.getMedian());
+			assertEquals(all.get90Line(), report.get90Line());
+		}
+	}
+
+	private PerformanceReport report(SampleRetention sampleRetention)
+			throws Exception {
+		PerformanceReport report = new PerformanceReport();
+		report.setSampleRetention(sampleRetention);
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			HttpSample sample = new HttpSample();
+			sample.setUri(i % 4 == 0 ? "/login" : "/home");
+			sample.setDate(new Date(1400000000000L + i * 10));
+			sample.setDuration(random.nextInt(2000));
+			sample.setLatency(random.nextInt(100));
+			sample.setSizeInKb(random.nextInt(50) / 10.0);
+			sample.setHttpCode(i % 7 == 0 ? "500" : "200");
+			sample.setSuccessful(i % 7 != 0);
+			report.addSample(sample);
+		}
+		return report;
+	}
+
+	private PerformanceReport serializeAndBack(PerformanceReport report)
+			throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(report);
+		out.close();
+		return (PerformanceReport) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	}
+
 }
@@ -0,0 +1,105 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class UriSummaryTest {
+
+	private PerformanceReport report;
+
+	@Before
+	public void setUp() throws Exception {
+		report = new PerformanceReport();
+		report.setReportFileName("test.jtl");
+		for (int i = 1; i <= 10; i++) {
+			HttpSample sample = new HttpSample();
+			sample.setUri("http://host/login");
+			sample.setDuration(i * 10);
+			sample.setDate(new Date(1000L * i));
+			sample.setSuccessful(i != 3);
+			sample.setHttpCode(i != 3 ? "200" : "500");
+			sample.setSizeInKb(2);
+			report.addSample(sample);
+		}
+	}
+
+	@Test
+	public void testSameFiguresAsUriReport() throws Exception {
+		UriReport uriReport = report.getUriReportMap().values().iterator().next();
+		UriSummary summary = roundTrip(new UriSummary(uriReport));
+		assertEquals(uriReport.size(), summary.size());
+		assertEquals(uriReport.countErrors(), summary.countErrors());
+		assertEquals(uriReport.errorPercent(), summary.errorPercent(), 0);
+		assertEquals(uriReport.getAverage(), summary.getAverage());
+		assertEquals(uriReport.getMedian(), summary.getMedian());
+		assertEquals(uriReport.get90Line(), summary.get90Line());
+		assertEquals(uriReport.getMin(), summary.getMin());
+		assertEquals(uriReport.getMax(), summary.getMax());
+		assertEquals(uriReport.getHttpCode(), summary.getHttpCode());
+		assertEquals(uriReport.getTotalTrafficInKb(),
+				summary.getTotalTrafficInKb(), 0);
+		assertEquals(uriReport.encodeUriReport(), summary.encodeUriReport());
+		assertTrue(summary.isFailed());
+	}
+
+	@Test
+	public void testDiffs() throws Exception {
+		UriReport uriReport = report.getUriReportMap().values().iterator().next();
+		UriSummary summary = new UriSummary(uriReport);
+		assertEquals(0, summary.getAverageDiff());
+
+		HttpSample sample = new HttpSample();
+		sample.setUri("http://host/login");
+		sample.setDuration(1000);
+		sample.setDate(new Date());
+		sample.setSuccessful(true);
+		sample.setHttpCode("200");
+		report.addSample(sample);
+		UriSummary next = new UriSummary(uriReport);
+		next.setLastBuildUriSummary(summary);
+		assertEquals(1, next.getSizeDiff());
+		assertEquals(next.getAverage() - summary.getAverage(),
+				next.getAverageDiff());
+		assertEquals("", next.getLastBuildHttpCodeIfChanged());
+	}
+
+	@Test
+	public void testUriReportDiffsFromLastBuildSummary() throws Exception {
+		UriReport uriReport = report.getUriReportMap().values().iterator().next();
+		UriSummary summary = new UriSummary(uriReport);
+		assertEquals(0, uriReport.getSizeDiff());
+
+		PerformanceReport nextReport = new PerformanceReport();
+		nextReport.setReportFileName("test.jtl");
+		HttpSample sample = new HttpSample();
+		sample.setUri("http://host/login");
+		sample.setDuration(1000);
+		sample.setDate(new Date());
+		sample.setSuccessful(true);
+		sample.setHttpCode("302");
+		nextReport.addSample(sample);
+		UriReport nextUriReport = nextReport.getUriReportMap().values()
+				.iterator().next();
+		nextUriReport.setLastBuildUriSummary(summary);
+		assertEquals(-9, nextUriReport.getSizeDiff());
+		assertEquals(1000 - summary.getAverage(), nextUriReport.getAverageDiff());
+		assertEquals("200,500", nextUriReport.getLastBuildHttpCodeIfChanged());
+	}
+
+	private UriSummary roundTrip(UriSummary summary) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(summary);
+		out.close();
+		return (UriSummary) new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray())).readObject();
+	}
+}